@@ -0,0 +1,64 @@
+package com.pfaff.maximilian;
+
+import com.pfaff.maximilian.model.AbstractModel;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.SplittableRandom;
+
+/**
+ * Reproducible inputs for the benchmarks.
+ */
+public final class Sequences {
+    private static final long SEED = 0x5EED;
+
+    /**
+     * @param model The DNA/ RNA model.
+     * @param length Number of nucleotides.
+     * @return A random sequence of nucleotides that the model knows.
+     */
+    public static String random(AbstractModel.Model model, int length) {
+        return random(model == AbstractModel.Model.A_RNA ? "ACGU" : "ACGT", length);
+    }
+
+    /**
+     * @param alphabet All letters that may occur.
+     * @param length Number of letters.
+     * @return A random string.
+     */
+    public static String random(String alphabet, int length) {
+        final SplittableRandom random = new SplittableRandom(SEED);
+        final char[] letters = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            letters[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+
+        return new String(letters);
+    }
+
+    /**
+     * @return A channel that discards everything, so that benchmarks of writers do not measure the disk.
+     */
+    public static WritableByteChannel nullChannel() {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                final int remaining = src.remaining();
+                src.position(src.limit());
+
+                return remaining;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    private Sequences() {}
+}
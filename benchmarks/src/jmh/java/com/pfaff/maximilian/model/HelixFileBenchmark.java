@@ -0,0 +1,90 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a model from the binary format compared to parsing the text formats it replaces.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HelixFileBenchmark {
+    @Param({"B_DNA"})
+    public AbstractModel.Model model;
+
+    @Param({"1000", "100000"})
+    public int length;
+
+    @Param({"0", "1"})
+    public int flags;
+
+    private String query;
+    private Path file;
+    private List<String> pdb;
+
+    @Setup
+    public void setup() throws IOException {
+        query = Sequences.random(model, length);
+        file = Files.createTempFile("benchmark", ".hlx");
+        HelixFile.write(model, query, file, flags);
+        pdb = PDB.createModelPdbFileContent(model, query);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return HelixFile.write(model, query, file, flags);
+    }
+
+    @Benchmark
+    public AbstractModel.Nucleotide openAndReadMiddleNucleotide() throws IOException {
+        final HelixFile helix = HelixFile.open(file);
+
+        return helix.nucleotide(helix.nucleotideCount() / 2);
+    }
+
+    @Benchmark
+    public double readAllHeights() throws IOException {
+        final HelixFile helix = HelixFile.open(file);
+        double sum = 0;
+
+        for (int atom = 0; atom < helix.atomCount(); atom++) {
+            sum += helix.scaledHeight(atom);
+        }
+
+        return sum;
+    }
+
+    /**
+     * What a viewer has to do without the binary format: parse the coordinates of every line of the PDB file.
+     */
+    @Benchmark
+    public double parseAllPdbHeights() {
+        double sum = 0;
+
+        for (String line : pdb) {
+            sum += Double.parseDouble(line.substring(46, 54));
+        }
+
+        return sum;
+    }
+}
@@ -0,0 +1,74 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.util.ByteSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Model building and the text outputs, from the sequence to the finished lines. The PDB output only fits a few thousand
+ * nucleotides and is measured by {@link PdbBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelBenchmark {
+    @Param({"A_DNA", "B_DNA", "A_RNA"})
+    public AbstractModel.Model model;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int length;
+
+    private String query;
+    private PackedSequence packedQuery;
+
+    @Setup
+    public void setup() {
+        query = Sequences.random(model, length);
+        packedQuery = PackedSequence.of(query);
+    }
+
+    @Benchmark
+    public AbstractModel.Helix createModel() {
+        return AbstractModel.createModel(model, query);
+    }
+
+    @Benchmark
+    public HelixBuffer createHelixBuffer() {
+        return AbstractModel.createHelixBuffer(model, query);
+    }
+
+    @Benchmark
+    public HelixBuffer createHelixBufferPacked() {
+        return AbstractModel.createHelixBuffer(model, packedQuery);
+    }
+
+    @Benchmark
+    public HelixBuffer createHelixBufferParallel() {
+        return AbstractModel.createHelixBufferParallel(model, query);
+    }
+
+    @Benchmark
+    public List<String> createModelDump() {
+        return AbstractModel.createModelDump(model, query, 15d);
+    }
+
+    @Benchmark
+    public long writeModelDump() throws IOException {
+        final ByteSink sink = new ByteSink(Sequences.nullChannel(), ByteSink.DEFAULT_CAPACITY);
+        AbstractModel.writeModelDump(model, query, 15d, sink);
+        sink.flush();
+
+        return sink.size();
+    }
+}
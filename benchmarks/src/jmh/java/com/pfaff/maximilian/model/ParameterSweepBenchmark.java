@@ -0,0 +1,96 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.util.ByteSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fitting the helix turn and elevation to a reference, here the model's own PDB file, and the RMSD kernel on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParameterSweepBenchmark {
+    @Param({"B_DNA"})
+    public AbstractModel.Model model;
+
+    @Param({"12", "100"})
+    public int length;
+
+    private String query;
+    private List<PDB.AtomRecord> reference;
+
+    private int atoms;
+    private double[] x;
+    private double[] y;
+    private double[] z;
+    private double[] referenceX;
+    private double[] referenceY;
+    private double[] referenceZ;
+
+    @Setup
+    public void setup() throws IOException {
+        query = Sequences.random(model, length);
+
+        final Path file = Files.createTempFile("benchmark", ".pdb");
+
+        try {
+            try (ByteSink sink = ByteSink.open(file)) {
+                PDB.writeModelPdb(model, query, sink);
+            }
+
+            reference = PDB.readAtoms(file);
+        } finally {
+            Files.delete(file);
+        }
+
+        final HelixBuffer helix = AbstractModel.createHelixBuffer(model, query, true);
+        atoms = helix.atomCount();
+        x = new double[atoms];
+        y = new double[atoms];
+        z = new double[atoms];
+        referenceX = new double[atoms];
+        referenceY = new double[atoms];
+        referenceZ = new double[atoms];
+
+        for (int i = 0; i < atoms; i++) {
+            x[i] = helix.x(i);
+            y[i] = helix.y(i);
+            z[i] = helix.z(i);
+
+            // Atoms inside the PDB file are ordered differently, which is all the kernel needs to have something to do
+            final PDB.AtomRecord atom = reference.get(i);
+            referenceX[i] = atom.x();
+            referenceY[i] = atom.y();
+            referenceZ[i] = atom.z();
+        }
+    }
+
+    /**
+     * 10^4 combinations around the parameters of B-DNA.
+     */
+    @Benchmark
+    public List<ParameterSweep.Candidate> sweep() {
+        return ParameterSweep.run(model, query, reference, new ParameterSweep.Range(310, 409, 1),
+                new ParameterSweep.Range(290, 389, 1), List.of(), 10);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public double rmsd() {
+        return Superposition.rmsd(x, y, z, referenceX, referenceY, referenceZ, atoms);
+    }
+}
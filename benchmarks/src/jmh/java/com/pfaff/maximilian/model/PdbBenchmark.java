@@ -0,0 +1,52 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.util.ByteSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PDB output, from the sequence to the finished lines. Heights above 9999.999 Å and more than 9999 residues do not
+ * fit into the fixed-width fields, so the longest sequence stays below about 2900 base pairs of B-DNA.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdbBenchmark {
+    @Param({"A_DNA", "B_DNA", "A_RNA"})
+    public AbstractModel.Model model;
+
+    @Param({"10", "1000", "2500"})
+    public int length;
+
+    private String query;
+
+    @Setup
+    public void setup() {
+        query = Sequences.random(model, length);
+    }
+
+    @Benchmark
+    public List<String> createModelPdbFileContent() {
+        return PDB.createModelPdbFileContent(model, query);
+    }
+
+    @Benchmark
+    public long writeModelPdb() throws IOException {
+        final ByteSink sink = new ByteSink(Sequences.nullChannel(), ByteSink.DEFAULT_CAPACITY);
+        PDB.writeModelPdb(model, query, sink);
+        sink.flush();
+
+        return sink.size();
+    }
+}
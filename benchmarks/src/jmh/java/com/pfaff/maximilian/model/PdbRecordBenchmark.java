@@ -0,0 +1,56 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cartesian conversion and formatting of ATOM records on their own, with the model already calculated.
+ * The lengths stay within the width of the coordinate fields, like in {@link PdbBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PdbRecordBenchmark {
+    @Param({"A_DNA", "B_DNA", "A_RNA"})
+    public AbstractModel.Model model;
+
+    @Param({"10", "1000", "2500"})
+    public int length;
+
+    private HelixBuffer helix;
+    private String[] atomNames;
+    private byte[] record;
+
+    @Setup
+    public void setup() {
+        helix = AbstractModel.createHelixBuffer(model, Sequences.random(model, length));
+        atomNames = PDB.atomNames(model.atomTable());
+        record = new byte[PdbRecordEncoder.RECORD_LENGTH];
+    }
+
+    @Benchmark
+    public int encodeAtoms() {
+        int checksum = 0;
+
+        for (int atom = 0; atom < helix.atomCount(); atom++) {
+            final double r = helix.radius(atom);
+            final int theta = helix.scaledTheta(atom);
+
+            PdbRecordEncoder.encodeAtom(record, 0, atom % 100_000 + 1, atomNames[helix.nameIndex(atom)],
+                    'A', 'A', atom % 1000 + 1, r * TrigTable.cos(theta), r * TrigTable.sin(theta), helix.height(atom));
+
+            checksum += record[40];
+        }
+
+        return checksum;
+    }
+}
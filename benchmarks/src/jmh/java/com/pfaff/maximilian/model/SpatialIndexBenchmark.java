@@ -0,0 +1,52 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the cell list over a helix and the queries on top of it, which should all grow linearly with the length.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpatialIndexBenchmark {
+    @Param({"B_DNA"})
+    public AbstractModel.Model model;
+
+    @Param({"1000", "100000"})
+    public int length;
+
+    private HelixBuffer helix;
+    private SpatialIndex index;
+
+    @Setup
+    public void setup() {
+        helix = AbstractModel.createHelixBuffer(model, Sequences.random(model, length), true);
+        index = SpatialIndex.of(helix, SpatialIndex.DEFAULT_CLASH_DISTANCE);
+    }
+
+    @Benchmark
+    public SpatialIndex build() {
+        return SpatialIndex.of(helix, SpatialIndex.DEFAULT_CLASH_DISTANCE);
+    }
+
+    @Benchmark
+    public List<SpatialIndex.Clash> clashes() {
+        return index.clashes(SpatialIndex.DEFAULT_CLASH_DISTANCE);
+    }
+
+    @Benchmark
+    public List<SpatialIndex.Contact> contacts() {
+        return index.contacts(4d);
+    }
+}
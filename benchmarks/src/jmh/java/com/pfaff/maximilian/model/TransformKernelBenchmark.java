@@ -0,0 +1,54 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.Sequences;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Both strands written into a preallocated buffer by the scalar and the vectorized kernel, with and without Cartesian
+ * coordinates. The vectorized kernel falls back to the scalar one if the incubator module is missing from the forked JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransformKernelBenchmark {
+    @Param({"B_DNA"})
+    public AbstractModel.Model model;
+
+    @Param({"10000"})
+    public int length;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"false", "true"})
+    public boolean cartesian;
+
+    private String query;
+    private HelixBuffer buffer;
+    private TransformKernel transformKernel;
+
+    @Setup
+    public void setup() {
+        query = Sequences.random(model, length);
+        buffer = AbstractModel.createHelixBuffer(model, query, cartesian);
+        transformKernel = kernel.equals("vector") ? TransformKernel.vectorOrScalar() : TransformKernel.SCALAR;
+    }
+
+    @Benchmark
+    public HelixBuffer transform() {
+        buffer.clear();
+        AbstractModel.fillStrand(buffer, query, 0, length, 1, transformKernel);
+        AbstractModel.fillStrand(buffer, query, 0, length, -1, transformKernel);
+
+        return buffer;
+    }
+}
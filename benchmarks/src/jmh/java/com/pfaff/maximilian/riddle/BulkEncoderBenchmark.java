@@ -0,0 +1,90 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.util.ByteSink;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Back-translation of a proteome-sized FASTA input with a given number of threads, next to encoding the same peptides
+ * one by one with {@link DNA_Encoder#encode(String)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkEncoderBenchmark {
+    // Average number of amino acids per peptide, about the one of the human proteome
+    private static final int PEPTIDE_LENGTH = 500;
+
+    @Param({"1000"})
+    public int peptides;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private String[] sequences;
+    private String fasta;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        final String residues = Sequences.random("ACDEFGHIKLMNPQRSTVWY", peptides * PEPTIDE_LENGTH);
+        final StringBuilder builder = new StringBuilder();
+
+        sequences = new String[peptides];
+
+        for (int i = 0; i < peptides; i++) {
+            // Lengths between half and one and a half times the average
+            final int length = PEPTIDE_LENGTH / 2 + i * 7919 % PEPTIDE_LENGTH;
+            final int from = i * PEPTIDE_LENGTH / 2;
+
+            sequences[i] = "M" + residues.substring(from, from + length - 1);
+            builder.append(">peptide ").append(i).append('\n');
+
+            for (int j = 0; j < length; j += 60) {
+                builder.append(sequences[i], j, Math.min(j + 60, length)).append('\n');
+            }
+        }
+
+        fasta = builder.toString();
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long encodeBulk() throws IOException {
+        try (ByteSink sink = new ByteSink(Sequences.nullChannel(), ByteSink.DEFAULT_CAPACITY)) {
+            BulkEncoder.encode(new BufferedReader(new StringReader(fasta)), sink, 42, pool, 2 * threads + 1);
+
+            return sink.size();
+        }
+    }
+
+    @Benchmark
+    public long encodeEach() {
+        long length = 0;
+
+        for (String sequence : sequences) {
+            length += DNA_Encoder.encode(sequence).length();
+        }
+
+        return length;
+    }
+}
@@ -0,0 +1,62 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.model.PackedSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Back-translation and translation. The encoder does not depend on a model, so only the length is a parameter.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DNA_EncoderBenchmark {
+    // Number of base pairs of the coding strand, the peptide has a third as many amino acids
+    @Param({"10", "1000", "100000", "1000000"})
+    public int length;
+
+    private String peptide;
+    private String codingStrand;
+    private PackedSequence packedCodingStrand;
+
+    @Setup
+    public void setup() {
+        peptide = "M" + Sequences.random("ACDEFGHIKLMNPQRSTVWY", Math.max(length / 3 - 2, 0));
+        codingStrand = DNA_Encoder.encode(peptide);
+        packedCodingStrand = PackedSequence.of(codingStrand);
+    }
+
+    @Benchmark
+    public String encode() {
+        return DNA_Encoder.encode(peptide);
+    }
+
+    @Benchmark
+    public String decode() {
+        return DNA_Encoder.decode(codingStrand);
+    }
+
+    @Benchmark
+    public String decodePacked() {
+        return DNA_Encoder.decode(packedCodingStrand);
+    }
+
+    @Benchmark
+    public PackedSequence pack() {
+        return PackedSequence.of(codingStrand);
+    }
+
+    @Benchmark
+    public PackedSequence reverseComplement() {
+        return packedCodingStrand.reverseComplement();
+    }
+}
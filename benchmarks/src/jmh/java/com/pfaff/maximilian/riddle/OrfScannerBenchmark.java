@@ -0,0 +1,54 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.model.PackedSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Six-frame scan of a random sequence with a given number of threads. Random sequences have a stop codon about every 64
+ * codons, so the minimum length is kept low enough that open reading frames are found and translated as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OrfScannerBenchmark {
+    @Param({"10000000"})
+    public int length;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private PackedSequence sequence;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setup() {
+        sequence = PackedSequence.of(Sequences.random("ACGT", length));
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Benchmark
+    public long scan() {
+        final long[] orfs = {0};
+
+        OrfScanner.scan(sequence, 30, pool, 2 * threads + 1, orf -> orfs[0]++);
+
+        return orfs[0];
+    }
+}
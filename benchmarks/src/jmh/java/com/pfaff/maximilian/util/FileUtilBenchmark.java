@@ -0,0 +1,54 @@
+package com.pfaff.maximilian.util;
+
+import com.pfaff.maximilian.Sequences;
+import com.pfaff.maximilian.model.AbstractModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writing finished tables to disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileUtilBenchmark {
+    @Param({"A_DNA", "B_DNA", "A_RNA"})
+    public AbstractModel.Model model;
+
+    @Param({"10", "1000", "100000", "1000000"})
+    public int length;
+
+    private List<String> lines;
+    private File file;
+
+    @Setup
+    public void setup() throws IOException {
+        lines = AbstractModel.createModelDump(model, Sequences.random(model, length), 15d);
+        file = Files.createTempFile("benchmark", ".tsv").toFile();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long dumpToFile() throws IOException {
+        FileUtil.dumpToFile(file, lines);
+
+        return file.length();
+    }
+}
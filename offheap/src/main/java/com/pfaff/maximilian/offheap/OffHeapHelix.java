@@ -0,0 +1,346 @@
+package com.pfaff.maximilian.offheap;
+
+import com.pfaff.maximilian.model.AbstractModel;
+import com.pfaff.maximilian.model.HelixFile;
+
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A model whose coordinates live in a memory segment outside the Java heap. The content of the segment is a complete
+ * {@link HelixFile}, so a helix that is mapped from a file can be opened by other processes as well, and every helix
+ * file can be mapped as an off-heap helix.
+ * <p>
+ * The helix is only valid as long as the arena of its segment is alive; all views fail once the arena is closed.
+ * Only the chunk of nucleotides that is being calculated and the atom names are ever held on the heap.
+ */
+public final class OffHeapHelix {
+    private static final ValueLayout.OfInt INT = ValueLayout.JAVA_INT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+    private static final ValueLayout.OfShort SHORT = ValueLayout.JAVA_SHORT_UNALIGNED.withOrder(ByteOrder.LITTLE_ENDIAN);
+
+    private final MemorySegment segment;
+    private final AbstractModel.Model model;
+    private final String[] atomNames;
+    private final HelixFile.Header header;
+
+    private final boolean delta;
+    private final int nucleotideCount;
+    private final int firstStrandLength;
+    private final int atomCount;
+    private final int sugarAtoms;
+    private final int phosphateAtoms;
+
+    private final long letters;
+    private final long strands;
+    private final long atomStarts;
+    private final long radius;
+    private final long theta;
+    private final long height;
+    private final long names;
+
+    /**
+     * Calculates a model straight into a new segment of the arena, e.g. {@link Arena#ofConfined()} for a single
+     * thread or {@link Arena#ofShared()} to hand it to others.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param arena The arena that owns the segment and thereby decides how long the helix lives.
+     * @return The helix.
+     */
+    public static OffHeapHelix create(AbstractModel.Model model, CharSequence query, Arena arena) throws IOException {
+        final MemorySegment segment = arena.allocate(HelixFile.size(model, query, 0), Long.BYTES);
+
+        try (SegmentChannel channel = new SegmentChannel(segment)) {
+            HelixFile.write(model, query, channel, 0);
+        }
+
+        return new OffHeapHelix(segment);
+    }
+
+    /**
+     * Calculates a model straight into a file that is mapped into memory. The file can be opened with
+     * {@link HelixFile#open(Path)} or mapped again with {@link OffHeapHelix#map(Path, Arena)} afterwards.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param path The file that is being written to. It is created or truncated.
+     * @param arena The arena that decides how long the file stays mapped.
+     * @return The helix.
+     */
+    public static OffHeapHelix create(AbstractModel.Model model, CharSequence query, Path path, Arena arena)
+            throws IOException {
+        final long size = HelixFile.size(model, query, 0);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final MemorySegment segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size, arena);
+
+            try (SegmentChannel segmentChannel = new SegmentChannel(segment)) {
+                HelixFile.write(model, query, segmentChannel, 0);
+            }
+
+            return new OffHeapHelix(segment);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link HelixFile#write} or {@link OffHeapHelix#create(AbstractModel.Model, CharSequence, Path, Arena)}.
+     * @param path The file.
+     * @param arena The arena that decides how long the file stays mapped.
+     * @return The helix, which is read-only.
+     */
+    public static OffHeapHelix map(Path path, Arena arena) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new OffHeapHelix(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size(), arena));
+        }
+    }
+
+    /**
+     * @param segment A segment holding the content of a {@link HelixFile}, e.g. one that another process has written to shared memory.
+     * @return A view of the segment.
+     */
+    public static OffHeapHelix of(MemorySegment segment) {
+        return new OffHeapHelix(segment);
+    }
+
+    private OffHeapHelix(MemorySegment segment) {
+        try (SegmentChannel channel = new SegmentChannel(segment)) {
+            header = HelixFile.Header.read(channel);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Segment does not hold a valid helix file: " + e.getMessage(), e);
+        }
+
+        this.segment = segment;
+
+        model = header.model();
+        atomNames = header.atomNames().toArray(String[]::new);
+
+        nucleotideCount = header.nucleotideCount();
+        firstStrandLength = header.firstStrandLength();
+        atomCount = header.atomCount();
+        sugarAtoms = header.sugarAtoms();
+        phosphateAtoms = header.phosphateAtoms();
+
+        final HelixFile.Layout layout = header.layout();
+
+        delta = layout.delta();
+        letters = layout.letters();
+        strands = layout.strands();
+        atomStarts = layout.atomStarts();
+        radius = layout.radius();
+        theta = layout.theta();
+        height = layout.height();
+        names = layout.names();
+    }
+
+    /**
+     * @return The segment holding the helix file.
+     */
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    /**
+     * @return The DNA/ RNA model of the atoms.
+     */
+    public AbstractModel.Model model() {
+        return model;
+    }
+
+    /**
+     * @return Number of nucleotides across both strands.
+     */
+    public int nucleotideCount() {
+        return nucleotideCount;
+    }
+
+    /**
+     * @return Number of atoms across both strands.
+     */
+    public int atomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @return The nucleotides of the first strand, read from the segment on access.
+     */
+    public List<Nucleotide> strand1() {
+        return new Strand(0, firstStrandLength);
+    }
+
+    /**
+     * @return The nucleotides of the complementary strand, read from the segment on access, or {@code null} for RNA.
+     */
+    public List<Nucleotide> strand2() {
+        return firstStrandLength == nucleotideCount ? null : new Strand(firstStrandLength, nucleotideCount - firstStrandLength);
+    }
+
+    /**
+     * @param index Index of a nucleotide, the first strand before the second one.
+     * @return A view of the nucleotide.
+     */
+    public Nucleotide nucleotide(int index) {
+        return new Nucleotide(this, Objects.checkIndex(index, nucleotideCount));
+    }
+
+    /**
+     * View of a single nucleotide, the off-heap counterpart of {@link AbstractModel.Nucleotide}.
+     * @param helix The helix.
+     * @param index Index of the nucleotide, the first strand before the second one.
+     */
+    public record Nucleotide(OffHeapHelix helix, int index) {
+        /**
+         * @return One-letter code of the nucleotide.
+         */
+        public char letter() {
+            return (char) helix.segment.get(ValueLayout.JAVA_BYTE, helix.letters + index);
+        }
+
+        /**
+         * @return The strand the nucleotide belongs to, either 1 or 2.
+         */
+        public int strand() {
+            return helix.segment.get(ValueLayout.JAVA_BYTE, helix.strands + index);
+        }
+
+        /**
+         * @return The atoms of the (deoxy)ribose, read from the segment on access.
+         */
+        public List<Atom> sugar() {
+            final int start = atomStart();
+
+            return helix.atoms(index, start, start + helix.sugarAtoms);
+        }
+
+        /**
+         * @return The atoms of the phosphate, read from the segment on access.
+         */
+        public List<Atom> phosphate() {
+            final int start = atomStart() + helix.sugarAtoms;
+
+            return helix.atoms(index, start, start + helix.phosphateAtoms);
+        }
+
+        /**
+         * @return The atoms of the nucleic base, read from the segment on access.
+         */
+        public List<Atom> base() {
+            return helix.atoms(index, atomStart() + helix.sugarAtoms + helix.phosphateAtoms, atomEnd());
+        }
+
+        /**
+         * @return A copy of the nucleotide on the heap.
+         */
+        public AbstractModel.Nucleotide toNucleotide() {
+            return new AbstractModel.Nucleotide(letter(), coords(sugar()), coords(phosphate()), coords(base()));
+        }
+
+        private int atomStart() {
+            return helix.segment.get(INT, helix.atomStarts + (long) index * Integer.BYTES);
+        }
+
+        private int atomEnd() {
+            return helix.segment.get(INT, helix.atomStarts + (index + 1L) * Integer.BYTES);
+        }
+
+        private static List<AbstractModel.CylinderCoords> coords(List<Atom> atoms) {
+            final List<AbstractModel.CylinderCoords> coords = new ArrayList<>(atoms.size());
+
+            for (Atom atom : atoms) {
+                coords.add(atom.toCylinderCoords());
+            }
+
+            return coords;
+        }
+    }
+
+    /**
+     * View of a single atom, the off-heap counterpart of {@link AbstractModel.CylinderCoords}.
+     * @param helix The helix.
+     * @param nucleotide Index of the nucleotide the atom belongs to.
+     * @param index Index of the atom.
+     */
+    public record Atom(OffHeapHelix helix, int nucleotide, int index) {
+        /**
+         * @return Name of the atom.
+         */
+        public String atom() {
+            return helix.atomNames[helix.segment.get(SHORT, helix.names + (long) index * Short.BYTES)];
+        }
+
+        /**
+         * @return Distance from the helical axis, in Ångström.
+         */
+        public double radius() {
+            return (helix.delta ? helix.segment.get(SHORT, helix.radius + (long) index * Short.BYTES)
+                    : helix.segment.get(INT, helix.radius + (long) index * Integer.BYTES)) / 100d;
+        }
+
+        /**
+         * @return Angle around the axis, in degrees.
+         */
+        public double theta() {
+            final short scaledTheta = helix.segment.get(SHORT, helix.theta + (long) index * Short.BYTES);
+
+            return (helix.delta ? HelixFile.Header.deltaTheta(helix.header.frameTheta(nucleotide), scaledTheta) : scaledTheta) / 10d;
+        }
+
+        /**
+         * @return Height along the axis, in Ångström.
+         */
+        public double height() {
+            return (helix.delta
+                    ? helix.header.frameHeight(nucleotide) + helix.segment.get(SHORT, helix.height + (long) index * Short.BYTES)
+                    : helix.segment.get(INT, helix.height + (long) index * Integer.BYTES)) / 100d;
+        }
+
+        /**
+         * @return A copy of the atom on the heap.
+         */
+        public AbstractModel.CylinderCoords toCylinderCoords() {
+            return new AbstractModel.CylinderCoords(atom(), radius(), theta(), height());
+        }
+    }
+
+    private List<Atom> atoms(int nucleotide, int from, int to) {
+        return new AbstractList<>() {
+            @Override
+            public Atom get(int index) {
+                return new Atom(OffHeapHelix.this, nucleotide, from + Objects.checkIndex(index, to - from));
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    private final class Strand extends AbstractList<Nucleotide> {
+        private final int offset;
+        private final int size;
+
+        Strand(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        public Nucleotide get(int index) {
+            return new Nucleotide(OffHeapHelix.this, offset + Objects.checkIndex(index, size));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.pfaff.maximilian.offheap;
+
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Channel over a memory segment of fixed size. Closing the channel does not affect the segment, whose lifetime is
+ * bound to its arena.
+ */
+final class SegmentChannel implements SeekableByteChannel {
+    private final MemorySegment segment;
+    private long position;
+    private boolean open = true;
+
+    SegmentChannel(MemorySegment segment) {
+        this.segment = segment;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws ClosedChannelException {
+        ensureOpen();
+
+        if (position >= segment.byteSize()) {
+            return -1;
+        }
+
+        final int length = (int) Math.min(dst.remaining(), segment.byteSize() - position);
+
+        MemorySegment.ofBuffer(dst).copyFrom(segment.asSlice(position, length));
+        dst.position(dst.position() + length);
+        position += length;
+
+        return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws ClosedChannelException {
+        ensureOpen();
+
+        if (segment.isReadOnly()) {
+            throw new NonWritableChannelException();
+        }
+
+        final int length = src.remaining();
+
+        // Fails with an IndexOutOfBoundsException instead of growing, the size has to be known in advance
+        segment.asSlice(position, length).copyFrom(MemorySegment.ofBuffer(src));
+        src.position(src.position() + length);
+        position += length;
+
+        return length;
+    }
+
+    @Override
+    public long position() throws ClosedChannelException {
+        ensureOpen();
+
+        return position;
+    }
+
+    @Override
+    public SegmentChannel position(long newPosition) throws ClosedChannelException {
+        ensureOpen();
+
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position: " + newPosition);
+        }
+
+        position = newPosition;
+
+        return this;
+    }
+
+    @Override
+    public long size() throws ClosedChannelException {
+        ensureOpen();
+
+        return segment.byteSize();
+    }
+
+    @Override
+    public SegmentChannel truncate(long size) {
+        throw new UnsupportedOperationException("Memory segments have a fixed size");
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open) {
+            throw new ClosedChannelException();
+        }
+    }
+}
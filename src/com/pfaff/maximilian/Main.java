@@ -1,7 +1,268 @@
 package com.pfaff.maximilian;
 
+import com.pfaff.maximilian.batch.BatchJob;
+import com.pfaff.maximilian.batch.BatchRunner;
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.model.AbstractModel;
+import com.pfaff.maximilian.model.ParameterSweep;
+import com.pfaff.maximilian.riddle.BulkEncoder;
+import com.pfaff.maximilian.riddle.FastaTranslator;
+import com.pfaff.maximilian.riddle.OrfScanner;
+import com.pfaff.maximilian.server.ModelServer;
+import com.pfaff.maximilian.util.ByteSink;
+
+import java.io.BufferedReader;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
 public class Main {
-    public static void main(String[] args) {
+    private static final String USAGE = """
+            Usage:
+              batch [-o <output directory>] [-j <parallel jobs>] [-m] [-c <min distance>] [<manifest> | -]
+                  Generates all models listed in the manifest, or read from standard input if it is missing or "-".
+                  Each line has the form <model> <sequence> [extraHeight] [format,format,...], e.g.
+                  A-DNA TCCCCGGGGA 15 pdb,tsv
+                  Formats are pdb, cif, tsv and hlx, and pdb.gz, cif.gz and tsv.gz, which are compressed in parallel
+                  blocks and come with a .gzi block index.
+                  With -m, the time and throughput of every stage and the latency of the jobs are printed after the summary.
+                  With -c, every model is checked for atoms that are not covalently linked but closer than the distance
+                  in Ångström, e.g. 2.2, and the overlapping pairs are listed in the summary.
+              translate <FASTA or sequence file> [<output file>]
+                  Translates every coding strand of the file into a peptide, written to the output file or standard output.
+              encode [-s <seed>] [-j <threads>] <FASTA or peptide file> [<output file>]
+                  Back-translates every peptide of the file, which is either FASTA or one peptide per line, into a
+                  coding strand, written to the output file or standard output. A file name of "-" reads standard input.
+                  The output only depends on the seed, never on the number of threads. Without -s, a random seed is
+                  chosen and printed to standard error.
+              orfs [-m <min length>] <FASTA or sequence file> [<output file>]
+                  Finds the open reading frames of all six frames of every record, from ATG to the stop codon TAA, with
+                  at least the given number of amino acids, by default 100. Their peptides are written as FASTA records
+                  to the output file or standard output.
+              serve [-b <bind address>] [-p <port>] [-m]
+                  Serves models and translations over HTTP until the process is stopped, by default on 127.0.0.1:8080:
+                  GET /model/{A-DNA|B-DNA|A-RNA}/{sequence}.{pdb|cif|tsv}[?extraHeight=15]
+                  GET /encode/{peptide}
+                  GET /decode/{coding strand}
+                  GET /metrics
+                  With -m, the time and throughput of every stage and the latency of the requests are counted for /metrics.
+              sweep [-k <count>] <model> <sequence> <reference PDB> <helix turn> <elevation>
+                  Fits the helix turn (tenths of a degree) and elevation (hundredths of an Ångström) of the model to a
+                  reference structure of the sequence and prints the best k, by default 10, combinations by RMSD in Ångström.
+                  Both parameters are either a single value or <from>:<to>:<step>, e.g. 340:380:1.
+            """;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        switch (args[0]) {
+            case "batch" -> batch(args);
+            case "translate" -> translate(args);
+            case "encode" -> encode(args);
+            case "orfs" -> orfs(args);
+            case "serve" -> serve(args);
+            case "sweep" -> sweep(args);
+            default -> {
+                System.err.print(USAGE);
+                System.exit(2);
+            }
+        }
+    }
+
+    private static void batch(String[] args) throws Exception {
+        Path outputDir = Path.of(".");
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        String manifest = "-";
+        boolean metrics = false;
+        double clashDistance = 0;
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-o" -> outputDir = Path.of(args[++i]);
+                case "-j" -> parallelism = Integer.parseInt(args[++i]);
+                case "-m" -> metrics = true;
+                case "-c" -> clashDistance = Double.parseDouble(args[++i]);
+                default -> manifest = args[i];
+            }
+        }
+
+        final List<BatchJob> jobs;
+
+        try (BufferedReader reader = manifest.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(manifest))) {
+            jobs = BatchRunner.readManifest(reader);
+        }
+
+        if (metrics) {
+            Metrics.enable();
+        }
+
+        final List<BatchRunner.Result> results = new BatchRunner(outputDir, parallelism, clashDistance).run(jobs);
+
+        BatchRunner.printSummary(results, System.out);
+
+        if (metrics) {
+            Metrics.print(System.out);
+        }
+
+        if (results.stream().anyMatch(result -> result.failed() || !result.clashes().isEmpty())) {
+            System.exit(1);
+        }
+    }
+
+    private static void translate(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 3) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        try (ByteSink sink = openOutput(args.length == 3 ? args[2] : null)) {
+            FastaTranslator.translate(Path.of(args[1]), sink);
+        }
+    }
+
+    private static void encode(String[] args) throws Exception {
+        Long seed = null;
+        int parallelism = 0;
+        final List<String> arguments = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-s" -> seed = Long.parseLong(args[++i]);
+                case "-j" -> parallelism = Integer.parseInt(args[++i]);
+                default -> arguments.add(args[i]);
+            }
+        }
+
+        if (arguments.isEmpty() || arguments.size() > 2) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        if (seed == null) {
+            seed = new SplittableRandom().nextLong();
+            System.err.println("Seed: " + seed);
+        }
+
+        final ForkJoinPool pool = parallelism > 0 ? new ForkJoinPool(parallelism) : ForkJoinPool.commonPool();
+
+        try (BufferedReader reader = arguments.get(0).equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Path.of(arguments.get(0)));
+             ByteSink sink = openOutput(arguments.size() == 2 ? arguments.get(1) : null)) {
+            BulkEncoder.encode(reader, sink, seed, pool, 2 * pool.getParallelism() + 1);
+        } finally {
+            if (pool != ForkJoinPool.commonPool()) {
+                pool.close();
+            }
+        }
+    }
+
+    private static void orfs(String[] args) throws Exception {
+        int minLength = OrfScanner.DEFAULT_MIN_LENGTH;
+        final List<String> arguments = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-m")) {
+                minLength = Integer.parseInt(args[++i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+
+        if (arguments.isEmpty() || arguments.size() > 2) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        try (ByteSink sink = openOutput(arguments.size() == 2 ? arguments.get(1) : null)) {
+            OrfScanner.scan(Path.of(arguments.get(0)), minLength, sink);
+        }
+    }
+
+    /**
+     * Opens a sink for the output of a command. Closing a sink on standard output only flushes it, so that output
+     * printed afterwards is not lost.
+     * @param file The output file, or {@code null} for standard output.
+     */
+    private static ByteSink openOutput(String file) throws IOException {
+        if (file != null) {
+            return ByteSink.open(Path.of(file));
+        }
+
+        return new ByteSink(new FilterOutputStream(System.out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        });
+    }
+
+    private static void serve(String[] args) throws Exception {
+        String address = "127.0.0.1";
+        int port = 8080;
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "-b" -> address = args[++i];
+                case "-p" -> port = Integer.parseInt(args[++i]);
+                case "-m" -> Metrics.enable();
+                default -> {
+                    System.err.print(USAGE);
+                    System.exit(2);
+                }
+            }
+        }
+
+        final ModelServer server = new ModelServer(new InetSocketAddress(address, port));
+        server.start();
+
+        System.out.println("Listening on http://" + server.address().getHostString() + ":" + server.address().getPort());
+    }
+
+    private static void sweep(String[] args) throws Exception {
+        int k = 10;
+        final List<String> arguments = new ArrayList<>();
+
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("-k")) {
+                k = Integer.parseInt(args[++i]);
+            } else {
+                arguments.add(args[i]);
+            }
+        }
+
+        if (arguments.size() != 5) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        final List<ParameterSweep.Candidate> candidates = ParameterSweep.run(AbstractModel.Model.of(arguments.get(0)),
+                arguments.get(1), Path.of(arguments.get(2)), ParameterSweep.Range.parse(arguments.get(3)),
+                ParameterSweep.Range.parse(arguments.get(4)), k);
+
+        System.out.println("Helix turn\tElevation\tRMSD");
 
+        for (ParameterSweep.Candidate candidate : candidates) {
+            System.out.printf(Locale.US, "%d\t%d\t%.4f%n", candidate.helixTurn(), candidate.elevation(), candidate.rmsd());
+        }
     }
 }
@@ -0,0 +1,51 @@
+package com.pfaff.maximilian.batch;
+
+import com.pfaff.maximilian.model.AbstractModel;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * A single line of a batch manifest.
+ * @param line Line number inside the manifest, starting at 1.
+ * @param model The DNA/ RNA model.
+ * @param query The DNA/ RNA sequence.
+ * @param extraHeight Additional height offset, if needed.
+ * @param formats All formats the model should be written in.
+ */
+public record BatchJob(int line, AbstractModel.Model model, String query, double extraHeight, Set<OutputFormat> formats) {
+    private static final Set<OutputFormat> DEFAULT_FORMATS = EnumSet.of(OutputFormat.PDB, OutputFormat.TSV);
+
+    /**
+     * Parses a line of the form {@code <model> <sequence> [extraHeight] [format,format,...]}, e.g. "A-DNA TCCCCGGGGA 15 pdb,tsv".
+     * Fields are separated by white space, the height defaults to 0 and the formats to PDB and TSV.
+     * @param line Line number inside the manifest.
+     * @param text Content of the line.
+     * @return The job.
+     */
+    public static BatchJob parse(int line, String text) {
+        final String[] fields = text.trim().split("\\s+");
+
+        if (fields.length < 2 || fields.length > 4) {
+            throw new IllegalArgumentException("Line " + line + ": expected <model> <sequence> [extraHeight] [formats], got \"" + text + "\"");
+        }
+
+        final AbstractModel.Model model = AbstractModel.Model.of(fields[0]);
+        final String query = fields[1];
+        final double extraHeight = fields.length > 2 ? Double.parseDouble(fields[2]) : 0d;
+
+        final Set<OutputFormat> formats;
+
+        if (fields.length > 3) {
+            formats = EnumSet.noneOf(OutputFormat.class);
+
+            for (String format : fields[3].split(",")) {
+                formats.add(OutputFormat.of(format));
+            }
+        } else {
+            formats = DEFAULT_FORMATS;
+        }
+
+        return new BatchJob(line, model, query, extraHeight, formats);
+    }
+}
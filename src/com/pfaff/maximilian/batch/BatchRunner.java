@@ -0,0 +1,243 @@
+package com.pfaff.maximilian.batch;
+
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.model.AbstractModel;
+import com.pfaff.maximilian.model.PDB;
+import com.pfaff.maximilian.model.PackedSequence;
+import com.pfaff.maximilian.model.SpatialIndex;
+import com.pfaff.maximilian.util.FileUtil;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Runs the jobs of a batch manifest without any user interface, each of them on its own virtual thread.
+ */
+public final class BatchRunner {
+    // Longer sequences are shortened inside file names
+    private static final int MAX_QUERY_IN_FILE_NAME = 64;
+
+    // Clashes listed per job inside the summary
+    private static final int MAX_CLASHES_IN_SUMMARY = 10;
+
+    private final Path outputDir;
+    private final Semaphore permits;
+    private final double clashDistance;
+
+    /**
+     * @param outputDir Directory where all files are written to.
+     * @param parallelism Maximum number of jobs that generate their models at the same time.
+     */
+    public BatchRunner(Path outputDir, int parallelism) {
+        this(outputDir, parallelism, 0);
+    }
+
+    /**
+     * @param outputDir Directory where all files are written to.
+     * @param parallelism Maximum number of jobs that generate their models at the same time.
+     * @param clashDistance If positive, every model is checked for atoms that are closer than this distance in Ångström
+     *                      before it is written, see {@link PDB#validateModel}.
+     */
+    public BatchRunner(Path outputDir, int parallelism, double clashDistance) {
+        this.outputDir = outputDir;
+        this.permits = new Semaphore(parallelism);
+        this.clashDistance = clashDistance;
+    }
+
+    /**
+     * The outcome of a single job.
+     * @param job The job.
+     * @param files All files that have been written, none if the job failed.
+     * @param bytes Total number of bytes written.
+     * @param nanos Time the job took, in nanoseconds.
+     * @param error The reason why the job failed, or {@code null} if it succeeded.
+     * @param clashes Atoms of the model that overlap, empty if the model was not validated.
+     */
+    public record Result(BatchJob job, List<Path> files, long bytes, long nanos, Throwable error, List<SpatialIndex.Clash> clashes) {
+        public boolean failed() {
+            return error != null;
+        }
+    }
+
+    /**
+     * Reads a manifest with one job per line. Empty lines and lines starting with '#' are skipped.
+     * @param reader The manifest.
+     * @return All jobs in order.
+     */
+    public static List<BatchJob> readManifest(BufferedReader reader) throws IOException {
+        final List<BatchJob> jobs = new ArrayList<>();
+
+        String line;
+        int lineNumber = 0;
+
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            final String trimmed = line.trim();
+
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+
+            jobs.add(BatchJob.parse(lineNumber, trimmed));
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Runs all jobs concurrently and waits until every one of them has finished.
+     * A failing job does not affect the others.
+     * @param jobs The jobs.
+     * @return The results in the same order as the jobs.
+     */
+    public List<Result> run(List<BatchJob> jobs) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+
+        final List<Future<Result>> futures = new ArrayList<>(jobs.size());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (BatchJob job : jobs) {
+                futures.add(executor.submit(() -> runJob(job)));
+            }
+        }
+
+        final List<Result> results = new ArrayList<>(jobs.size());
+
+        for (Future<Result> future : futures) {
+            try {
+                results.add(future.get());
+            } catch (ExecutionException e) {
+                // Cannot happen, runJob turns every Throwable into a failed result
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        return results;
+    }
+
+    private Result runJob(BatchJob job) throws InterruptedException {
+        final List<Path> files = new ArrayList<>();
+        final List<Path> companionFiles = new ArrayList<>();
+        long bytes = 0;
+
+        permits.acquire();
+
+        final Metrics.Span span = Metrics.start(Stage.JOB, job.model());
+        final long start = System.nanoTime();
+        final long nucleotides = job.model() != AbstractModel.Model.A_RNA ? 2L * job.query().length() : job.query().length();
+
+        try {
+            // Packed once for all formats, an unknown letter only fails this job
+            final PackedSequence query = PackedSequence.of(job.query());
+            final List<SpatialIndex.Clash> clashes = clashDistance > 0
+                    ? PDB.validateModel(job.model(), query, clashDistance) : List.of();
+
+            for (OutputFormat format : job.formats()) {
+                final Path path = reserveFile(job, format);
+
+                files.add(path);
+                companionFiles.addAll(format.companionFiles(path));
+                bytes += format.write(job, query, path);
+            }
+
+            span.end(nucleotides, 0, bytes);
+
+            return new Result(job, files, bytes, System.nanoTime() - start, null, clashes);
+        } catch (Exception | Error e) {
+            // Do not leave incomplete files behind, even if the job ran out of memory or stack
+            for (Path path : files) {
+                delete(path, e);
+            }
+
+            for (Path path : companionFiles) {
+                delete(path, e);
+            }
+
+            span.end(nucleotides, 0, 0);
+
+            return new Result(job, List.of(), 0, System.nanoTime() - start, e, List.of());
+        } finally {
+            permits.release();
+        }
+    }
+
+    private static void delete(Path path, Throwable cause) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException suppressed) {
+            cause.addSuppressed(suppressed);
+        }
+    }
+
+    /**
+     * Creates an empty file with a unique name, so that concurrent jobs with the same sequence never write to the same file.
+     */
+    private Path reserveFile(BatchJob job, OutputFormat format) throws IOException {
+        final String query = job.query().length() <= MAX_QUERY_IN_FILE_NAME ? job.query()
+                : job.query().substring(0, MAX_QUERY_IN_FILE_NAME) + "_" + job.query().length() + "bp";
+        final String fileName = String.format(Locale.US, "Model_%s_%s.%s", job.model(), query, format.extension());
+
+        while (true) {
+            final Path path = FileUtil.resolveUniqueFilePath(outputDir, fileName);
+
+            try {
+                return Files.createFile(path);
+            } catch (FileAlreadyExistsException e) {
+                // Another job was faster, try the next suffix
+            }
+        }
+    }
+
+    /**
+     * Prints one line per job, followed by the clashes of its model if there are any, and a total at the end.
+     * @param results The results of {@link BatchRunner#run(List)}.
+     * @param out Where the summary is printed to.
+     */
+    public static void printSummary(List<Result> results, PrintStream out) {
+        long bytes = 0;
+        int failed = 0;
+        int clashing = 0;
+
+        for (Result result : results) {
+            final BatchJob job = result.job();
+
+            if (result.failed()) {
+                failed++;
+                out.printf(Locale.US, "line %d\t%s\t%d bp\tFAILED\t%s%n", job.line(), job.model(), job.query().length(), result.error());
+            } else {
+                out.printf(Locale.US, "line %d\t%s\t%d bp\t%d files\t%d bytes\t%.1f ms%n", job.line(), job.model(),
+                        job.query().length(), result.files().size(), result.bytes(), result.nanos() / 1e6);
+            }
+
+            if (!result.clashes().isEmpty()) {
+                clashing++;
+                out.printf(Locale.US, "line %d\t%d clashes%n", job.line(), result.clashes().size());
+
+                final List<SpatialIndex.Clash> clashes = result.clashes();
+
+                for (SpatialIndex.Clash clash : clashes.subList(0, Math.min(MAX_CLASHES_IN_SUMMARY, clashes.size()))) {
+                    out.printf(Locale.US, "\t%s%n", clash);
+                }
+            }
+
+            bytes += result.bytes();
+        }
+
+        out.printf(Locale.US, "%d jobs, %d failed, %d with clashes, %d bytes written%n", results.size(), failed, clashing,
+                bytes);
+    }
+}
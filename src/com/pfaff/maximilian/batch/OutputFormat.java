@@ -0,0 +1,228 @@
+package com.pfaff.maximilian.batch;
+
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.model.AbstractModel;
+import com.pfaff.maximilian.model.HelixFile;
+import com.pfaff.maximilian.model.MmCif;
+import com.pfaff.maximilian.model.PackedSequence;
+import com.pfaff.maximilian.util.BlockGzipOutputStream;
+import com.pfaff.maximilian.util.ByteSink;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * All file formats that a batch job can produce.
+ */
+public enum OutputFormat {
+    PDB("pdb") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            try (ByteSink sink = open(path)) {
+                com.pfaff.maximilian.model.PDB.writeModelPdb(job.model(), query, sink);
+
+                return sink.size();
+            }
+        }
+    },
+    CIF("cif") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            try (ByteSink sink = open(path)) {
+                MmCif.writeModelCif(job.model(), query, sink);
+
+                return sink.size();
+            }
+        }
+    },
+    TSV("tsv") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            try (ByteSink sink = open(path)) {
+                AbstractModel.writeModelDump(job.model(), query, job.extraHeight(), sink);
+
+                return sink.size();
+            }
+        }
+    },
+    PDB_GZ("pdb.gz") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            return writeCompressed(path, sink -> com.pfaff.maximilian.model.PDB.writeModelPdb(job.model(), query, sink));
+        }
+    },
+    CIF_GZ("cif.gz") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            return writeCompressed(path, sink -> MmCif.writeModelCif(job.model(), query, sink));
+        }
+    },
+    TSV_GZ("tsv.gz") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            return writeCompressed(path, sink -> AbstractModel.writeModelDump(job.model(), query, job.extraHeight(), sink));
+        }
+    },
+    HELIX("hlx") {
+        @Override
+        public long write(BatchJob job, PackedSequence query, Path path) throws IOException {
+            try (SeekableByteChannel channel = MeasuredChannel.open(path)) {
+                return HelixFile.write(job.model(), query, channel, HelixFile.DELTA);
+            }
+        }
+    };
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return The file extension, without dot.
+     */
+    public String extension() {
+        return extension;
+    }
+
+    /**
+     * @param path The file in this format.
+     * @return The files that {@link #write(BatchJob, PackedSequence, Path)} creates next to it, e.g. the block index of the compressed formats.
+     */
+    public List<Path> companionFiles(Path path) {
+        return extension.endsWith(".gz") ? List.of(BlockGzipOutputStream.indexPath(path)) : List.of();
+    }
+
+    /**
+     * Generates the model of the job and writes it to a file in this format.
+     * @param job The job.
+     * @param query The sequence of the job, packed once for all of its formats.
+     * @param path The file that is being written to. It may already exist and will be overwritten.
+     * @return Number of bytes written.
+     */
+    public abstract long write(BatchJob job, PackedSequence query, Path path) throws IOException;
+
+    /**
+     * Streams the content through a {@link BlockGzipOutputStream}, so the blocks are compressed on other cores while
+     * the model is still being generated and formatted. The block index is written next to the file.
+     * @return Size of the compressed file in bytes.
+     */
+    private static long writeCompressed(Path path, Content content) throws IOException {
+        final BlockGzipOutputStream gzip = new BlockGzipOutputStream(new BufferedOutputStream(
+                Channels.newOutputStream(MeasuredChannel.open(path)), ByteSink.DEFAULT_CAPACITY));
+
+        try (ByteSink sink = new ByteSink(gzip)) {
+            content.write(sink);
+        }
+
+        final Metrics.Span span = Metrics.start(Stage.IO, null);
+        final Path indexPath = BlockGzipOutputStream.indexPath(path);
+
+        gzip.writeIndex(indexPath);
+
+        span.end(0, 0, span.isActive() ? Files.size(indexPath) : 0);
+
+        return Files.size(path);
+    }
+
+    /**
+     * Creates or truncates a file and opens a sink that writes to it, like {@link ByteSink#open(Path)} does.
+     */
+    private static ByteSink open(Path path) throws IOException {
+        return new ByteSink(MeasuredChannel.open(path), ByteSink.DEFAULT_CAPACITY);
+    }
+
+    private interface Content {
+        void write(ByteSink sink) throws IOException;
+    }
+
+    /**
+     * File channel that measures every write as a run of {@link Stage#IO}. The formats are written while the model is
+     * still being generated, so this is the only way to tell the time spent writing apart from the rest.
+     */
+    private static final class MeasuredChannel implements SeekableByteChannel {
+        private final FileChannel channel;
+
+        private MeasuredChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        static MeasuredChannel open(Path path) throws IOException {
+            return new MeasuredChannel(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING));
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            final Metrics.Span span = Metrics.start(Stage.IO, null);
+            final int written = channel.write(src);
+
+            span.end(0, 0, written);
+
+            return written;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * @param extension A file extension, without dot and ignoring case.
+     * @return The format with that extension.
+     */
+    public static OutputFormat of(String extension) {
+        for (OutputFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension)) {
+                return format;
+            }
+        }
+
+        throw new IllegalArgumentException("Unknown format: " + extension.toLowerCase(Locale.US));
+    }
+}
@@ -0,0 +1,82 @@
+package com.pfaff.maximilian.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with logarithmic buckets. Every power of two is split into 16 buckets, so any
+ * percentile is off by less than 1/16 of its value, no matter how long the durations are.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values below SUB_BUCKETS have a bucket of their own, every power of two above gets SUB_BUCKETS buckets
+    private final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BUCKET_BITS) * SUB_BUCKETS);
+
+    /**
+     * @param nanos A duration, negative ones are counted as 0.
+     */
+    void record(long nanos) {
+        counts.incrementAndGet(index(Math.max(nanos, 0)));
+    }
+
+    /**
+     * @param percentile Between 0 and 100.
+     * @return The upper bound of the bucket that holds the percentile, or 0 if nothing has been recorded yet.
+     */
+    long percentile(double percentile) {
+        final long[] snapshot = new long[counts.length()];
+        long total = 0;
+
+        for (int i = 0; i < snapshot.length; i++) {
+            total += snapshot[i] = counts.get(i);
+        }
+
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+
+        return upperBound(snapshot.length - 1);
+    }
+
+    void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        final long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+        // The very last bucket ends at Long.MAX_VALUE
+        return (1L << exponent) + (subBucket + 1) * width - 1;
+    }
+}
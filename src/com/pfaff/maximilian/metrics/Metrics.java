@@ -0,0 +1,205 @@
+package com.pfaff.maximilian.metrics;
+
+import com.pfaff.maximilian.model.AbstractModel;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide counters for every {@link Stage}, which are updated once per run of a stage and never per atom.
+ * Each run is also emitted as a flight recorder event, see {@link StageEvent}.
+ * <p>
+ * The counters are off unless they are switched on with {@code -Dmodellbau.metrics=true} or {@link Metrics#enable()}.
+ * If the flight recorder event is not enabled either, a measurement does not even read the clock.
+ */
+public final class Metrics {
+    // Only read once per run of a stage, so it does not have to be a constant
+    private static volatile boolean enabled = Boolean.getBoolean("modellbau.metrics");
+
+    private static final Counters[] COUNTERS = new Counters[Stage.values().length];
+
+    static {
+        for (int i = 0; i < COUNTERS.length; i++) {
+            COUNTERS[i] = new Counters();
+        }
+    }
+
+    /**
+     * Totals of a stage since the start of the process or the last {@link Metrics#reset()}.
+     * Runs on different threads overlap, so the rates are per thread and not the throughput of the whole process.
+     * @param stage The stage.
+     * @param count Number of runs.
+     * @param nucleotides Number of nucleotides of all runs.
+     * @param atoms Number of atoms of all runs.
+     * @param bytes Number of bytes written by all runs.
+     * @param nanos Time of all runs together, in nanoseconds.
+     * @param p50Nanos Median duration of a single run, in nanoseconds.
+     * @param p99Nanos 99th percentile of the duration of a single run, in nanoseconds.
+     */
+    public record StageStats(Stage stage, long count, long nucleotides, long atoms, long bytes, long nanos,
+                             long p50Nanos, long p99Nanos) {
+        public double atomsPerSecond() {
+            return nanos == 0 ? 0d : atoms * 1e9 / nanos;
+        }
+
+        public double bytesPerSecond() {
+            return nanos == 0 ? 0d : bytes * 1e9 / nanos;
+        }
+    }
+
+    /**
+     * Measures a single run of a stage from now on until {@link Span#end(long, long, long)} is called.
+     * @param stage The stage.
+     * @param model The model, or {@code null} if the stage does not depend on one.
+     * @return A span, which must be ended by the same thread.
+     */
+    public static Span start(Stage stage, AbstractModel.Model model) {
+        final StageEvent event = new StageEvent();
+
+        if (!enabled && !event.isEnabled()) {
+            return Span.NONE;
+        }
+
+        event.begin();
+
+        return new Span(stage, model, event, System.nanoTime());
+    }
+
+    /**
+     * A single run of a stage that is being measured.
+     */
+    public static final class Span {
+        private static final Span NONE = new Span(null, null, null, 0);
+
+        private final Stage stage;
+        private final AbstractModel.Model model;
+        private final StageEvent event;
+        private final long start;
+
+        private Span(Stage stage, AbstractModel.Model model, StageEvent event, long start) {
+            this.stage = stage;
+            this.model = model;
+            this.event = event;
+            this.start = start;
+        }
+
+        /**
+         * @return Whether anything is measured at all. Sizes that are expensive to determine can be skipped otherwise.
+         */
+        public boolean isActive() {
+            return this != NONE;
+        }
+
+        /**
+         * Ends the run and updates the counters.
+         * @param nucleotides Number of nucleotides that have been processed.
+         * @param atoms Number of atoms that have been processed.
+         * @param bytes Number of bytes that have been written.
+         */
+        public void end(long nucleotides, long atoms, long bytes) {
+            if (this == NONE) {
+                return;
+            }
+
+            final long nanos = System.nanoTime() - start;
+
+            if (enabled) {
+                COUNTERS[stage.ordinal()].add(nanos, nucleotides, atoms, bytes);
+            }
+
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.stage = stage.name();
+                event.model = model == null ? null : model.toString();
+                event.nucleotides = nucleotides;
+                event.atoms = atoms;
+                event.bytes = bytes;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Switches the counters on for the rest of the process, e.g. for a command line option.
+     * Runs that have already started are not counted.
+     */
+    public static void enable() {
+        enabled = true;
+    }
+
+    /**
+     * @return The totals of all stages, in the order of {@link Stage}.
+     */
+    public static List<StageStats> snapshot() {
+        final List<StageStats> stats = new ArrayList<>(COUNTERS.length);
+
+        for (Stage stage : Stage.values()) {
+            stats.add(COUNTERS[stage.ordinal()].snapshot(stage));
+        }
+
+        return stats;
+    }
+
+    /**
+     * Prints one line per stage that has run at least once.
+     * @param out Where the counters are printed to.
+     */
+    public static void print(PrintStream out) {
+        for (StageStats stats : snapshot()) {
+            if (stats.count() == 0) {
+                continue;
+            }
+
+            out.printf(Locale.US, "%s\t%d runs\t%d nucleotides\t%d atoms\t%d bytes\t%.0f atoms/s\t%.0f bytes/s\tp50 %.3f ms\tp99 %.3f ms%n",
+                    stats.stage(), stats.count(), stats.nucleotides(), stats.atoms(), stats.bytes(),
+                    stats.atomsPerSecond(), stats.bytesPerSecond(), stats.p50Nanos() / 1e6, stats.p99Nanos() / 1e6);
+        }
+    }
+
+    /**
+     * Sets all counters back to 0. Runs that end at the same time may or may not be counted.
+     */
+    public static void reset() {
+        for (Counters counters : COUNTERS) {
+            counters.reset();
+        }
+    }
+
+    private static final class Counters {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nucleotides = new LongAdder();
+        private final LongAdder atoms = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        void add(long nanos, long nucleotides, long atoms, long bytes) {
+            this.count.increment();
+            this.nucleotides.add(nucleotides);
+            this.atoms.add(atoms);
+            this.bytes.add(bytes);
+            this.nanos.add(nanos);
+            this.latencies.record(nanos);
+        }
+
+        StageStats snapshot(Stage stage) {
+            return new StageStats(stage, count.sum(), nucleotides.sum(), atoms.sum(), bytes.sum(), nanos.sum(),
+                    latencies.percentile(50), latencies.percentile(99));
+        }
+
+        void reset() {
+            count.reset();
+            nucleotides.reset();
+            atoms.reset();
+            bytes.reset();
+            nanos.reset();
+            latencies.reset();
+        }
+    }
+
+    private Metrics() {}
+}
@@ -0,0 +1,30 @@
+package com.pfaff.maximilian.metrics;
+
+/**
+ * The stages of a generation run that are measured by {@link Metrics}.
+ */
+public enum Stage {
+    /**
+     * Calculating the coordinates of all atoms, e.g. {@code createModel} or {@code createHelixBuffer}.
+     * The streaming writers calculate the model chunk by chunk, and every chunk is a run of its own.
+     */
+    GEOMETRY,
+    /**
+     * Turning a model into the lines or bytes of a file format. The streaming writers calculate the model chunk by chunk
+     * while they format it, so for them this stage includes the geometry runs of all chunks.
+     */
+    FORMAT,
+    /**
+     * Writing finished lines to a file. The batch formats write while they format, and every write of a full buffer
+     * is a run of its own, which is also included in the surrounding format run.
+     */
+    IO,
+    /**
+     * A whole batch job from the start of its first stage to the end of its last one, including failed jobs.
+     */
+    JOB,
+    /**
+     * A whole HTTP request of the server, from handling the request to the end of the response.
+     */
+    REQUEST
+}
@@ -0,0 +1,36 @@
+package com.pfaff.maximilian.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event for a single run of a {@link Stage}, e.g. {@code java -XX:StartFlightRecording ...}.
+ * As long as the event is not enabled in the recording settings, creating and committing it costs next to nothing.
+ */
+@Name("com.pfaff.maximilian.Stage")
+@Label("Modellbau Stage")
+@Category("Modellbau")
+@Description("Duration and size of a single stage of a model generation")
+@StackTrace(false)
+final class StageEvent extends Event {
+    @Label("Stage")
+    String stage;
+
+    @Label("Model")
+    String model;
+
+    @Label("Nucleotides")
+    long nucleotides;
+
+    @Label("Atoms")
+    long atoms;
+
+    @Label("Bytes Written")
+    @DataAmount
+    long bytes;
+}
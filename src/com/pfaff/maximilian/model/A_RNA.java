@@ -51,6 +51,14 @@ class A_RNA extends AbstractModel {
     private static final Value G = new Value(namesGuanine, coordsGuanine);
     private static final Value C = new Value(namesCytosine, coordsCytosine);
 
+    /**
+     * @return The one-letter codes of all nucleic bases that can be evaluated.
+     */
+    @Override
+    protected String bases() {
+        return "AUGC";
+    }
+
     /**
      * @param letterCode One-letter code of a nucleic base.
      * @return The atom names and base coordinates of the given nucleic base.
@@ -1,18 +1,26 @@
 package com.pfaff.maximilian.model;
 
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.util.ByteSink;
 import com.pfaff.maximilian.util.FileUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Objects;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 public abstract class AbstractModel {
-    private static final int UP = 1;
-    private static final int DOWN = -1;
+    static final int UP = 1;
+    static final int DOWN = -1;
 
     /**
      * @return The angle that the helix turns with each nucleotide times 10.
@@ -40,6 +48,11 @@ public abstract class AbstractModel {
      */
     protected abstract Value eval(char letterCode);
 
+    /**
+     * @return The one-letter codes of all nucleic bases that can be evaluated.
+     */
+    protected abstract String bases();
+
     /**
      * Container for all implementations of this class.
      */
@@ -51,6 +64,8 @@ public abstract class AbstractModel {
         private final String name;
         private final Supplier<AbstractModel> model;
 
+        private volatile AtomTable atomTable;
+
         Model(String name, Supplier<AbstractModel> model) {
             this.name = name;
             this.model = model;
@@ -61,9 +76,36 @@ public abstract class AbstractModel {
             return name;
         }
 
+        /**
+         * @param name Either the display name, e.g. "A-DNA", or the name of the constant, e.g. "A_DNA", ignoring case.
+         * @return The model with that name.
+         */
+        public static Model of(String name) {
+            for (Model model : values()) {
+                if (model.name.equalsIgnoreCase(name) || model.name().equalsIgnoreCase(name)) {
+                    return model;
+                }
+            }
+
+            throw new IllegalArgumentException("Unknown model: " + name);
+        }
+
         AbstractModel getModel() {
             return model.get();
         }
+
+        /**
+         * @return The names of all atoms of this model, built on first use.
+         */
+        AtomTable atomTable() {
+            AtomTable table = atomTable;
+
+            if (table == null) {
+                atomTable = table = new AtomTable(getModel());
+            }
+
+            return table;
+        }
     }
 
     /**
@@ -144,6 +186,32 @@ public abstract class AbstractModel {
         public String toString(double scale, double extraHeight) {
             return String.format(Locale.US, "%s\t%.2f\t%.1f\t%.1f\t%.2f\t%.1f", atom, radius, radius * scale, theta, height, height * scale + extraHeight);
         }
+
+        /**
+         * @return Cartesian x coordinate, the same value that the writers use.
+         */
+        public double x() {
+            return radius * TrigTable.cos(scaledTheta());
+        }
+
+        /**
+         * @return Cartesian y coordinate, the same value that the writers use.
+         */
+        public double y() {
+            return radius * TrigTable.sin(scaledTheta());
+        }
+
+        /**
+         * @return Cartesian z coordinate, which is the same as the height.
+         */
+        public double z() {
+            return height;
+        }
+
+        // Angles of the model are multiples of a tenth of a degree, so this is the exact index into the table
+        private int scaledTheta() {
+            return Math.floorMod((int) Math.round(theta * 10), 3600);
+        }
     }
 
     /**
@@ -198,9 +266,9 @@ public abstract class AbstractModel {
         final String fileName = String.format(Locale.US, "Model_%s_%s.tsv", model, query);
         final File file = FileUtil.resolveUniqueFilePath(dir.toPath(), fileName).toFile();
 
-        final List<String> table = createModelDump(model, query, extraHeight);
-
-        FileUtil.dumpToFile(file, table);
+        try (ByteSink sink = ByteSink.open(file.toPath())) {
+            writeModelDump(model, query, extraHeight, sink);
+        }
     }
 
     /**
@@ -210,48 +278,300 @@ public abstract class AbstractModel {
      * @param extraHeight Additional height offset, if needed.
      * @return A list of all the lines that make up this model.
      */
-    public static List<String> createModelDump(Model model, String query, double extraHeight) {
-        final Helix helix = createModel(model, query);
+    public static List<String> createModelDump(Model model, CharSequence query, double extraHeight) {
+        final HelixBuffer helix = createHelixBuffer(model, query);
+        final Metrics.Span span = Metrics.start(Stage.FORMAT, model);
 
         final List<String> table = new ArrayList<>();
+        final byte[] line = new byte[TsvEncoder.MAX_LINE_LENGTH];
 
-        // From Å to cm
-        final double scalingFactor = 1.25d;
+        table.add(DUMP_HEADER);
 
-        final Consumer<List<Nucleotide>> filler = nucleotides -> {
-            for (Nucleotide nucleotide : nucleotides) {
-                table.add(nucleotide.fullName());
+        table.add(FIRST_STRAND_HEADER);
 
-                table.add("Sugar");
-                for (CylinderCoords coords : nucleotide.sugar()) {
-                    table.add(coords.toString(scalingFactor, extraHeight));
-                }
+        int i = 0;
 
-                table.add("Phosphate");
-                for (CylinderCoords coords : nucleotide.phosphate()) {
-                    table.add(coords.toString(scalingFactor, extraHeight));
-                }
+        for (; i < helix.nucleotideCount() && helix.strand(i) == 1; i++) {
+            dumpNucleotide(table, helix, i, line, extraHeight);
+        }
 
-                table.add("Base");
-                for (CylinderCoords coords : nucleotide.base()) {
-                    table.add(coords.toString(scalingFactor, extraHeight));
-                }
+        if (model != Model.A_RNA) {
+            table.add(SECOND_STRAND_HEADER);
 
-                table.add("");
+            for (; i < helix.nucleotideCount(); i++) {
+                dumpNucleotide(table, helix, i, line, extraHeight);
             }
-        };
+        }
 
-        table.add("Atom\tRadius [Å]\tRadius [cm]\tθ [°]\tHeight [Å]\tHeight [cm]");
+        span.end(helix.nucleotideCount(), helix.atomCount(), 0);
 
-        table.add("3' -> 5'");
-        filler.accept(helix.strand1);
+        return table;
+    }
+
+    /**
+     * Writes the same lines as {@link AbstractModel#createModelDump(Model, CharSequence, double)}, but calculates the
+     * model chunk by chunk and encodes each atom straight into the buffer of the sink.
+     * Neither the helix nor the lines are ever held in memory as a whole.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param extraHeight Additional height offset, if needed.
+     * @param sink The sink that receives the table. It is neither flushed nor closed by this method.
+     */
+    public static void writeModelDump(Model model, CharSequence query, double extraHeight, ByteSink sink) throws IOException {
+        final Metrics.Span span = Metrics.start(Stage.FORMAT, model);
+        final long start = sink.size();
+        final int length = query.length();
+
+        sink.appendLine(DUMP_HEADER);
+
+        sink.appendLine(FIRST_STRAND_HEADER);
+        long atoms = writeStrand(model, query, 0, length, extraHeight, sink);
 
         if (model != Model.A_RNA) {
-            table.add("5' -> 3'");
-            filler.accept(helix.strand2);
+            sink.appendLine(SECOND_STRAND_HEADER);
+            atoms += writeStrand(model, query, length, 2 * length, extraHeight, sink);
         }
 
-        return table;
+        span.end(model != Model.A_RNA ? 2L * length : length, atoms, sink.size() - start);
+    }
+
+    /**
+     * Writes the nucleotides of a range, numbered like inside a {@link HelixBuffer}.
+     * @return The number of atoms that have been written.
+     */
+    private static long writeStrand(Model model, CharSequence query, int from, int to, double extraHeight, ByteSink sink)
+            throws IOException {
+        final long[] atoms = new long[1];
+
+        try {
+            streamModel(model, query, from, to, DUMP_CHUNK_SIZE, helix -> {
+                try {
+                    for (int i = 0; i < helix.nucleotideCount(); i++) {
+                        writeNucleotide(sink, helix, i, extraHeight);
+                    }
+
+                    atoms[0] += helix.atomCount();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return atoms[0];
+    }
+
+    // From Å to cm
+    private static final double SCALING_FACTOR = 1.25d;
+
+    private static final String DUMP_HEADER = "Atom\tRadius [Å]\tRadius [cm]\tθ [°]\tHeight [Å]\tHeight [cm]";
+    private static final String FIRST_STRAND_HEADER = "3' -> 5'";
+    private static final String SECOND_STRAND_HEADER = "5' -> 3'";
+
+    // Number of nucleotides that are calculated at once while streaming
+    private static final int DUMP_CHUNK_SIZE = 256;
+
+    /**
+     * Adds the lines of a single nucleotide to the dump.
+     * @param table The lines of the dump so far.
+     * @param helix The model.
+     * @param nucleotide Index of the nucleotide inside the model.
+     * @param line Reusable array for encoding a single line.
+     * @param extraHeight Additional height offset, if needed.
+     */
+    private static void dumpNucleotide(List<String> table, HelixBuffer helix, int nucleotide, byte[] line, double extraHeight) {
+        table.add(getName(helix.letter(nucleotide)));
+
+        table.add("Sugar");
+        dumpAtoms(table, helix, helix.sugarStart(nucleotide), helix.phosphateStart(nucleotide), line, extraHeight);
+
+        table.add("Phosphate");
+        dumpAtoms(table, helix, helix.phosphateStart(nucleotide), helix.baseStart(nucleotide), line, extraHeight);
+
+        table.add("Base");
+        dumpAtoms(table, helix, helix.baseStart(nucleotide), helix.atomEnd(nucleotide), line, extraHeight);
+
+        table.add("");
+    }
+
+    private static void dumpAtoms(List<String> table, HelixBuffer helix, int from, int to, byte[] line, double extraHeight) {
+        for (int atom = from; atom < to; atom++) {
+            final int length = TsvEncoder.encodeAtom(line, 0, helix.atomName(atom), helix.radius[atom], helix.theta[atom],
+                    helix.height[atom], SCALING_FACTOR, extraHeight);
+
+            table.add(new String(line, 0, length, StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * Writes the lines of a single nucleotide, in the same order as {@link AbstractModel#dumpNucleotide}.
+     */
+    private static void writeNucleotide(ByteSink sink, HelixBuffer helix, int nucleotide, double extraHeight) throws IOException {
+        sink.appendLine(getName(helix.letter(nucleotide)));
+
+        sink.appendLine("Sugar");
+        writeAtoms(sink, helix, helix.sugarStart(nucleotide), helix.phosphateStart(nucleotide), extraHeight);
+
+        sink.appendLine("Phosphate");
+        writeAtoms(sink, helix, helix.phosphateStart(nucleotide), helix.baseStart(nucleotide), extraHeight);
+
+        sink.appendLine("Base");
+        writeAtoms(sink, helix, helix.baseStart(nucleotide), helix.atomEnd(nucleotide), extraHeight);
+
+        sink.newLine();
+    }
+
+    private static void writeAtoms(ByteSink sink, HelixBuffer helix, int from, int to, double extraHeight) throws IOException {
+        for (int atom = from; atom < to; atom++) {
+            sink.ensureCapacity(TsvEncoder.MAX_LINE_LENGTH);
+
+            final int position = TsvEncoder.encodeAtom(sink.array(), sink.position(), helix.atomName(atom),
+                    helix.radius[atom], helix.theta[atom], helix.height[atom], SCALING_FACTOR, extraHeight);
+
+            sink.position(position);
+            sink.newLine();
+        }
+    }
+
+    /**
+     * Replaces single nucleotides of a sequence.
+     * @param model The DNA/ RNA model, which has to know the new letters.
+     * @param query The DNA/ RNA sequence.
+     * @param mutations The substitutions, applied in order.
+     * @return The mutated sequence.
+     * @throws IndexOutOfBoundsException If a mutation lies outside the sequence.
+     * @throws IllegalStateException If a new letter is not known to the model.
+     */
+    public static String mutate(Model model, CharSequence query, List<Mutation> mutations) {
+        checkMutations(model, query.length(), mutations);
+
+        final char[] letters = query.toString().toCharArray();
+
+        for (Mutation mutation : mutations) {
+            letters[mutation.position()] = mutation.letter();
+        }
+
+        return new String(letters);
+    }
+
+    /**
+     * Recalculates only the nucleotides that are affected by the mutations, on both strands. Every other nucleotide is
+     * kept as it is, since the coordinates of a nucleotide only depend on its letter and its index.
+     * @param model The DNA/ RNA model the helix was created with.
+     * @param helix A helix as returned by {@link AbstractModel#createModel(Model, CharSequence)} or
+     * {@link ModelCache#createModel(Model, PackedSequence)}. It is updated in place.
+     * @param mutations The substitutions, applied in order.
+     * @throws IndexOutOfBoundsException If a mutation lies outside the helix. The helix is left unchanged.
+     * @throws IllegalStateException If a new letter is not known to the model. The helix is left unchanged.
+     */
+    public static void mutate(Model model, Helix helix, List<Mutation> mutations) {
+        final AbstractModel modelImpl = model.getModel();
+
+        checkMutations(model, helix.strand1.size(), mutations);
+
+        for (Mutation mutation : mutations) {
+            final int position = mutation.position();
+
+            helix.strand1.set(position, makeNucleotide(modelImpl, mutation.letter(), position, UP));
+
+            if (helix.strand2 != null) {
+                helix.strand2.set(position, makeNucleotide(modelImpl, complementary(mutation.letter()), position, DOWN));
+            }
+        }
+    }
+
+    /**
+     * Recalculates only the nucleotides that are affected by the mutations, on both strands. If a nucleic base has a
+     * different number of atoms than the one it replaces, the atoms behind it are moved, but not recalculated.
+     * @param helix A buffer as returned by {@link AbstractModel#createHelixBuffer(Model, CharSequence)}. It is updated in place.
+     * @param mutations The substitutions, applied in order.
+     * @throws IndexOutOfBoundsException If a mutation lies outside the helix. The buffer is left unchanged.
+     * @throws IllegalStateException If a new letter is not known to the model. The buffer is left unchanged.
+     */
+    public static void mutate(HelixBuffer helix, List<Mutation> mutations) {
+        final boolean doubleStranded = helix.model() != Model.A_RNA;
+        final int length = doubleStranded ? helix.nucleotideCount() / 2 : helix.nucleotideCount();
+
+        checkMutations(helix.model(), length, mutations);
+
+        for (Mutation mutation : mutations) {
+            final int position = mutation.position();
+
+            replaceNucleotide(helix, position, mutation.letter(), position, UP);
+
+            if (doubleStranded) {
+                replaceNucleotide(helix, length + position, complementary(mutation.letter()), position, DOWN);
+            }
+        }
+    }
+
+    /**
+     * Substitution of a single nucleotide of the first strand. The complementary nucleotide of the second strand changes accordingly.
+     * @param position Index of the nucleotide inside the sequence.
+     * @param letter One-letter code of the new nucleotide.
+     */
+    public record Mutation(int position, char letter) {}
+
+    /**
+     * Checks all mutations before the first one is applied, so that a bad one cannot leave a model half-mutated.
+     */
+    private static void checkMutations(Model model, int length, List<Mutation> mutations) {
+        final AtomTable table = model.atomTable();
+
+        for (Mutation mutation : mutations) {
+            Objects.checkIndex(mutation.position(), length);
+            table.base(mutation.letter());
+
+            if (model != Model.A_RNA) {
+                table.base(complementary(mutation.letter()));
+            }
+        }
+    }
+
+    private static void replaceNucleotide(HelixBuffer helix, int nucleotide, char letter, int position, int direction) {
+        final AtomTable table = helix.table;
+        final int start = helix.atomStarts[nucleotide];
+        final int end = helix.atomStarts[nucleotide + 1];
+        final int atoms = table.phosphateOffset() + table.phosphate().names().length + table.base(letter).names().length;
+        final int shift = atoms - (end - start);
+
+        if (shift != 0) {
+            helix.ensureCapacity(0, Math.max(shift, 0));
+
+            final int tail = helix.atomCount - end;
+
+            System.arraycopy(helix.radius, end, helix.radius, end + shift, tail);
+            System.arraycopy(helix.theta, end, helix.theta, end + shift, tail);
+            System.arraycopy(helix.height, end, helix.height, end + shift, tail);
+            System.arraycopy(helix.names, end, helix.names, end + shift, tail);
+
+            if (helix.hasCartesian()) {
+                System.arraycopy(helix.x, end, helix.x, end + shift, tail);
+                System.arraycopy(helix.y, end, helix.y, end + shift, tail);
+                System.arraycopy(helix.z, end, helix.z, end + shift, tail);
+            }
+
+            for (int i = nucleotide + 1; i <= helix.nucleotideCount; i++) {
+                helix.atomStarts[i] += shift;
+            }
+
+            helix.atomCount += shift;
+        }
+
+        helix.letters[nucleotide] = letter;
+        writeStrand(helix, position, position + 1, direction, nucleotide, TransformKernel.DEFAULT);
+    }
+
+    /**
+     * Calculates the coordinates of a single nucleotide the same way {@link AbstractModel#makeStrand} does it.
+     */
+    private static Nucleotide makeNucleotide(AbstractModel model, char letter, int index, int direction) {
+        final int theta = (int) ((long) index * model.helixTurn() % 3600);
+        final int z = index * model.elevation();
+
+        return new Nucleotide(letter, model.getSugarData().eval(theta, z, direction),
+                model.getPhosphateData().eval(theta, z, direction), model.eval(letter).eval(theta, z, direction));
     }
 
     /**
@@ -260,37 +580,422 @@ public abstract class AbstractModel {
      * @param query The DNA/ RNA sequence.
      * @return A helix container holding all the information.
      */
-    public static Helix createModel(Model model, String query) {
+    public static Helix createModel(Model model, CharSequence query) {
+        final Metrics.Span span = Metrics.start(Stage.GEOMETRY, model);
+        final Helix helix = new Helix();
+
+        helix.strand1 = new ArrayList<>(query.length());
+
+        if (model != Model.A_RNA) {
+            helix.strand2 = new ArrayList<>(query.length());
+        }
+
+        final int atoms = streamModel(model, query, helix.strand1::add, helix.strand2 == null ? null : helix.strand2::add);
+
+        span.end(helix.strand1.size() + (helix.strand2 == null ? 0 : helix.strand2.size()), atoms, 0);
+
+        return helix;
+    }
+
+    /**
+     * Calculates the same coordinates as {@link AbstractModel#createModel(Model, CharSequence)}, but hands each nucleotide
+     * to a consumer as soon as it is finished instead of collecting them, so that the helix is never held in memory as a whole.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param strand1 Receives the nucleotides of the first strand in order.
+     * @param strand2 Receives the nucleotides of the complementary strand in order. Not used for RNA and may be {@code null} then.
+     * @return Number of atoms across both strands.
+     */
+    public static int streamModel(Model model, CharSequence query, Consumer<Nucleotide> strand1, Consumer<Nucleotide> strand2) {
+        final int atoms = checkLength(model, query);
+
         final AbstractModel modelImpl = model.getModel();
 
-        final Helix helix = new Helix();
+        makeStrand(modelImpl, query, UP, strand1);
+
+        if (model != Model.A_RNA) {
+            makeStrand(modelImpl, query, DOWN, strand2);
+        }
+
+        return atoms;
+    }
+
+    /**
+     * Calculates the same coordinates as {@link AbstractModel#createModel(Model, CharSequence)}, but stores them in the
+     * primitive columns of a {@link HelixBuffer} instead of one object per atom.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @return A buffer holding both strands, the first strand before the second one.
+     */
+    public static HelixBuffer createHelixBuffer(Model model, CharSequence query) {
+        return createHelixBuffer(model, query, false);
+    }
 
-        final char[] letters = query.toCharArray();
+    /**
+     * Same as {@link AbstractModel#createHelixBuffer(Model, CharSequence)}, but optionally calculates the Cartesian
+     * coordinates of all atoms in the same pass.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param cartesian Whether the buffer should hold Cartesian coordinates as well.
+     * @return A buffer holding both strands, the first strand before the second one.
+     */
+    public static HelixBuffer createHelixBuffer(Model model, CharSequence query, boolean cartesian) {
+        final Metrics.Span span = Metrics.start(Stage.GEOMETRY, model);
+        final int length = query.length();
+        final boolean doubleStranded = model != Model.A_RNA;
+
+        final HelixBuffer buffer = new HelixBuffer(model, doubleStranded ? 2 * length : length, checkLength(model, query),
+                cartesian);
 
-        helix.strand1 = makeStrand(modelImpl, letters, UP);
+        fillStrand(buffer, query, 0, length, UP);
+
+        if (doubleStranded) {
+            fillStrand(buffer, query, 0, length, DOWN);
+        }
+
+        span.end(buffer.nucleotideCount(), buffer.atomCount(), 0);
+
+        return buffer;
+    }
+
+    /**
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @return Number of atoms of the whole model, across both strands.
+     * @throws IllegalStateException If the sequence contains a letter that the model does not know.
+     */
+    public static int countAtoms(Model model, CharSequence query) {
+        final int length = query.length();
+        final AtomTable table = model.atomTable();
+
+        long atoms = countStrandAtoms(table, query, 0, length, UP);
 
         if (model != Model.A_RNA) {
-            final int length = letters.length;
-            final char[] reversed = new char[length];
+            atoms += countStrandAtoms(table, query, 0, length, DOWN);
+        }
+
+        return Math.toIntExact(atoms);
+    }
+
+    /**
+     * Counts the atoms of a part of a single strand. A {@link PackedSequence} is counted by the 2-bit codes of whole
+     * words, so only its four letters are ever looked up.
+     * @param table Atoms of the model.
+     * @param query The DNA/ RNA sequence of the first strand.
+     * @param from Index of the first nucleotide, inclusive.
+     * @param to Index of the last nucleotide, exclusive.
+     * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1, which depends on which strand is being counted.
+     *                  The strand that runs downwards is made of the complementary nucleotides.
+     * @return Number of atoms of that part.
+     * @throws IllegalStateException If the part contains a letter that the model does not know.
+     */
+    static long countStrandAtoms(AtomTable table, CharSequence query, int from, int to, int direction) {
+        final int nucleotideAtoms = table.phosphateOffset() + table.phosphate().names().length;
+        long atoms = (long) (to - from) * nucleotideAtoms;
+
+        if (query instanceof PackedSequence packed) {
+            final int[] counts = packed.codeCounts(from, to);
+
+            for (int code = 0; code < counts.length; code++) {
+                if (counts[code] > 0) {
+                    // Complementing flips both bits of a code
+                    final char letter = packed.letter(direction == UP ? code : 3 - code);
+
+                    atoms += (long) counts[code] * table.base(letter).names().length;
+                }
+            }
+
+            return atoms;
+        }
+
+        for (int i = from; i < to; i++) {
+            final char letter = direction == UP ? query.charAt(i) : complementary(query.charAt(i));
+
+            atoms += table.base(letter).names().length;
+        }
+
+        return atoms;
+    }
+
+    /**
+     * Copies the letters of a part of a single strand into an array. A {@link PackedSequence} is decoded, and for the
+     * second strand complemented, a whole word at a time.
+     * @param query The DNA/ RNA sequence of the first strand.
+     * @param from Index of the first nucleotide, inclusive.
+     * @param to Index of the last nucleotide, exclusive.
+     * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1, which depends on which strand is being copied.
+     *                  The strand that runs downwards is made of the complementary nucleotides.
+     * @param dst The array.
+     * @param offset Index inside the array of the first letter.
+     */
+    static void strandLetters(CharSequence query, int from, int to, int direction, char[] dst, int offset) {
+        if (query instanceof PackedSequence packed) {
+            if (direction == UP) {
+                packed.getChars(from, to, dst, offset);
+            } else {
+                packed.getComplementChars(from, to, dst, offset);
+            }
+
+            return;
+        }
+
+        for (int i = from; i < to; i++) {
+            dst[offset + i - from] = direction == UP ? query.charAt(i) : complementary(query.charAt(i));
+        }
+    }
+
+    /**
+     * Makes sure that every builder can calculate the whole model. Heights are ints in hundredths of an Ångström and
+     * atoms are counted with ints, so a sequence that is too long would otherwise overflow silently in one builder and
+     * fail half-way in another one.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @return Number of atoms of the whole model, across both strands.
+     * @throws IllegalArgumentException If the heights or the number of atoms do not fit into an int.
+     * @throws IllegalStateException If the sequence contains a letter that the model does not know.
+     */
+    public static int checkLength(Model model, CharSequence query) {
+        final AtomTable table = model.atomTable();
+
+        try {
+            Math.addExact(Math.multiplyExact(query.length(), table.model().elevation()), table.maxHeight());
+
+            return countAtoms(model, query);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Sequence of " + query.length() + " nucleotides is too long for " + model, e);
+        }
+    }
+
+    /**
+     * Calculates the model in chunks of consecutive nucleotides of the same strand. All chunks are written into the same
+     * buffer, so memory usage only depends on the chunk size and not on the length of the sequence.
+     * The buffer holds Cartesian coordinates as well, which is what all writers need.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param chunkSize Maximum number of nucleotides per chunk.
+     * @param consumer Receives the buffer each time it holds the next chunk. The buffer is cleared and reused afterwards.
+     */
+    public static void streamModel(Model model, CharSequence query, int chunkSize, Consumer<HelixBuffer> consumer) {
+        final int total = model != Model.A_RNA ? 2 * query.length() : query.length();
+
+        streamModel(model, query, 0, total, chunkSize, consumer);
+    }
+
+    /**
+     * Calculates a part of the model in chunks, just like {@link AbstractModel#streamModel(Model, CharSequence, int, Consumer)}.
+     * Nucleotides are numbered like inside a {@link HelixBuffer}: the first strand from 0 on and the second one right after it.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param from Index of the first nucleotide, inclusive.
+     * @param to Index of the last nucleotide, exclusive.
+     * @param chunkSize Maximum number of nucleotides per chunk.
+     * @param consumer Receives the buffer each time it holds the next chunk. The buffer is cleared and reused afterwards.
+     */
+    static void streamModel(Model model, CharSequence query, int from, int to, int chunkSize, Consumer<HelixBuffer> consumer) {
+        checkLength(model, query);
+
+        final int length = query.length();
+        final HelixBuffer buffer = new HelixBuffer(model, chunkSize, chunkSize * 32, true);
 
-            for (int i = 0; i < length; i++) {
-                reversed[i] = complementary(letters[i]);
+        int nucleotide = from;
+
+        while (nucleotide < to) {
+            // Chunks never cross the border between both strands
+            final boolean first = nucleotide < length;
+            final int position = first ? nucleotide : nucleotide - length;
+            final int end = Math.min(position + chunkSize, first ? Math.min(length, to) : to - length);
+
+            // Every chunk is a run of its own, the consumer is measured by whoever formats or writes the chunks
+            final Metrics.Span span = Metrics.start(Stage.GEOMETRY, model);
+
+            buffer.clear();
+            fillStrand(buffer, query, position, end, first ? UP : DOWN);
+
+            span.end(buffer.nucleotideCount(), buffer.atomCount(), 0);
+            consumer.accept(buffer);
+
+            nucleotide += end - position;
+        }
+    }
+
+    /**
+     * Calculates the coordinates for a part of a single strand and appends them to a buffer.
+     * @param buffer The buffer, which grows if necessary.
+     * @param query The DNA/ RNA sequence of the first strand.
+     * @param from Index of the first nucleotide, inclusive.
+     * @param to Index of the last nucleotide, exclusive.
+     * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1, which depends on which strand is being calculated.
+     *                  The strand that runs downwards is made of the complementary nucleotides.
+     */
+    static void fillStrand(HelixBuffer buffer, CharSequence query, int from, int to, int direction) {
+        fillStrand(buffer, query, from, to, direction, TransformKernel.DEFAULT);
+    }
+
+    /**
+     * Same as {@link AbstractModel#fillStrand(HelixBuffer, CharSequence, int, int, int)} with a given kernel.
+     */
+    static void fillStrand(HelixBuffer buffer, CharSequence query, int from, int to, int direction,
+                           TransformKernel kernel) {
+        final AtomTable table = buffer.table;
+        final int nucleotideAtoms = table.phosphateOffset() + table.phosphate().names().length;
+        final byte strand = (byte) (direction == UP ? 1 : 2);
+
+        final int firstNucleotide = buffer.nucleotideCount;
+
+        buffer.ensureCapacity(to - from, 0);
+        strandLetters(query, from, to, direction, buffer.letters, firstNucleotide);
+
+        // Atom offsets next, so that the coordinates can be written to their final position afterwards
+        for (int i = from; i < to; i++) {
+            final int nucleotide = buffer.nucleotideCount;
+            final int atoms = nucleotideAtoms + table.base(buffer.letters[nucleotide]).names().length;
+
+            buffer.ensureCapacity(0, atoms);
+
+            buffer.nucleotideCount++;
+            buffer.strands[nucleotide] = strand;
+            buffer.atomStarts[nucleotide] = buffer.atomCount;
+            buffer.atomStarts[nucleotide + 1] = buffer.atomCount += atoms;
+        }
+
+        writeStrand(buffer, from, to, direction, firstNucleotide, kernel);
+    }
+
+    /**
+     * Calculates the coordinates for a part of a single strand. The position of each nucleotide only depends on its index,
+     * so any part of a strand can be calculated independently of all others.
+     * @param buffer The buffer, whose letters and atom offsets have already been filled in for all nucleotides of that part.
+     * @param from Index of the first nucleotide inside the strand, inclusive.
+     * @param to Index of the last nucleotide inside the strand, exclusive.
+     * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1, which depends on which strand is being calculated.
+     * @param firstNucleotide Index of the first nucleotide of that part inside the buffer.
+     * @param kernel Places the atoms of each nucleotide.
+     */
+    private static void writeStrand(HelixBuffer buffer, int from, int to, int direction, int firstNucleotide,
+                                    TransformKernel kernel) {
+        final AtomTable table = buffer.table;
+        final AbstractModel model = table.model();
+
+        final int helixTurn = model.helixTurn();
+        final int elevation = model.elevation();
+
+        // The angle is only needed modulo 360°, which keeps it from overflowing on long sequences
+        int theta = (int) ((long) from * helixTurn % 3600);
+        // Cannot overflow, the length has been checked by the builder
+        int z = from * elevation;
+
+        for (int i = from, nucleotide = firstNucleotide; i < to; i++, nucleotide++) {
+            kernel.transform(table.template(buffer.letters[nucleotide]), theta, z, direction, buffer,
+                    buffer.atomStarts[nucleotide]);
+
+            theta += helixTurn;
+
+            if (theta >= 3600) {
+                theta -= 3600;
             }
 
-            helix.strand2 = makeStrand(modelImpl, reversed, DOWN);
+            z += elevation;
+        }
+    }
+
+    /**
+     * Calculates the same coordinates as {@link AbstractModel#createHelixBuffer(Model, CharSequence)}, but splits both strands
+     * into chunks that are calculated concurrently on the common fork/join pool. Every nucleotide is written straight to
+     * its final position inside the preallocated buffer, so the result is identical to the serial one.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @return A buffer holding both strands, the first strand before the second one.
+     */
+    public static HelixBuffer createHelixBufferParallel(Model model, CharSequence query) {
+        final Metrics.Span span = Metrics.start(Stage.GEOMETRY, model);
+        final int length = query.length();
+        final int strandCount = model != Model.A_RNA ? 2 : 1;
+        final int total = strandCount * length;
+
+        final int atoms = checkLength(model, query);
+
+        final AtomTable table = model.atomTable();
+        final int nucleotideAtoms = table.phosphateOffset() + table.phosphate().names().length;
+
+        final HelixBuffer buffer = new HelixBuffer(model, total, 0);
+        final int[] atomStarts = buffer.atomStarts;
+
+        final int chunks = (length + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+
+        IntStream.range(0, strandCount * chunks).parallel().forEach(chunk -> {
+            final int strand = chunk / chunks;
+            final int from = chunk % chunks * PARALLEL_CHUNK_SIZE;
+            final int to = Math.min(from + PARALLEL_CHUNK_SIZE, length);
+            final int first = strand * length + from;
+
+            strandLetters(query, from, to, strand == 0 ? UP : DOWN, buffer.letters, first);
+
+            for (int nucleotide = first; nucleotide < first + to - from; nucleotide++) {
+                buffer.strands[nucleotide] = (byte) (strand + 1);
+
+                // Atoms per nucleotide for now, turned into offsets below
+                atomStarts[nucleotide + 1] = nucleotideAtoms + table.base(buffer.letters[nucleotide]).names().length;
+            }
+        });
+
+        // No partial sum can overflow, since all of them are bounded by the total that has been checked above
+        Arrays.parallelPrefix(atomStarts, Integer::sum);
+
+        buffer.nucleotideCount = total;
+        buffer.ensureCapacity(0, atoms);
+        buffer.atomCount = atoms;
+
+        IntStream.range(0, strandCount * chunks).parallel().forEach(chunk -> {
+            final int strand = chunk / chunks;
+            final int from = chunk % chunks * PARALLEL_CHUNK_SIZE;
+            final int to = Math.min(from + PARALLEL_CHUNK_SIZE, length);
+
+            writeStrand(buffer, from, to, strand == 0 ? UP : DOWN, strand * length + from, TransformKernel.DEFAULT);
+        });
+
+        span.end(buffer.nucleotideCount(), buffer.atomCount(), 0);
+
+        return buffer;
+    }
+
+    /**
+     * Calculates the same helix as {@link AbstractModel#createModel(Model, CharSequence)} with the parallel builder of
+     * {@link AbstractModel#createHelixBufferParallel(Model, CharSequence)}.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @return A helix container holding all the information.
+     */
+    public static Helix createModelParallel(Model model, CharSequence query) {
+        final HelixBuffer buffer = createHelixBufferParallel(model, query);
+        final int length = query.length();
+
+        final Nucleotide[] nucleotides = new Nucleotide[buffer.nucleotideCount()];
+        Arrays.parallelSetAll(nucleotides, buffer::nucleotide);
+
+        final Helix helix = new Helix();
+        helix.strand1 = new ArrayList<>(Arrays.asList(nucleotides).subList(0, length));
+
+        if (model != Model.A_RNA) {
+            helix.strand2 = new ArrayList<>(Arrays.asList(nucleotides).subList(length, 2 * length));
         }
 
         return helix;
     }
 
+    // Number of nucleotides per strand that one task of the parallel builder calculates
+    private static final int PARALLEL_CHUNK_SIZE = 4096;
+    // Number of letters that the object builder decodes at once
+    private static final int LETTER_CHUNK_SIZE = 256;
+
     /**
      * Calculates the coordinates for a single strand.
      * @param model The DNA/ RNA model.
-     * @param letters The DNA/ RNA sequence as char array.
+     * @param query The DNA/ RNA sequence of the first strand.
      * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1, which depends on which strand is being calculated.
-     * @return The coordinates of a single strand.
+     *                  The strand that runs downwards is made of the complementary nucleotides.
+     * @param consumer Receives the coordinates of each nucleotide of the strand.
      */
-    private static List<Nucleotide> makeStrand(AbstractModel model, char[] letters, int direction) {
+    private static void makeStrand(AbstractModel model, CharSequence query, int direction, Consumer<Nucleotide> consumer) {
         final int helixTurn = model.helixTurn();
         final int elevation = model.elevation();
 
@@ -300,21 +1005,31 @@ public abstract class AbstractModel {
         int theta = 0;
         int z = 0;
 
-        final List<Nucleotide> nucleotides = new ArrayList<>(letters.length);
+        final int length = query.length();
+        final char[] letters = new char[Math.min(length, LETTER_CHUNK_SIZE)];
+
+        for (int i = 0; i < length; i++) {
+            if (i % LETTER_CHUNK_SIZE == 0) {
+                strandLetters(query, i, Math.min(i + LETTER_CHUNK_SIZE, length), direction, letters, 0);
+            }
 
-        for (char letter : letters) {
+            final char letter = letters[i % LETTER_CHUNK_SIZE];
             final Value next = model.eval(letter);
 
             final List<CylinderCoords> sugarCoords = sugar.eval(theta, z, direction);
             final List<CylinderCoords> phosphateCoords = phosphate.eval(theta, z, direction);
             final List<CylinderCoords> baseCoords = next.eval(theta, z, direction);
 
-            nucleotides.add(new Nucleotide(letter, sugarCoords, phosphateCoords, baseCoords));
+            consumer.accept(new Nucleotide(letter, sugarCoords, phosphateCoords, baseCoords));
 
+            // Only needed modulo 360°, exactly like inside writeStrand
             theta += helixTurn;
+
+            if (theta >= 3600) {
+                theta -= 3600;
+            }
+
             z += elevation;
         }
-
-        return nucleotides;
     }
 }
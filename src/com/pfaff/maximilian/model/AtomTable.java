@@ -0,0 +1,220 @@
+package com.pfaff.maximilian.model;
+
+import java.util.Arrays;
+
+/**
+ * All atom names of a model in one table: first the sugar, then the phosphate and then every nucleic base that the
+ * model knows. Atoms refer to their name by index, so that they do not need to carry a reference to a string.
+ */
+final class AtomTable {
+    private final AbstractModel model;
+    private final String[] names;
+
+    private final AbstractModel.Value sugar;
+    private final AbstractModel.Value phosphate;
+    private final int phosphateOffset;
+    private final int maxRadius;
+    private final int maxHeight;
+
+    // Indexed by one-letter code, both upper and lower case
+    private final AbstractModel.Value[] bases = new AbstractModel.Value[128];
+    private final int[] baseOffsets = new int[128];
+    private final Template[] templates = new Template[128];
+
+    /**
+     * Base coordinates of all atoms of a nucleotide as columns, in the same order as inside a {@link HelixBuffer}:
+     * sugar, phosphate, base. This is the input of a {@link TransformKernel}.
+     * @param names Index of the name of each atom inside the table.
+     * @param radius Distance from the helical axis, in hundredths of an Ångström.
+     * @param theta Angle around the axis, in tenths of a degree.
+     * @param reversedTheta 3600 minus the angle, for the strand that runs downwards.
+     * @param height Height along the axis, in hundredths of an Ångström.
+     * @param radiusAngstrom The radius in Ångström, i.e. divided by 100 exactly like the scalar conversion does it.
+     */
+    record Template(short[] names, int[] radius, int[] theta, int[] reversedTheta, int[] height, double[] radiusAngstrom) {
+        int size() {
+            return names.length;
+        }
+    }
+
+    AtomTable(AbstractModel model) {
+        this.model = model;
+        this.sugar = model.getSugarData();
+        this.phosphate = model.getPhosphateData();
+        this.phosphateOffset = sugar.names().length;
+
+        final String letters = model.bases();
+        final AbstractModel.Value[] values = new AbstractModel.Value[letters.length()];
+        int size = phosphateOffset + phosphate.names().length;
+
+        Arrays.fill(baseOffsets, -1);
+
+        for (int i = 0; i < values.length; i++) {
+            final char letter = letters.charAt(i);
+            final AbstractModel.Value value = model.eval(letter);
+
+            values[i] = value;
+            bases[letter] = bases[Character.toLowerCase(letter)] = value;
+            baseOffsets[letter] = baseOffsets[Character.toLowerCase(letter)] = size;
+
+            size += value.names().length;
+        }
+
+        this.names = new String[size];
+
+        System.arraycopy(sugar.names(), 0, names, 0, phosphateOffset);
+        System.arraycopy(phosphate.names(), 0, names, phosphateOffset, phosphate.names().length);
+
+        for (int i = 0; i < values.length; i++) {
+            final String[] baseNames = values[i].names();
+            System.arraycopy(baseNames, 0, names, baseOffsets[letters.charAt(i)], baseNames.length);
+        }
+
+        int maxRadius = Math.max(maxAbs(sugar, 0), maxAbs(phosphate, 0));
+        int maxHeight = Math.max(maxAbs(sugar, 2), maxAbs(phosphate, 2));
+
+        for (int i = 0; i < values.length; i++) {
+            final char letter = letters.charAt(i);
+            templates[letter] = templates[Character.toLowerCase(letter)] = template(values[i], baseOffsets[letter]);
+            maxRadius = Math.max(maxRadius, maxAbs(values[i], 0));
+            maxHeight = Math.max(maxHeight, maxAbs(values[i], 2));
+        }
+
+        this.maxRadius = maxRadius;
+        this.maxHeight = maxHeight;
+    }
+
+    private static int maxAbs(AbstractModel.Value value, int column) {
+        int max = 0;
+
+        for (int[] coords : value.coords()) {
+            max = Math.max(max, Math.abs(coords[column]));
+        }
+
+        return max;
+    }
+
+    private Template template(AbstractModel.Value base, int baseOffset) {
+        final int backbone = phosphateOffset + phosphate.names().length;
+        final int size = backbone + base.names().length;
+        final Template template = new Template(new short[size], new int[size], new int[size], new int[size], new int[size],
+                new double[size]);
+
+        copyTemplate(template, sugar, sugarOffset(), sugarOffset());
+        copyTemplate(template, phosphate, phosphateOffset, phosphateOffset);
+        copyTemplate(template, base, backbone, baseOffset);
+
+        return template;
+    }
+
+    private static void copyTemplate(Template template, AbstractModel.Value value, int offset, int nameOffset) {
+        final int[][] coords = value.coords();
+
+        for (int i = 0; i < coords.length; i++) {
+            template.names()[offset + i] = (short) (nameOffset + i);
+            template.radius()[offset + i] = coords[i][0];
+            template.theta()[offset + i] = coords[i][1];
+            template.reversedTheta()[offset + i] = 3600 - coords[i][1];
+            template.height()[offset + i] = coords[i][2];
+            template.radiusAngstrom()[offset + i] = coords[i][0] / 100d;
+        }
+    }
+
+    AbstractModel model() {
+        return model;
+    }
+
+    /**
+     * @return Largest distance of any atom from the helical axis, in hundredths of an Ångström.
+     */
+    int maxRadius() {
+        return maxRadius;
+    }
+
+    /**
+     * @return Largest distance of any atom from the height of its nucleotide, in hundredths of an Ångström.
+     */
+    int maxHeight() {
+        return maxHeight;
+    }
+
+    /**
+     * @return Number of entries in the table.
+     */
+    int size() {
+        return names.length;
+    }
+
+    /**
+     * @param index Index of an entry.
+     * @return The atom name at that index.
+     */
+    String name(int index) {
+        return names[index];
+    }
+
+    AbstractModel.Value sugar() {
+        return sugar;
+    }
+
+    /**
+     * @return Index of the first sugar atom, which is always 0.
+     */
+    int sugarOffset() {
+        return 0;
+    }
+
+    AbstractModel.Value phosphate() {
+        return phosphate;
+    }
+
+    /**
+     * @return Index of the first phosphate atom.
+     */
+    int phosphateOffset() {
+        return phosphateOffset;
+    }
+
+    /**
+     * @param letter One-letter code of a nucleic base.
+     * @return The atom names and base coordinates of the given nucleic base.
+     */
+    AbstractModel.Value base(char letter) {
+        return bases[checkLetter(letter)];
+    }
+
+    /**
+     * @param letter One-letter code of a nucleic base.
+     * @return The base coordinates of a whole nucleotide with the given nucleic base.
+     */
+    Template template(char letter) {
+        return templates[checkLetter(letter)];
+    }
+
+    /**
+     * @param letter One-letter code of a nucleic base.
+     * @return Index of the first atom of the given nucleic base.
+     */
+    int baseOffset(char letter) {
+        return baseOffsets[checkLetter(letter)];
+    }
+
+    /**
+     * @param letter One-letter code of a nucleic base.
+     * @return Whether the model knows the given nucleic base.
+     */
+    boolean contains(char letter) {
+        return letter < bases.length && bases[letter] != null;
+    }
+
+    private char checkLetter(char letter) {
+        if (!contains(letter)) {
+            // Let the model report unknown letters the same way it always does
+            model.eval(letter);
+
+            throw new IllegalStateException("Unexpected value: " + letter);
+        }
+
+        return letter;
+    }
+}
@@ -51,6 +51,14 @@ class B_DNA extends AbstractModel {
     private static final Value G = new Value(namesGuanine, coordsGuanine);
     private static final Value C = new Value(namesCytosine, coordsCytosine);
 
+    /**
+     * @return The one-letter codes of all nucleic bases that can be evaluated.
+     */
+    @Override
+    protected String bases() {
+        return "ATGC";
+    }
+
     /**
      * @param letterCode One-letter code of a nucleic base.
      * @return The atom names and base coordinates of the given nucleic base.
@@ -0,0 +1,332 @@
+package com.pfaff.maximilian.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact alternative to {@link AbstractModel.Helix} that keeps all atoms in primitive columns instead of one object per atom.
+ * Coordinates are stored scaled as integer values, just like the base coordinates of the models: radius and height in
+ * hundredths of an Ångström and the angle in tenths of a degree, always between 0 and 3599. Atom names are stored as
+ * an index into the name table of the model.
+ * <p>
+ * Nucleotides are numbered from 0 across both strands, the atoms of each nucleotide are ordered sugar, phosphate, base.
+ * <p>
+ * Optionally, the buffer also holds Cartesian coordinates, which the model builder calculates in the same pass as the
+ * cylindrical ones, so writers and other consumers do not need to convert them again.
+ */
+public final class HelixBuffer {
+    private final AbstractModel.Model model;
+    final AtomTable table;
+
+    // One entry per nucleotide
+    int nucleotideCount;
+    char[] letters;
+    byte[] strands;
+    int[] atomStarts;
+
+    // One entry per atom
+    int atomCount;
+    int[] radius;
+    short[] theta;
+    int[] height;
+    short[] names;
+
+    // Only if requested, in Ångström
+    double[] x;
+    double[] y;
+    double[] z;
+
+    /**
+     * Creates an empty buffer that grows as needed.
+     * @param model The DNA/ RNA model whose atoms will be stored.
+     * @param nucleotideCapacity Initial number of nucleotides that fit into the buffer.
+     * @param atomCapacity Initial number of atoms that fit into the buffer.
+     */
+    public HelixBuffer(AbstractModel.Model model, int nucleotideCapacity, int atomCapacity) {
+        this(model, nucleotideCapacity, atomCapacity, false);
+    }
+
+    /**
+     * Creates an empty buffer that grows as needed.
+     * @param model The DNA/ RNA model whose atoms will be stored.
+     * @param nucleotideCapacity Initial number of nucleotides that fit into the buffer.
+     * @param atomCapacity Initial number of atoms that fit into the buffer.
+     * @param cartesian Whether Cartesian coordinates are stored as well.
+     */
+    public HelixBuffer(AbstractModel.Model model, int nucleotideCapacity, int atomCapacity, boolean cartesian) {
+        this.model = model;
+        this.table = model.atomTable();
+
+        letters = new char[nucleotideCapacity];
+        strands = new byte[nucleotideCapacity];
+        atomStarts = new int[nucleotideCapacity + 1];
+
+        radius = new int[atomCapacity];
+        theta = new short[atomCapacity];
+        height = new int[atomCapacity];
+        names = new short[atomCapacity];
+
+        if (cartesian) {
+            x = new double[atomCapacity];
+            y = new double[atomCapacity];
+            z = new double[atomCapacity];
+        }
+    }
+
+    /**
+     * @return The DNA/ RNA model of the atoms.
+     */
+    public AbstractModel.Model model() {
+        return model;
+    }
+
+    /**
+     * @return Number of nucleotides in the buffer, across both strands.
+     */
+    public int nucleotideCount() {
+        return nucleotideCount;
+    }
+
+    /**
+     * @return Number of atoms in the buffer, across both strands.
+     */
+    public int atomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return One-letter code of the nucleotide.
+     */
+    public char letter(int nucleotide) {
+        return letters[nucleotide];
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return The strand the nucleotide belongs to, either 1 or 2.
+     */
+    public int strand(int nucleotide) {
+        return strands[nucleotide];
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index of the first atom of the nucleotide, which is also its first sugar atom.
+     */
+    public int sugarStart(int nucleotide) {
+        return atomStarts[nucleotide];
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index of the first phosphate atom of the nucleotide.
+     */
+    public int phosphateStart(int nucleotide) {
+        return atomStarts[nucleotide] + table.phosphateOffset();
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index of the first atom of the nucleic base of the nucleotide.
+     */
+    public int baseStart(int nucleotide) {
+        return atomStarts[nucleotide] + table.phosphateOffset() + table.phosphate().names().length;
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index right after the last atom of the nucleotide.
+     */
+    public int atomEnd(int nucleotide) {
+        return atomStarts[nucleotide + 1];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Distance from the helical axis, in Ångström.
+     */
+    public double radius(int atom) {
+        return radius[atom] / 100d;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Angle around the axis, in degrees.
+     */
+    public double theta(int atom) {
+        return theta[atom] / 10d;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Height along the axis, in Ångström.
+     */
+    public double height(int atom) {
+        return height[atom] / 100d;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Distance from the helical axis, in hundredths of an Ångström.
+     */
+    public int scaledRadius(int atom) {
+        return radius[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Angle around the axis, in tenths of a degree.
+     */
+    public int scaledTheta(int atom) {
+        return theta[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Height along the axis, in hundredths of an Ångström.
+     */
+    public int scaledHeight(int atom) {
+        return height[atom];
+    }
+
+    /**
+     * @return Whether the buffer holds Cartesian coordinates as well.
+     */
+    public boolean hasCartesian() {
+        return x != null;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Cartesian x coordinate, in Ångström.
+     */
+    public double x(int atom) {
+        return cartesian(x)[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Cartesian y coordinate, in Ångström.
+     */
+    public double y(int atom) {
+        return cartesian(y)[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Cartesian z coordinate, which is the same as the height, in Ångström.
+     */
+    public double z(int atom) {
+        return cartesian(z)[atom];
+    }
+
+    private static double[] cartesian(double[] column) {
+        if (column == null) {
+            throw new IllegalStateException("Cartesian coordinates have not been calculated for this buffer");
+        }
+
+        return column;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Index of the name of the atom inside the name table of the model.
+     */
+    public int nameIndex(int atom) {
+        return names[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Name of the atom.
+     */
+    public String atomName(int atom) {
+        return table.name(names[atom]);
+    }
+
+    /**
+     * Empties the buffer without giving up its capacity, so that it can be filled again.
+     */
+    public void clear() {
+        nucleotideCount = 0;
+        atomCount = 0;
+    }
+
+    /**
+     * Copies a single nucleotide into a {@link AbstractModel.Nucleotide} record.
+     * @param nucleotide Index of a nucleotide.
+     * @return The same nucleotide as {@link AbstractModel#createModel(AbstractModel.Model, CharSequence)} calculates it.
+     */
+    public AbstractModel.Nucleotide nucleotide(int nucleotide) {
+        return new AbstractModel.Nucleotide(letters[nucleotide],
+                coords(sugarStart(nucleotide), phosphateStart(nucleotide)),
+                coords(phosphateStart(nucleotide), baseStart(nucleotide)),
+                coords(baseStart(nucleotide), atomEnd(nucleotide)));
+    }
+
+    /**
+     * Copies the whole buffer into a {@link AbstractModel.Helix}.
+     * @return The same helix as {@link AbstractModel#createModel(AbstractModel.Model, CharSequence)} calculates it.
+     */
+    public AbstractModel.Helix toHelix() {
+        final AbstractModel.Helix helix = new AbstractModel.Helix();
+
+        helix.strand1 = new ArrayList<>();
+
+        if (model != AbstractModel.Model.A_RNA) {
+            helix.strand2 = new ArrayList<>();
+        }
+
+        for (int i = 0; i < nucleotideCount; i++) {
+            (strands[i] == 1 ? helix.strand1 : helix.strand2).add(nucleotide(i));
+        }
+
+        return helix;
+    }
+
+    private List<AbstractModel.CylinderCoords> coords(int from, int to) {
+        final List<AbstractModel.CylinderCoords> coords = new ArrayList<>(to - from);
+
+        for (int i = from; i < to; i++) {
+            coords.add(new AbstractModel.CylinderCoords(atomName(i), radius(i), theta(i), height(i)));
+        }
+
+        return coords;
+    }
+
+    /**
+     * Makes sure that the given number of nucleotides and atoms can be added without growing the buffer in between.
+     * @param nucleotides Number of nucleotides that are about to be added.
+     * @param atoms Number of atoms that are about to be added.
+     */
+    void ensureCapacity(int nucleotides, int atoms) {
+        final int requiredNucleotides = nucleotideCount + nucleotides;
+
+        if (requiredNucleotides > letters.length) {
+            final int capacity = Math.max(requiredNucleotides, letters.length * 2);
+
+            letters = Arrays.copyOf(letters, capacity);
+            strands = Arrays.copyOf(strands, capacity);
+            atomStarts = Arrays.copyOf(atomStarts, capacity + 1);
+        }
+
+        final int requiredAtoms = atomCount + atoms;
+
+        if (requiredAtoms > radius.length) {
+            final int capacity = Math.max(requiredAtoms, radius.length * 2);
+
+            radius = Arrays.copyOf(radius, capacity);
+            theta = Arrays.copyOf(theta, capacity);
+            height = Arrays.copyOf(height, capacity);
+            names = Arrays.copyOf(names, capacity);
+
+            if (x != null) {
+                x = Arrays.copyOf(x, capacity);
+                y = Arrays.copyOf(y, capacity);
+                z = Arrays.copyOf(z, capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,738 @@
+package com.pfaff.maximilian.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary file format for models, which can be loaded without parsing any text. It stores the same fixed-point
+ * integers as a {@link HelixBuffer}, so nothing is lost compared to calculating the model again.
+ * <p>
+ * All numbers are little-endian. The file starts with a header:
+ * <pre>
+ * int magic "HLX1", int version, int flags, int header length,
+ * int helix turn, int elevation, int nucleotides, int nucleotides of the first strand, int atoms,
+ * int sugar atoms per nucleotide, int phosphate atoms per nucleotide,
+ * short length + ASCII name of the model, short number of atom names, byte length + ASCII of each atom name
+ * </pre>
+ * followed by one column after another, each of them starting at a multiple of 8 bytes:
+ * <pre>
+ * byte letter and byte strand of each nucleotide, int index of the first atom of each nucleotide plus the atom count,
+ * radius, theta, height and short index into the atom name table of each atom
+ * </pre>
+ * Radius and height are ints in hundredths of an Ångström and theta is a short in tenths of a degree. With
+ * {@link HelixFile#DELTA} all three are shorts relative to the nucleotide the atom belongs to, i.e. only the offsets
+ * from the positions {@code i * helixTurn} and {@code i * elevation} of the i-th nucleotide of its strand are stored.
+ * Those offsets are the same for every nucleotide with the same letter, while the nucleotide itself can still be located
+ * without reading any other one.
+ */
+public final class HelixFile {
+    /**
+     * Flag for coordinates that are relative to their nucleotide.
+     */
+    public static final int DELTA = 1;
+
+    private static final int MAGIC = 'H' | 'L' << 8 | 'X' << 16 | '1' << 24;
+    private static final int VERSION = 1;
+    private static final int FIXED_HEADER_LENGTH = 11 * Integer.BYTES;
+
+    // Number of nucleotides that are calculated at once while writing
+    private static final int CHUNK_SIZE = 256;
+
+    private final AbstractModel.Model model;
+    private final String[] atomNames;
+    private final Header header;
+    private final Layout layout;
+
+    private final int nucleotideCount;
+    private final int firstStrandLength;
+    private final int atomCount;
+    private final int sugarAtoms;
+    private final int phosphateAtoms;
+
+    private final ByteBuffer letters;
+    private final ByteBuffer strands;
+    private final ByteBuffer atomStarts;
+    private final ByteBuffer radius;
+    private final ByteBuffer theta;
+    private final ByteBuffer height;
+    private final ByteBuffer names;
+
+    /**
+     * Calculates the model chunk by chunk and writes each column straight to its position in the file, so memory
+     * usage does not depend on the length of the sequence.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param path The file that is being written to. It is created or truncated.
+     * @param flags Either 0 or {@link HelixFile#DELTA}.
+     * @return Size of the file in bytes.
+     */
+    public static long write(AbstractModel.Model model, CharSequence query, Path path, int flags) throws IOException {
+        try (FileChannel channel = create(path)) {
+            return write(model, query, channel, flags);
+        }
+    }
+
+    /**
+     * Same as {@link HelixFile#write(AbstractModel.Model, CharSequence, Path, int)}, but writes to any channel that
+     * can be positioned, e.g. one that is backed by memory. Every column is written to its absolute position.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param channel The channel that is being written to, starting at position 0. It is neither truncated nor closed.
+     * @param flags Either 0 or {@link HelixFile#DELTA}.
+     * @return Size of the content in bytes, see {@link HelixFile#size(AbstractModel.Model, CharSequence, int)}.
+     */
+    public static long write(AbstractModel.Model model, CharSequence query, SeekableByteChannel channel, int flags)
+            throws IOException {
+        final int length = query.length();
+        final int nucleotides = model != AbstractModel.Model.A_RNA ? 2 * length : length;
+
+        final ColumnWriter writer = new ColumnWriter(channel, model, nucleotides, length,
+                AbstractModel.countAtoms(model, query), flags);
+
+        try {
+            AbstractModel.streamModel(model, query, CHUNK_SIZE, helix -> {
+                try {
+                    writer.append(helix);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        return writer.finish();
+    }
+
+    /**
+     * Calculates the size of the content that {@link HelixFile#write} produces, without calculating the model.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param flags Either 0 or {@link HelixFile#DELTA}.
+     * @return Size in bytes.
+     */
+    public static long size(AbstractModel.Model model, CharSequence query, int flags) {
+        final int length = query.length();
+        final int nucleotides = model != AbstractModel.Model.A_RNA ? 2 * length : length;
+
+        return Layout.of(headerLength(model), nucleotides, AbstractModel.countAtoms(model, query), flags).end();
+    }
+
+    /**
+     * Writes a whole model that has already been calculated.
+     * @param helix A buffer as returned by {@link AbstractModel#createHelixBuffer(AbstractModel.Model, CharSequence)}.
+     * @param path The file that is being written to. It is created or truncated.
+     * @param flags Either 0 or {@link HelixFile#DELTA}.
+     * @return Size of the file in bytes.
+     */
+    public static long write(HelixBuffer helix, Path path, int flags) throws IOException {
+        int firstStrandLength = 0;
+
+        while (firstStrandLength < helix.nucleotideCount() && helix.strand(firstStrandLength) == 1) {
+            firstStrandLength++;
+        }
+
+        try (FileChannel channel = create(path)) {
+            final ColumnWriter writer = new ColumnWriter(channel, helix.model(), helix.nucleotideCount(), firstStrandLength,
+                    helix.atomCount(), flags);
+
+            writer.append(helix);
+
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Maps a file into memory. Only the header is read right away, everything else is loaded by the operating system
+     * as soon as it is accessed.
+     * @param path A file written by {@link HelixFile#write}.
+     * @return The model stored in the file.
+     */
+    public static HelixFile open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new HelixFile(channel, path);
+        }
+    }
+
+    private HelixFile(FileChannel channel, Path path) throws IOException {
+        try {
+            header = Header.read(channel);
+        } catch (IOException e) {
+            throw new IOException(e.getMessage() + ": " + path, e);
+        }
+
+        model = header.model();
+        atomNames = header.atomNames().toArray(String[]::new);
+        layout = header.layout();
+
+        nucleotideCount = header.nucleotideCount();
+        firstStrandLength = header.firstStrandLength();
+        atomCount = header.atomCount();
+        sugarAtoms = header.sugarAtoms();
+        phosphateAtoms = header.phosphateAtoms();
+
+        letters = map(channel, layout.letters(), nucleotideCount);
+        strands = map(channel, layout.strands(), nucleotideCount);
+        atomStarts = map(channel, layout.atomStarts(), (nucleotideCount + 1L) * Integer.BYTES);
+        radius = map(channel, layout.radius(), (long) atomCount * layout.wideBytes());
+        theta = map(channel, layout.theta(), (long) atomCount * Short.BYTES);
+        height = map(channel, layout.height(), (long) atomCount * layout.wideBytes());
+        names = map(channel, layout.names(), (long) atomCount * Short.BYTES);
+    }
+
+    /**
+     * @return The DNA/ RNA model of the atoms.
+     */
+    public AbstractModel.Model model() {
+        return model;
+    }
+
+    /**
+     * @return Whether the coordinates are stored relative to their nucleotide.
+     */
+    public boolean isDelta() {
+        return layout.delta();
+    }
+
+    /**
+     * @return Number of nucleotides in the file, across both strands.
+     */
+    public int nucleotideCount() {
+        return nucleotideCount;
+    }
+
+    /**
+     * @return Number of atoms in the file, across both strands.
+     */
+    public int atomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @return The sequence of the first strand.
+     */
+    public String sequence() {
+        final char[] sequence = new char[firstStrandLength];
+
+        for (int i = 0; i < sequence.length; i++) {
+            sequence[i] = letter(i);
+        }
+
+        return new String(sequence);
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return One-letter code of the nucleotide.
+     */
+    public char letter(int nucleotide) {
+        return (char) letters.get(nucleotide);
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return The strand the nucleotide belongs to, either 1 or 2.
+     */
+    public int strand(int nucleotide) {
+        return strands.get(nucleotide);
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index of the first atom of the nucleotide.
+     */
+    public int atomStart(int nucleotide) {
+        return atomStarts.getInt(nucleotide * Integer.BYTES);
+    }
+
+    /**
+     * @param nucleotide Index of a nucleotide.
+     * @return Index right after the last atom of the nucleotide.
+     */
+    public int atomEnd(int nucleotide) {
+        return atomStarts.getInt((nucleotide + 1) * Integer.BYTES);
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Distance from the helical axis, in hundredths of an Ångström.
+     */
+    public int scaledRadius(int atom) {
+        return layout.delta() ? radius.getShort(atom * Short.BYTES) : radius.getInt(atom * Integer.BYTES);
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Angle around the axis, in tenths of a degree.
+     */
+    public int scaledTheta(int atom) {
+        return layout.delta() ? scaledTheta(atom, frameTheta(nucleotideOf(atom))) : theta.getShort(atom * Short.BYTES);
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Height along the axis, in hundredths of an Ångström.
+     */
+    public int scaledHeight(int atom) {
+        return layout.delta() ? scaledHeight(atom, frameHeight(nucleotideOf(atom))) : height.getInt(atom * Integer.BYTES);
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Name of the atom.
+     */
+    public String atomName(int atom) {
+        return atomNames[names.getShort(atom * Short.BYTES)];
+    }
+
+    /**
+     * Reads a single nucleotide, without touching any other part of the file.
+     * @param nucleotide Index of a nucleotide.
+     * @return The same nucleotide as {@link HelixBuffer#nucleotide(int)} returns it.
+     */
+    public AbstractModel.Nucleotide nucleotide(int nucleotide) {
+        final int start = atomStart(nucleotide);
+        final int phosphateStart = start + sugarAtoms;
+        final int baseStart = phosphateStart + phosphateAtoms;
+
+        final int frameTheta = layout.delta() ? frameTheta(nucleotide) : 0;
+        final int frameHeight = layout.delta() ? frameHeight(nucleotide) : 0;
+
+        return new AbstractModel.Nucleotide(letter(nucleotide),
+                coords(start, phosphateStart, frameTheta, frameHeight),
+                coords(phosphateStart, baseStart, frameTheta, frameHeight),
+                coords(baseStart, atomEnd(nucleotide), frameTheta, frameHeight));
+    }
+
+    private List<AbstractModel.CylinderCoords> coords(int from, int to, int frameTheta, int frameHeight) {
+        final List<AbstractModel.CylinderCoords> coords = new ArrayList<>(to - from);
+
+        for (int atom = from; atom < to; atom++) {
+            final int scaledTheta = layout.delta() ? scaledTheta(atom, frameTheta) : theta.getShort(atom * Short.BYTES);
+            final int scaledHeight = layout.delta() ? scaledHeight(atom, frameHeight) : height.getInt(atom * Integer.BYTES);
+
+            coords.add(new AbstractModel.CylinderCoords(atomName(atom), scaledRadius(atom) / 100d, scaledTheta / 10d,
+                    scaledHeight / 100d));
+        }
+
+        return coords;
+    }
+
+    private int scaledTheta(int atom, int frameTheta) {
+        return Header.deltaTheta(frameTheta, theta.getShort(atom * Short.BYTES));
+    }
+
+    private int scaledHeight(int atom, int frameHeight) {
+        return frameHeight + height.getShort(atom * Short.BYTES);
+    }
+
+    private int frameTheta(int nucleotide) {
+        return header.frameTheta(nucleotide);
+    }
+
+    private int frameHeight(int nucleotide) {
+        return header.frameHeight(nucleotide);
+    }
+
+    /**
+     * Binary search for the nucleotide that an atom belongs to.
+     */
+    private int nucleotideOf(int atom) {
+        int low = 0;
+        int high = nucleotideCount - 1;
+
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+
+            if (atomStart(mid) <= atom) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Everything that is stored in front of the columns, for readers that access the columns on their own, e.g. straight
+     * from memory. The columns are described by the {@link Layout}.
+     * @param model The DNA/ RNA model of the atoms.
+     * @param atomNames The names that the name column points into.
+     * @param helixTurn Angle between two nucleotides of a strand, in tenths of a degree.
+     * @param elevation Height between two nucleotides of a strand, in hundredths of an Ångström.
+     * @param nucleotideCount Number of nucleotides across both strands.
+     * @param firstStrandLength Number of nucleotides of the first strand.
+     * @param atomCount Number of atoms across both strands.
+     * @param sugarAtoms Number of sugar atoms of every nucleotide.
+     * @param phosphateAtoms Number of phosphate atoms of every nucleotide.
+     * @param layout Offsets of all columns.
+     */
+    public record Header(AbstractModel.Model model, List<String> atomNames, int helixTurn, int elevation,
+                         int nucleotideCount, int firstStrandLength, int atomCount, int sugarAtoms, int phosphateAtoms,
+                         Layout layout) {
+        /**
+         * Reads the header from the start of the channel and makes sure that the channel holds all columns.
+         * @param channel The content of a helix file, e.g. a file or a channel that is backed by memory. Its position changes.
+         * @return The header.
+         * @throws IOException If the content is not a helix file, has an unsupported version or is truncated.
+         */
+        public static Header read(SeekableByteChannel channel) throws IOException {
+            final ByteBuffer fixed = HelixFile.read(channel, 0, FIXED_HEADER_LENGTH);
+
+            if (channel.size() < FIXED_HEADER_LENGTH || fixed.getInt() != MAGIC) {
+                throw new IOException("Not a helix file");
+            }
+
+            final int version = fixed.getInt();
+
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of helix file");
+            }
+
+            final int flags = fixed.getInt();
+            final int headerLength = fixed.getInt();
+
+            final int helixTurn = fixed.getInt();
+            final int elevation = fixed.getInt();
+            final int nucleotideCount = fixed.getInt();
+            final int firstStrandLength = fixed.getInt();
+            final int atomCount = fixed.getInt();
+            final int sugarAtoms = fixed.getInt();
+            final int phosphateAtoms = fixed.getInt();
+
+            final ByteBuffer header = HelixFile.read(channel, FIXED_HEADER_LENGTH, headerLength - FIXED_HEADER_LENGTH);
+
+            final AbstractModel.Model model = AbstractModel.Model.of(readString(header, header.getShort()));
+            final String[] atomNames = new String[header.getShort()];
+
+            for (int i = 0; i < atomNames.length; i++) {
+                atomNames[i] = readString(header, header.get());
+            }
+
+            final Layout layout = Layout.of(headerLength, nucleotideCount, atomCount, flags);
+
+            if (channel.size() < layout.end()) {
+                throw new IOException("Helix file is truncated");
+            }
+
+            return new Header(model, List.of(atomNames), helixTurn, elevation, nucleotideCount, firstStrandLength,
+                    atomCount, sugarAtoms, phosphateAtoms, layout);
+        }
+
+        /**
+         * @param nucleotide Index of a nucleotide.
+         * @return Angle of the nucleotide around the axis, in tenths of a degree. With {@link HelixFile#DELTA}, the
+         * angles of its atoms are stored relative to it.
+         */
+        public int frameTheta(int nucleotide) {
+            return (int) ((long) strandPosition(nucleotide) * helixTurn % 3600);
+        }
+
+        /**
+         * @param nucleotide Index of a nucleotide.
+         * @return Height of the nucleotide along the axis, in hundredths of an Ångström. With {@link HelixFile#DELTA},
+         * the heights of its atoms are stored relative to it.
+         */
+        public int frameHeight(int nucleotide) {
+            return strandPosition(nucleotide) * elevation;
+        }
+
+        /**
+         * @param frameTheta Angle of the nucleotide, see {@link Header#frameTheta(int)}.
+         * @param theta Value of the theta column for an atom of the nucleotide, stored with {@link HelixFile#DELTA}.
+         * @return Angle of the atom around the axis, in tenths of a degree.
+         */
+        public static int deltaTheta(int frameTheta, short theta) {
+            final int scaledTheta = frameTheta + theta;
+
+            return scaledTheta >= 3600 ? scaledTheta - 3600 : scaledTheta;
+        }
+
+        private int strandPosition(int nucleotide) {
+            return nucleotide < firstStrandLength ? nucleotide : nucleotide - firstStrandLength;
+        }
+    }
+
+    /**
+     * Offsets of all columns inside the file, in bytes from its start.
+     * @param delta Whether the coordinates are stored relative to their nucleotide, see {@link HelixFile#DELTA}.
+     * @param wideBytes Bytes per value of the radius and height columns.
+     * @param letters Column of the one-letter codes, one byte per nucleotide.
+     * @param strands Column of the strands, one byte per nucleotide.
+     * @param atomStarts Column of the index of the first atom of each nucleotide, one int per nucleotide plus the atom count.
+     * @param radius Column of the radii, {@code wideBytes} per atom.
+     * @param theta Column of the angles, one short per atom.
+     * @param height Column of the heights, {@code wideBytes} per atom.
+     * @param names Column of the indices into the atom names, one short per atom.
+     * @param end Size of the whole content.
+     */
+    public record Layout(boolean delta, int wideBytes, long letters, long strands, long atomStarts, long radius,
+                         long theta, long height, long names, long end) {
+        static Layout of(int headerLength, int nucleotides, int atoms, int flags) {
+            final boolean delta = (flags & DELTA) != 0;
+            final int wideBytes = delta ? Short.BYTES : Integer.BYTES;
+
+            final long letters = align(headerLength);
+            final long strands = align(letters + nucleotides);
+            final long atomStarts = align(strands + nucleotides);
+            final long radius = align(atomStarts + (nucleotides + 1L) * Integer.BYTES);
+            final long theta = align(radius + (long) atoms * wideBytes);
+            final long height = align(theta + (long) atoms * Short.BYTES);
+            final long names = align(height + (long) atoms * wideBytes);
+            final long end = names + (long) atoms * Short.BYTES;
+
+            return new Layout(delta, wideBytes, letters, strands, atomStarts, radius, theta, height, names, end);
+        }
+
+        private static long align(long offset) {
+            return offset + 7 & ~7L;
+        }
+    }
+
+    /**
+     * Writes the header right away and then each chunk of nucleotides to its position inside every column.
+     */
+    private static final class ColumnWriter {
+        private final SeekableByteChannel channel;
+        private final Layout layout;
+
+        private final int helixTurn;
+        private final int elevation;
+        private final int nucleotides;
+        private final int firstStrandLength;
+        private final int atoms;
+
+        private int writtenNucleotides = 0;
+        private int writtenAtoms = 0;
+
+        private ByteBuffer nucleotideBuffer = allocate(0);
+        private ByteBuffer atomBuffer = allocate(0);
+
+        ColumnWriter(SeekableByteChannel channel, AbstractModel.Model model, int nucleotides, int firstStrandLength, int atoms,
+                     int flags) throws IOException {
+            this.channel = channel;
+            this.nucleotides = nucleotides;
+            this.firstStrandLength = firstStrandLength;
+            this.atoms = atoms;
+
+            final AtomTable table = model.atomTable();
+            final AbstractModel modelImpl = table.model();
+
+            this.helixTurn = modelImpl.helixTurn();
+            this.elevation = modelImpl.elevation();
+
+            final byte[] modelName = model.name().getBytes(StandardCharsets.US_ASCII);
+            final int headerLength = headerLength(model);
+
+            this.layout = Layout.of(headerLength, nucleotides, atoms, flags);
+
+            final ByteBuffer header = allocate(headerLength)
+                    .putInt(MAGIC).putInt(VERSION).putInt(flags).putInt(headerLength)
+                    .putInt(helixTurn).putInt(elevation).putInt(nucleotides).putInt(firstStrandLength).putInt(atoms)
+                    .putInt(table.phosphateOffset()).putInt(table.phosphate().names().length)
+                    .putShort((short) modelName.length).put(modelName)
+                    .putShort((short) table.size());
+
+            for (int i = 0; i < table.size(); i++) {
+                final String name = table.name(i);
+
+                header.put((byte) name.length()).put(name.getBytes(StandardCharsets.US_ASCII));
+            }
+
+            write(header, 0);
+        }
+
+        /**
+         * @param helix The next nucleotides, continuing where the previous chunk ended.
+         */
+        void append(HelixBuffer helix) throws IOException {
+            final int count = helix.nucleotideCount();
+            final int atomCount = helix.atomCount();
+
+            if (nucleotideBuffer.capacity() < count * Integer.BYTES) {
+                nucleotideBuffer = allocate(count * Integer.BYTES);
+            }
+
+            if (atomBuffer.capacity() < atomCount * Integer.BYTES) {
+                atomBuffer = allocate(atomCount * Integer.BYTES);
+            }
+
+            nucleotideBuffer.clear();
+
+            for (int i = 0; i < count; i++) {
+                nucleotideBuffer.put((byte) helix.letters[i]);
+            }
+
+            write(nucleotideBuffer, layout.letters() + writtenNucleotides);
+
+            nucleotideBuffer.clear().put(helix.strands, 0, count);
+            write(nucleotideBuffer, layout.strands() + writtenNucleotides);
+
+            nucleotideBuffer.clear();
+
+            for (int i = 0; i < count; i++) {
+                nucleotideBuffer.putInt(writtenAtoms + helix.atomStarts[i] - helix.atomStarts[0]);
+            }
+
+            write(nucleotideBuffer, layout.atomStarts() + (long) writtenNucleotides * Integer.BYTES);
+
+            final long wideOffset = (long) writtenAtoms * layout.wideBytes();
+            final long shortOffset = (long) writtenAtoms * Short.BYTES;
+
+            atomBuffer.clear();
+
+            for (int atom = 0; atom < atomCount; atom++) {
+                if (layout.delta()) {
+                    atomBuffer.putShort(toShort(helix.radius[atom], "Radius"));
+                } else {
+                    atomBuffer.putInt(helix.radius[atom]);
+                }
+            }
+
+            write(atomBuffer, layout.radius() + wideOffset);
+
+            atomBuffer.clear();
+            forEachAtom(helix, (atom, frameTheta, frameHeight) -> {
+                final int value = helix.theta[atom] - frameTheta;
+
+                atomBuffer.putShort((short) (value < 0 ? value + 3600 : value));
+            });
+            write(atomBuffer, layout.theta() + shortOffset);
+
+            atomBuffer.clear();
+            forEachAtom(helix, (atom, frameTheta, frameHeight) -> {
+                if (layout.delta()) {
+                    atomBuffer.putShort(toShort(helix.height[atom] - frameHeight, "Height"));
+                } else {
+                    atomBuffer.putInt(helix.height[atom]);
+                }
+            });
+            write(atomBuffer, layout.height() + wideOffset);
+
+            atomBuffer.clear();
+
+            for (int atom = 0; atom < atomCount; atom++) {
+                atomBuffer.putShort(helix.names[atom]);
+            }
+
+            write(atomBuffer, layout.names() + shortOffset);
+
+            writtenNucleotides += count;
+            writtenAtoms += atomCount;
+        }
+
+        /**
+         * Writes the end of the atom offsets after all nucleotides have been appended.
+         * @return Size of the file in bytes.
+         */
+        long finish() throws IOException {
+            if (writtenNucleotides != nucleotides || writtenAtoms != atoms) {
+                throw new IllegalStateException("Expected " + nucleotides + " nucleotides and " + atoms + " atoms, got "
+                        + writtenNucleotides + " and " + writtenAtoms);
+            }
+
+            write(allocate(Integer.BYTES).putInt(atoms), layout.atomStarts() + (long) nucleotides * Integer.BYTES);
+
+            // Padding between the last columns is never written, so make sure the file has its full length
+            if (channel.size() < layout.end()) {
+                write(allocate(1).put((byte) 0), layout.end() - 1);
+            }
+
+            return layout.end();
+        }
+
+        /**
+         * Calls the action for every atom of the chunk, together with the position of its nucleotide if the
+         * coordinates are stored relative to it, or 0 otherwise.
+         */
+        private void forEachAtom(HelixBuffer helix, AtomAction action) {
+            for (int i = 0; i < helix.nucleotideCount(); i++) {
+                final int nucleotide = writtenNucleotides + i;
+                final int position = nucleotide < firstStrandLength ? nucleotide : nucleotide - firstStrandLength;
+
+                final int frameTheta = layout.delta() ? (int) ((long) position * helixTurn % 3600) : 0;
+                final int frameHeight = layout.delta() ? position * elevation : 0;
+
+                for (int atom = helix.atomStarts[i]; atom < helix.atomStarts[i + 1]; atom++) {
+                    action.accept(atom, frameTheta, frameHeight);
+                }
+            }
+        }
+
+        private void write(ByteBuffer buffer, long position) throws IOException {
+            buffer.flip();
+
+            channel.position(position);
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    private interface AtomAction {
+        void accept(int atom, int frameTheta, int frameHeight);
+    }
+
+    private static int headerLength(AbstractModel.Model model) {
+        final AtomTable table = model.atomTable();
+        int headerLength = FIXED_HEADER_LENGTH + Short.BYTES + model.name().length() + Short.BYTES;
+
+        for (int i = 0; i < table.size(); i++) {
+            headerLength += 1 + table.name(i).length();
+        }
+
+        return headerLength;
+    }
+
+    private static short toShort(int value, String column) {
+        if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+            throw new IllegalArgumentException(column + " " + value + " does not fit into the delta-encoded helix format");
+        }
+
+        return (short) value;
+    }
+
+    private static FileChannel create(Path path) throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private static ByteBuffer allocate(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static ByteBuffer read(SeekableByteChannel channel, long position, int length) throws IOException {
+        final ByteBuffer buffer = allocate(length);
+
+        channel.position(position);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+
+        return buffer.flip();
+    }
+
+    private static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,275 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.util.ByteSink;
+import com.pfaff.maximilian.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Writes models in the mmCIF format. Unlike the fixed columns of {@link PDB}, every value of the {@code _atom_site} loop
+ * is only as wide as it needs to be, so there is no limit on the number of atoms or residues.
+ * The atoms are the same as in the PDB file, in the same order and with the same names and coordinates.
+ */
+public final class MmCif {
+    private static final byte[][] ATOM_SITE_HEADER = lines(
+            "#",
+            "loop_",
+            "_atom_site.group_PDB",
+            "_atom_site.id",
+            "_atom_site.type_symbol",
+            "_atom_site.label_atom_id",
+            "_atom_site.label_comp_id",
+            "_atom_site.label_asym_id",
+            "_atom_site.label_entity_id",
+            "_atom_site.label_seq_id",
+            "_atom_site.Cartn_x",
+            "_atom_site.Cartn_y",
+            "_atom_site.Cartn_z",
+            "_atom_site.occupancy",
+            "_atom_site.B_iso_or_equiv",
+            "_atom_site.auth_seq_id",
+            "_atom_site.auth_asym_id",
+            "_atom_site.pdbx_PDB_model_num");
+
+    /**
+     * Opens a dialog to select a directory where the file will be saved in, creates the model and streams it into said file.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     */
+    public static void createModelCifFile(AbstractModel.Model model, String query) throws IOException {
+        final File dir = FileUtil.openDir();
+
+        if (dir == null) {
+            return;
+        }
+
+        final String fileName = String.format(Locale.US, "Model_%s_%s.cif", model, query);
+        final File file = FileUtil.resolveUniqueFilePath(dir.toPath(), fileName).toFile();
+
+        try (ByteSink sink = ByteSink.open(file.toPath())) {
+            writeModelCif(model, query, sink);
+        }
+    }
+
+    /**
+     * Calculates the model chunk by chunk and encodes each atom as a row of the {@code _atom_site} loop straight into
+     * the buffer of the sink, so memory usage does not depend on the length of the sequence.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param sink The sink that receives the mmCIF file content. It is neither flushed nor closed by this method.
+     */
+    public static void writeModelCif(AbstractModel.Model model, CharSequence query, ByteSink sink) throws IOException {
+        final Metrics.Span span = Metrics.start(Stage.FORMAT, model);
+        final long start = sink.size();
+
+        sink.appendLine("data_Model_" + model);
+
+        for (byte[] line : ATOM_SITE_HEADER) {
+            sink.append(line);
+        }
+
+        final RowWriter writer = new RowWriter(model, query.length());
+
+        try {
+            AbstractModel.streamModel(model, query, CHUNK_SIZE, helix -> {
+                try {
+                    writer.write(helix, sink);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        sink.appendLine("#");
+
+        span.end(writer.resID - 1, writer.atomNumber - 1, sink.size() - start);
+    }
+
+    // Number of nucleotides that are calculated at once while streaming
+    private static final int CHUNK_SIZE = 256;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    // Upper bound for the length of a row: two ints, eight short strings and three coordinates of at most 24 bytes
+    private static final int MAX_ROW_LENGTH = 256;
+
+    /**
+     * Keeps track of the atom and residue numbers while the nucleotides are encoded one after another.
+     */
+    private static final class RowWriter {
+        private final boolean rna;
+        private final int length;
+        private final byte[][] atomNames;
+        private final byte[] elements;
+
+        private long atomNumber = 1;
+        private long resID = 1;
+
+        RowWriter(AbstractModel.Model model, int length) {
+            this.rna = model == AbstractModel.Model.A_RNA;
+            this.length = length;
+
+            final String[] names = PDB.atomNames(model.atomTable());
+            this.atomNames = new byte[names.length][];
+            this.elements = new byte[names.length];
+
+            for (int i = 0; i < names.length; i++) {
+                elements[i] = PdbRecordEncoder.elementSymbol(names[i].charAt(0));
+
+                // Primes would start a quoted string, so those names have to be quoted themselves
+                final String name = names[i].indexOf('\'') < 0 ? names[i] : '"' + names[i] + '"';
+                atomNames[i] = name.getBytes(StandardCharsets.US_ASCII);
+            }
+        }
+
+        /**
+         * Encodes all nucleotides of the buffer straight into the sink.
+         * @param helix A buffer of nucleotides.
+         * @param sink The sink.
+         */
+        void write(HelixBuffer helix, ByteSink sink) throws IOException {
+            for (int i = 0; i < helix.nucleotideCount(); i++) {
+                final char letter = helix.letter(i);
+                final int strand = helix.strand(i);
+                final long currentResID = resID++;
+
+                // Both strands are numbered from 1 on, continuing the numbering of the first strand like the PDB file does
+                final long seqID = strand == 1 ? currentResID : currentResID - length;
+
+                // Sugar, base, phosphate
+                writeAtoms(helix, helix.sugarStart(i), helix.phosphateStart(i), letter, strand, seqID, currentResID, sink);
+                writeAtoms(helix, helix.baseStart(i), helix.atomEnd(i), letter, strand, seqID, currentResID, sink);
+                writeAtoms(helix, helix.phosphateStart(i), helix.baseStart(i), letter, strand, seqID, currentResID, sink);
+            }
+        }
+
+        private void writeAtoms(HelixBuffer helix, int from, int to, char letter, int strand, long seqID, long currentResID,
+                                ByteSink sink) throws IOException {
+            final byte chainID = (byte) (strand == 1 ? 'A' : 'B');
+
+            for (int atom = from; atom < to; atom++) {
+                final int nameIndex = helix.nameIndex(atom);
+                final byte[] name = atomNames[nameIndex];
+
+                sink.ensureCapacity(MAX_ROW_LENGTH + name.length);
+
+                final byte[] dst = sink.array();
+                int position = sink.position();
+
+                position = put(dst, position, "ATOM ");
+                position = encodeLong(dst, position, atomNumber++);
+                dst[position++] = ' ';
+                dst[position++] = elements[nameIndex];
+                dst[position++] = ' ';
+                System.arraycopy(name, 0, dst, position, name.length);
+                position += name.length;
+                dst[position++] = ' ';
+
+                // Residue names of the chemical component dictionary, e.g. DA for DNA and A for RNA
+                if (!rna) {
+                    dst[position++] = 'D';
+                }
+
+                dst[position++] = (byte) letter;
+                dst[position++] = ' ';
+                dst[position++] = chainID;
+                dst[position++] = ' ';
+                dst[position++] = (byte) ('0' + strand);
+                dst[position++] = ' ';
+                position = encodeLong(dst, position, seqID);
+                dst[position++] = ' ';
+                position = encodeDecimal3(dst, position, helix.x(atom));
+                dst[position++] = ' ';
+                position = encodeDecimal3(dst, position, helix.y(atom));
+                dst[position++] = ' ';
+                position = encodeDecimal3(dst, position, helix.z(atom));
+                position = put(dst, position, " 1.00 0.00 ");
+                position = encodeLong(dst, position, currentResID);
+                dst[position++] = ' ';
+                dst[position++] = chainID;
+                position = put(dst, position, " 1");
+
+                System.arraycopy(LINE_SEPARATOR, 0, dst, position, LINE_SEPARATOR.length);
+                sink.position(position + LINE_SEPARATOR.length);
+            }
+        }
+    }
+
+    private static int put(byte[] dst, int offset, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            dst[offset + i] = (byte) ascii.charAt(i);
+        }
+
+        return offset + ascii.length();
+    }
+
+    /**
+     * Writes a non-negative integer without padding.
+     * @return Index right after the last digit.
+     */
+    private static int encodeLong(byte[] dst, int offset, long value) {
+        long remaining = value;
+        int digits = 1;
+
+        while ((remaining /= 10) != 0) {
+            digits++;
+        }
+
+        remaining = value;
+
+        for (int position = offset + digits - 1; position >= offset; position--) {
+            dst[position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        return offset + digits;
+    }
+
+    /**
+     * Writes a number with three decimal places without padding, rounded exactly like the coordinates of the PDB file.
+     * @return Index right after the last digit.
+     */
+    private static int encodeDecimal3(byte[] dst, int offset, double value) {
+        if (!Double.isFinite(value)) {
+            throw new IllegalArgumentException("Coordinate is not finite: " + value);
+        }
+
+        int position = offset;
+
+        if (Double.doubleToRawLongBits(value) < 0) {
+            dst[position++] = '-';
+        }
+
+        final long thousandths = PdbRecordEncoder.roundThousandths(Math.abs(value));
+
+        position = encodeLong(dst, position, thousandths / 1000);
+        dst[position++] = '.';
+
+        final int fraction = (int) (thousandths % 1000);
+        dst[position++] = (byte) ('0' + fraction / 100);
+        dst[position++] = (byte) ('0' + fraction / 10 % 10);
+        dst[position++] = (byte) ('0' + fraction % 10);
+
+        return position;
+    }
+
+    private static byte[][] lines(String... lines) {
+        final byte[][] bytes = new byte[lines.length][];
+
+        for (int i = 0; i < lines.length; i++) {
+            bytes[i] = (lines[i] + System.lineSeparator()).getBytes(StandardCharsets.US_ASCII);
+        }
+
+        return bytes;
+    }
+
+    private MmCif() {}
+}
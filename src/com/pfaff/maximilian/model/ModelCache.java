@@ -0,0 +1,265 @@
+package com.pfaff.maximilian.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Thread-safe cache in front of {@link AbstractModel#createModel(AbstractModel.Model, CharSequence)},
+ * {@link AbstractModel#createModelDump(AbstractModel.Model, CharSequence, double)} and
+ * {@link PDB#createModelPdbFileContent(AbstractModel.Model, CharSequence)}.
+ * <p>
+ * The cache is bounded by the estimated memory size of its entries and evicts the least recently used ones first.
+ * Concurrent requests for the same entry wait for a single calculation instead of starting their own. Sequences are
+ * packed, so the same sequence in upper and lower case is the same entry.
+ * Cached results are shared between all callers and therefore unmodifiable. The only exception are the strands of a
+ * helix: every caller gets lists of its own, so that the helix can be passed to
+ * {@link AbstractModel#mutate(AbstractModel.Model, AbstractModel.Helix, List)}.
+ */
+public final class ModelCache {
+    private final long maxBytes;
+
+    // Guarded by this, in order from least to most recently used
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final ConcurrentHashMap<Key, CompletableFuture<Object>> loading = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes Estimated memory size that all entries together may take up.
+     */
+    public ModelCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Snapshot of the counters of a cache.
+     * @param hits Number of lookups that were answered from the cache, including those that waited for a concurrent calculation.
+     * @param misses Number of lookups that calculated their result.
+     * @param evictions Number of entries that were removed to make room for others.
+     * @param entries Number of entries in the cache.
+     * @param bytes Estimated memory size of all entries.
+     */
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {}
+
+    /**
+     * Cached version of {@link AbstractModel#createModel(AbstractModel.Model, CharSequence)}.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence, which is also the key.
+     * @return A helix with unmodifiable nucleotides. The strands are copies that belong to the caller and can be mutated.
+     */
+    public AbstractModel.Helix createModel(AbstractModel.Model model, PackedSequence query) {
+        final AbstractModel.Helix cached = get(new Key(Kind.HELIX, model, query, 0d), () -> {
+            final AbstractModel.Helix helix = AbstractModel.createModel(model, query);
+
+            helix.strand1 = unmodifiable(helix.strand1);
+
+            if (helix.strand2 != null) {
+                helix.strand2 = unmodifiable(helix.strand2);
+            }
+
+            return helix;
+        }, ModelCache::estimateSize);
+
+        // Mutations only replace whole nucleotides, so sharing the nucleotides themselves is safe
+        final AbstractModel.Helix helix = new AbstractModel.Helix();
+
+        helix.strand1 = new ArrayList<>(cached.strand1);
+        helix.strand2 = cached.strand2 == null ? null : new ArrayList<>(cached.strand2);
+
+        return helix;
+    }
+
+    /**
+     * Cached version of {@link AbstractModel#createModelDump(AbstractModel.Model, CharSequence, double)}.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence, which is also the key.
+     * @param extraHeight Additional height offset, if needed.
+     * @return An unmodifiable list of all the lines that make up this model.
+     */
+    public List<String> createModelDump(AbstractModel.Model model, PackedSequence query, double extraHeight) {
+        return get(new Key(Kind.DUMP, model, query, extraHeight),
+                () -> Collections.unmodifiableList(AbstractModel.createModelDump(model, query, extraHeight)),
+                ModelCache::estimateLinesSize);
+    }
+
+    /**
+     * Cached version of {@link PDB#createModelPdbFileContent(AbstractModel.Model, CharSequence)}.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence, which is also the key.
+     * @return An unmodifiable list of lines that make up the PDB file.
+     */
+    public List<String> createModelPdbFileContent(AbstractModel.Model model, PackedSequence query) {
+        return get(new Key(Kind.PDB, model, query, 0d),
+                () -> Collections.unmodifiableList(PDB.createModelPdbFileContent(model, query)),
+                ModelCache::estimateLinesSize);
+    }
+
+    /**
+     * @return The current counters.
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size(), bytes);
+    }
+
+    /**
+     * Removes all entries. Calculations that are still running are not affected.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T get(Key key, Supplier<T> loader, ToLongFunction<T> sizeEstimator) {
+        Object value = lookup(key);
+
+        if (value != null) {
+            hits.increment();
+            return (T) value;
+        }
+
+        final CompletableFuture<Object> future = new CompletableFuture<>();
+        final CompletableFuture<Object> running = loading.putIfAbsent(key, future);
+
+        if (running != null) {
+            hits.increment();
+            return (T) join(running);
+        }
+
+        try {
+            // Another thread might have finished loading between the lookup and claiming the key
+            value = lookup(key);
+
+            if (value != null) {
+                hits.increment();
+                future.complete(value);
+                return (T) value;
+            }
+
+            misses.increment();
+
+            final T loaded = loader.get();
+            store(key, loaded, sizeEstimator.applyAsLong(loaded));
+            future.complete(loaded);
+
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, future);
+        }
+    }
+
+    private synchronized Object lookup(Key key) {
+        final Entry entry = entries.get(key);
+
+        return entry == null ? null : entry.value();
+    }
+
+    private synchronized void store(Key key, Object value, long size) {
+        if (size > maxBytes) {
+            // Would evict everything else and still not fit
+            return;
+        }
+
+        final Entry previous = entries.put(key, new Entry(value, size));
+
+        if (previous != null) {
+            bytes -= previous.size();
+        }
+
+        bytes += size;
+
+        final Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Key, Entry> eldest = iterator.next();
+
+            bytes -= eldest.getValue().size();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            // Rethrow the original exception of the thread that did the calculation
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Makes a strand unmodifiable down to the atoms of each nucleotide, which are immutable records anyway.
+     */
+    private static List<AbstractModel.Nucleotide> unmodifiable(List<AbstractModel.Nucleotide> strand) {
+        strand.replaceAll(nucleotide -> new AbstractModel.Nucleotide(nucleotide.letter(), List.copyOf(nucleotide.sugar()),
+                List.copyOf(nucleotide.phosphate()), List.copyOf(nucleotide.base())));
+
+        return Collections.unmodifiableList(strand);
+    }
+
+    /**
+     * Rough memory size of lines, assuming compact Latin-1 strings: object header, fields and array per string,
+     * plus a reference per line.
+     */
+    private static long estimateLinesSize(List<String> lines) {
+        long size = 16 + 16 + 4L * lines.size();
+
+        for (String line : lines) {
+            size += 24 + 16 + line.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * Rough memory size of a helix: every nucleotide holds three lists and every atom a record of three doubles.
+     * Atom names are shared by all nucleotides and not counted.
+     */
+    private static long estimateSize(AbstractModel.Helix helix) {
+        return 16 + estimateStrandSize(helix.strand1) + (helix.strand2 == null ? 0 : estimateStrandSize(helix.strand2));
+    }
+
+    private static long estimateStrandSize(List<AbstractModel.Nucleotide> strand) {
+        long size = 16 + 16 + 4L * strand.size();
+
+        for (AbstractModel.Nucleotide nucleotide : strand) {
+            final int atoms = nucleotide.sugar().size() + nucleotide.phosphate().size() + nucleotide.base().size();
+
+            size += 24 + 3 * (24 + 16) + atoms * (4 + 40L);
+        }
+
+        return size;
+    }
+
+    private enum Kind {HELIX, DUMP, PDB}
+
+    private record Key(Kind kind, AbstractModel.Model model, PackedSequence query, double extraHeight) {}
+
+    private record Entry(Object value, long size) {}
+}
@@ -1,17 +1,24 @@
 package com.pfaff.maximilian.model;
 
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.util.ByteSink;
 import com.pfaff.maximilian.util.FileUtil;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.math.RoundingMode;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.function.Consumer;
+import java.util.Objects;
 
 public final class PDB {
     // Account for differences of names between the script and the PDB format
@@ -25,7 +32,7 @@ public final class PDB {
     }
 
     /**
-     * Opens a dialog to select a directory where the file will be saved in, creates the PDB model and dumps it inside said file.
+     * Opens a dialog to select a directory where the file will be saved in, creates the PDB model and streams it into said file.
      * @param model The DNA/ RNA model.
      * @param query The DNA/ RNA sequence.
      */
@@ -39,9 +46,9 @@ public final class PDB {
         final String fileName = String.format(Locale.US, "Model_%s_%s.pdb", model, query);
         final File file = FileUtil.resolveUniqueFilePath(dir.toPath(), fileName).toFile();
 
-        final List<String> lines = createModelPdbFileContent(model, query);
-
-        FileUtil.dumpToFile(file, lines);
+        try (ByteSink sink = ByteSink.open(file.toPath())) {
+            writeModelPdb(model, query, sink);
+        }
     }
 
     /**
@@ -50,149 +57,481 @@ public final class PDB {
      * @param query The DNA/ RNA sequence.
      * @return List of lines that make up the PDB file.
      */
-    public static List<String> createModelPdbFileContent(AbstractModel.Model model, String query) {
-        final AbstractModel.Helix helix = AbstractModel.createModel(model, query);
-        final List<String> lines = new ArrayList<>();
+    public static List<String> createModelPdbFileContent(AbstractModel.Model model, CharSequence query) {
+        checkFits(model, query);
 
-        final AtomicInteger atomNumber = new AtomicInteger(1);
-        final AtomicInteger chainID = new AtomicInteger('A');
-        final AtomicInteger resID = new AtomicInteger(1);
+        final Metrics.Span span = Metrics.start(Stage.FORMAT, model);
+        final List<String> lines = new ArrayList<>();
+        final RecordWriter writer = new RecordWriter(model);
 
-        final Consumer<List<AbstractModel.Nucleotide>> filler = (nucleotides) -> {
-            final String chainIDString = " " + (char) chainID.get();
+        AbstractModel.streamModel(model, query, CHUNK_SIZE, helix -> {
+            for (int i = 0; i < helix.nucleotideCount(); i++) {
+                final int length = RecordWriter.size(helix, i);
+                final byte[] records = writer.encode(helix, i);
 
-            for (AbstractModel.Nucleotide nucleotide : nucleotides) {
-                final char letter = nucleotide.letter();
-                boolean thymine = letter == 'T';
+                for (int offset = 0; offset < length; offset += LINE_LENGTH) {
+                    lines.add(new String(records, offset, PdbRecordEncoder.RECORD_LENGTH, StandardCharsets.US_ASCII));
+                }
+            }
+        });
 
-                String residue_chain_resID = "D" + letter + chainIDString;
-                final String currentResID = Integer.toString(resID.getAndIncrement());
-                residue_chain_resID += getPadding(currentResID, 4) + currentResID;
+        // One line per atom
+        span.end(model != AbstractModel.Model.A_RNA ? 2L * query.length() : query.length(), lines.size(), 0);
 
-                for (AbstractModel.CylinderCoords coords : nucleotide.sugar()) {
-                    final String[] xyz = calculateXYZ(coords);
-                    final String line = formatLine(atomNumber.getAndIncrement(),
-                            coords.atom() + "'", residue_chain_resID, xyz);
+        return lines;
+    }
 
-                    lines.add(line);
+    /**
+     * Writes the same content as {@link PDB#createModelPdbFileContent(AbstractModel.Model, CharSequence)}, but encodes each atom
+     * straight into the buffer of the sink as soon as its nucleotide has been calculated.
+     * Neither the helix nor the lines are ever held in memory as a whole.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param sink The sink that receives the PDB file content. It is neither flushed nor closed by this method.
+     */
+    public static void writeModelPdb(AbstractModel.Model model, CharSequence query, ByteSink sink) throws IOException {
+        checkFits(model, query);
+
+        final Metrics.Span span = Metrics.start(Stage.FORMAT, model);
+        final long start = sink.size();
+        final RecordWriter writer = new RecordWriter(model);
+
+        try {
+            AbstractModel.streamModel(model, query, CHUNK_SIZE, helix -> {
+                try {
+                    writer.write(helix, sink);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
                 }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
 
-                final List<AbstractModel.CylinderCoords> baseCoords = nucleotide.base();
+        final long bytes = sink.size() - start;
 
-                if (thymine) {
-                    for (int i = 0; i < baseCoords.size(); i++) {
-                        final AbstractModel.CylinderCoords coords = baseCoords.get(i);
+        span.end(model != AbstractModel.Model.A_RNA ? 2L * query.length() : query.length(), bytes / LINE_LENGTH, bytes);
+    }
 
-                        final String atomName = i == 2 ? "C7" : coords.atom();
-                        final String[] xyz = calculateXYZ(coords);
-                        final String line = formatLine(atomNumber.getAndIncrement(),
-                                atomName, residue_chain_resID, xyz);
+    /**
+     * Makes sure that the whole model fits into the fixed-width columns of the PDB format, so that writing it cannot
+     * fail half-way. The coordinates are checked against bounds of the heights and radii rather than their exact extremes.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @throws IllegalArgumentException If the residue numbers, atom numbers or coordinates do not fit.
+     * @throws IllegalStateException If the sequence contains a letter that the model does not know.
+     */
+    public static void checkFits(AbstractModel.Model model, CharSequence query) {
+        final int atoms = AbstractModel.checkLength(model, query);
+        final int residues = model != AbstractModel.Model.A_RNA ? 2 * query.length() : query.length();
 
-                        lines.add(line);
-                    }
-                } else {
-                    for (AbstractModel.CylinderCoords coords : baseCoords) {
-                        final String[] xyz = calculateXYZ(coords);
-                        final String line = formatLine(atomNumber.getAndIncrement(),
-                                coords.atom(), residue_chain_resID, xyz);
+        final AtomTable table = model.atomTable();
+        // In hundredths of an Ångström, like the heights of the model
+        final long maxHeight = (long) Math.max(query.length() - 1, 0) * table.model().elevation() + table.maxHeight();
 
-                        lines.add(line);
-                    }
-                }
+        if (residues > MAX_RESIDUES) {
+            throw new IllegalArgumentException(residues + " residues do not fit into the PDB format, at most "
+                    + MAX_RESIDUES + " are possible");
+        }
 
-                final List<AbstractModel.CylinderCoords> phosphateCoords = nucleotide.phosphate();
+        if (atoms > MAX_ATOMS) {
+            throw new IllegalArgumentException(atoms + " atoms do not fit into the PDB format, at most "
+                    + MAX_ATOMS + " are possible");
+        }
 
-                for (int i = 0; i < phosphateCoords.size(); i++) {
-                    final AbstractModel.CylinderCoords coords = phosphateCoords.get(i);
-                    final String atomName = PHOSPHATE_NAMES[i];
-                    final String[] xyz = calculateXYZ(coords);
-                    final String line = formatLine(atomNumber.getAndIncrement(),
-                            atomName, residue_chain_resID, xyz);
+        if (maxHeight > MAX_COORDINATE || table.maxHeight() > -MIN_COORDINATE || table.maxRadius() > -MIN_COORDINATE) {
+            throw new IllegalArgumentException("Coordinates of " + query.length() + " nucleotides of " + model
+                    + " do not fit into the PDB format, heights reach " + maxHeight / 100d + " Å");
+        }
+    }
 
-                    lines.add(line);
-                }
+    /**
+     * Applies mutations to a file written by {@link PDB#writeModelPdb} for the original sequence, without generating the
+     * whole model again. All records have the same length and the coordinates of a nucleotide only depend on its letter
+     * and index, so only the records from the first to the last affected nucleotide are encoded again and written in
+     * place; the atom numbers in between shift if a nucleic base has a different number of atoms than the one it
+     * replaces. Only if the mutations change the size of the file, e.g. on a single strand, everything from the first
+     * affected nucleotide on is rewritten.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence the file was written for.
+     * @param mutations The substitutions, applied in order.
+     * @param file The PDB file, which is updated in place.
+     * @return The mutated sequence.
+     * @throws IndexOutOfBoundsException If a mutation lies outside the sequence. The file is left unchanged.
+     * @throws IllegalStateException If a new letter is not known to the model. The file is left unchanged.
+     */
+    public static String patchModelPdb(AbstractModel.Model model, CharSequence query, List<AbstractModel.Mutation> mutations,
+                                       Path file) throws IOException {
+        final String mutated = AbstractModel.mutate(model, query, mutations);
+        final AtomTable table = model.atomTable();
+        final int length = query.length();
+        final int total = model != AbstractModel.Model.A_RNA ? 2 * length : length;
+
+        // Range of affected nucleotides, numbered across both strands
+        int first = total;
+        int last = -1;
+
+        for (AbstractModel.Mutation mutation : mutations) {
+            final int position = mutation.position();
+
+            if (query.charAt(position) != mutated.charAt(position)) {
+                first = Math.min(first, position);
+                last = Math.max(last, total == length ? position : length + position);
+            }
+        }
+
+        if (last < 0) {
+            return mutated;
+        }
+
+        if (Files.size(file) != countAtoms(table, query, 0, total) * LINE_LENGTH) {
+            throw new IOException("PDB file does not match the original sequence: " + file);
+        }
+
+        checkFits(model, mutated);
+
+        final long atomsBefore = countAtoms(table, query, 0, first);
+        final boolean sameSize = countAtoms(table, query, first, last + 1) == countAtoms(table, mutated, first, last + 1);
+        final int end = sameSize ? last + 1 : total;
+
+        final RecordWriter writer = new RecordWriter(model, Math.toIntExact(atomsBefore + 1), first + 1);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE);
+             ByteSink sink = new ByteSink(channel.position(atomsBefore * LINE_LENGTH), ByteSink.DEFAULT_CAPACITY)) {
+            try {
+                AbstractModel.streamModel(model, mutated, first, end, CHUNK_SIZE, helix -> {
+                    try {
+                        writer.write(helix, sink);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
             }
-        };
 
-        filler.accept(helix.strand1);
+            sink.flush();
 
-        final List<AbstractModel.Nucleotide> otherStrand = helix.strand2;
-        if (otherStrand != null) {
-            chainID.incrementAndGet();
-            filler.accept(otherStrand);
+            if (!sameSize) {
+                channel.truncate(channel.position());
+            }
         }
 
-        return lines;
+        return mutated;
     }
 
-    private static final DecimalFormat FLOAT_FORMAT = new DecimalFormat("0.000", new DecimalFormatSymbols(Locale.US));
+    /**
+     * Locates the records of a nucleotide inside a file written by {@link PDB#writeModelPdb}, e.g. to start reading a
+     * compressed file there with {@link com.pfaff.maximilian.util.BlockGzipReader#openAt(long)}.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param nucleotide Index of the nucleotide, numbered across both strands, i.e. the residue number minus 1.
+     * @return Offset of the first record of the nucleotide inside the uncompressed file.
+     */
+    public static long recordOffset(AbstractModel.Model model, CharSequence query, int nucleotide) {
+        final int total = model != AbstractModel.Model.A_RNA ? 2 * query.length() : query.length();
+
+        return countAtoms(model.atomTable(), query, 0, Objects.checkIndex(nucleotide, total)) * LINE_LENGTH;
+    }
+
+    /**
+     * @return Number of atoms of a range of nucleotides, numbered across both strands.
+     */
+    private static long countAtoms(AtomTable table, CharSequence query, int from, int to) {
+        final int length = query.length();
+
+        // The part of the range that lies inside each strand
+        return AbstractModel.countStrandAtoms(table, query, Math.min(from, length), Math.min(to, length), AbstractModel.UP)
+                + AbstractModel.countStrandAtoms(table, query, Math.max(from, length) - length,
+                        Math.max(to, length) - length, AbstractModel.DOWN);
+    }
+
+    // Number of nucleotides that are calculated at once while streaming
+    private static final int CHUNK_SIZE = 256;
+
+    // Widest numbers of the fixed-width columns, the coordinates in hundredths of an Ångström
+    private static final int MAX_RESIDUES = 9999;
+    private static final int MAX_ATOMS = 9_999_999;
+    private static final long MAX_COORDINATE = 999_999;
+    private static final long MIN_COORDINATE = -99_999;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+    private static final int LINE_LENGTH = PdbRecordEncoder.RECORD_LENGTH + LINE_SEPARATOR.length;
+
+    /**
+     * Keeps track of the unique atom and residue numbers while the nucleotides are encoded one after another.
+     */
+    private static final class RecordWriter {
+        private final String[] atomNames;
+
+        private int atomNumber;
+        private int resID;
+
+        private byte[] scratch = new byte[0];
+
+        RecordWriter(AbstractModel.Model model) {
+            this(model, 1, 1);
+        }
+
+        /**
+         * @param atomNumber Number of the first atom that will be encoded.
+         * @param resID Number of the first nucleotide that will be encoded.
+         */
+        RecordWriter(AbstractModel.Model model, int atomNumber, int resID) {
+            this.atomNames = atomNames(model.atomTable());
+            this.atomNumber = atomNumber;
+            this.resID = resID;
+        }
+
+        /**
+         * @param helix A buffer of nucleotides.
+         * @param nucleotide Index of a nucleotide inside the buffer.
+         * @return Number of bytes that {@link RecordWriter#encode} needs for all atoms of the nucleotide, including line breaks.
+         */
+        static int size(HelixBuffer helix, int nucleotide) {
+            return (helix.atomEnd(nucleotide) - helix.sugarStart(nucleotide)) * LINE_LENGTH;
+        }
+
+        /**
+         * Encodes all nucleotides of the buffer straight into the sink.
+         * @param helix A buffer of nucleotides.
+         * @param sink The sink.
+         */
+        void write(HelixBuffer helix, ByteSink sink) throws IOException {
+            for (int i = 0; i < helix.nucleotideCount(); i++) {
+                sink.ensureCapacity(size(helix, i));
+                sink.position(encode(helix, i, sink.array(), sink.position()));
+            }
+        }
+
+        /**
+         * Encodes the nucleotide into an internal array that is reused for the next call.
+         * @param helix A buffer of nucleotides.
+         * @param nucleotide Index of a nucleotide inside the buffer.
+         * @return The internal array, holding {@link RecordWriter#size} bytes of lines starting at index 0.
+         */
+        byte[] encode(HelixBuffer helix, int nucleotide) {
+            final int length = size(helix, nucleotide);
+
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+
+            encode(helix, nucleotide, scratch, 0);
+
+            return scratch;
+        }
+
+        /**
+         * Encodes one line for each atom of the nucleotide, so that it can be parsed by e.g. PyMOL.
+         * @param helix A buffer of nucleotides.
+         * @param nucleotide Index of a nucleotide inside the buffer.
+         * @param dst Target array, which needs at least {@link RecordWriter#size} bytes of space after the offset.
+         * @param offset Index where the first line starts.
+         * @return Index right after the last line.
+         */
+        int encode(HelixBuffer helix, int nucleotide, byte[] dst, int offset) {
+            final char letter = helix.letter(nucleotide);
+            final char chainID = helix.strand(nucleotide) == 1 ? 'A' : 'B';
+            final int currentResID = resID++;
+
+            int position = offset;
+
+            // Sugar, base, phosphate
+            position = encodeAtoms(helix, helix.sugarStart(nucleotide), helix.phosphateStart(nucleotide),
+                    letter, chainID, currentResID, dst, position);
+            position = encodeAtoms(helix, helix.baseStart(nucleotide), helix.atomEnd(nucleotide),
+                    letter, chainID, currentResID, dst, position);
+            position = encodeAtoms(helix, helix.phosphateStart(nucleotide), helix.baseStart(nucleotide),
+                    letter, chainID, currentResID, dst, position);
+
+            return position;
+        }
+
+        /**
+         * Encodes each atom of a range as a single line, using the cartesian coordinates that the model builder has
+         * already calculated.
+         */
+        private int encodeAtoms(HelixBuffer helix, int from, int to, char letter, char chainID, int currentResID,
+                                byte[] dst, int offset) {
+            int position = offset;
+
+            for (int atom = from; atom < to; atom++) {
+                position = PdbRecordEncoder.encodeAtom(dst, position, atomNumber++, atomNames[helix.nameIndex(atom)],
+                        letter, chainID, currentResID, helix.x(atom), helix.y(atom), helix.z(atom));
+
+                System.arraycopy(LINE_SEPARATOR, 0, dst, position, LINE_SEPARATOR.length);
+                position += LINE_SEPARATOR.length;
+            }
+
+            return position;
+        }
+    }
 
     /**
-     * Calculates x, y and z coordinates from a set of cylindrical coordinates.
-     * @param coords The set of cylindrical coordinates with radius, angle and height.
-     * @return An array of string representations of the cartesian coordinates with three decimal places.
+     * Checks a model for atoms that overlap before it is written, see {@link SpatialIndex#clashes(double)}.
+     * <p>
+     * This is a pass of its own in front of the writers, which calculates the geometry once more. The writers emit one
+     * strand after the other, while paired nucleotides of both strands are neighbours in space, so checking the records
+     * as they are written would mean keeping the whole first strand. Instead, the helix is checked in windows of
+     * consecutive positions of both strands, each with the few positions before it that are close enough to clash, so
+     * memory usage does not depend on the length of the sequence either.
+     * @param model The DNA/ RNA model.
+     * @param query The DNA/ RNA sequence.
+     * @param minDistance Minimum distance between two atoms that are not covalently linked, in Ångström.
+     * @return All pairs of atoms that are too close, with the same chains and residue numbers as inside the PDB file,
+     * in the order of the file.
      */
-    static String[] calculateXYZ(AbstractModel.CylinderCoords coords) {
-        final double r = coords.radius();
-        final double theta = Math.toRadians(coords.theta());
-
-        return new String[]{
-                FLOAT_FORMAT.format(r * Math.cos(theta)),
-                FLOAT_FORMAT.format(r * Math.sin(theta)),
-                FLOAT_FORMAT.format(coords.height())
-        };
+    public static List<SpatialIndex.Clash> validateModel(AbstractModel.Model model, CharSequence query, double minDistance) {
+        AbstractModel.checkLength(model, query);
+
+        final int length = query.length();
+        final AtomTable table = model.atomTable();
+        // Atoms are at most maxHeight above or below their nucleotide, so nucleotides that are farther apart cannot clash
+        final int reach = (int) Math.ceil((2 * table.maxHeight() + 100 * minDistance) / table.model().elevation());
+        final List<WindowClash> found = new ArrayList<>();
+
+        for (int start = 0; start < length; start += CHUNK_SIZE) {
+            final int from = Math.max(0, start - reach);
+            final int end = Math.min(length, start + CHUNK_SIZE);
+            final int windowStart = start;
+
+            // The coordinates of a window are those of the whole helix, only turned around and shifted along the axis
+            final HelixBuffer window = AbstractModel.createHelixBuffer(model, query.subSequence(from, end), true);
+            final SpatialIndex index = SpatialIndex.of(window, minDistance);
+            final int windowLength = end - from;
+
+            index.forEachClash(minDistance, (atom1, atom2, distance) -> {
+                final int nucleotide1 = index.nucleotide(atom1);
+                final int nucleotide2 = index.nucleotide(atom2);
+
+                // Pairs that lie before the start completely have been found by the previous window already
+                if (from + Math.max(nucleotide1 % windowLength, nucleotide2 % windowLength) < windowStart) {
+                    return;
+                }
+
+                final int global1 = globalNucleotide(nucleotide1, from, windowLength, length);
+                final int global2 = globalNucleotide(nucleotide2, from, windowLength, length);
+
+                found.add(new WindowClash(global1, atom1 - window.sugarStart(nucleotide1),
+                        global2, atom2 - window.sugarStart(nucleotide2),
+                        new SpatialIndex.Clash(nucleotide1 < windowLength ? 'A' : 'B', global1 + 1, index.atomName(atom1),
+                                nucleotide2 < windowLength ? 'A' : 'B', global2 + 1, index.atomName(atom2), distance)));
+            });
+        }
+
+        found.sort(Comparator.comparingInt(WindowClash::nucleotide1).thenComparingInt(WindowClash::atom1)
+                .thenComparingInt(WindowClash::nucleotide2).thenComparingInt(WindowClash::atom2));
+
+        final List<SpatialIndex.Clash> clashes = new ArrayList<>(found.size());
+
+        for (WindowClash clash : found) {
+            clashes.add(clash.clash());
+        }
+
+        return clashes;
     }
 
     /**
-     * Formats the data so that it can be parsed by e.g. PyMOL, padding where necessary.
-     * @param atomNumber Current unique number of the atom inside the file.
-     * @param atomName three-character short name of the atom in the context of a nucleic acid.
-     * @param residue_chain_resID Residue name (e.g. "DA" for adenine) + chain ID (A or B, depending on the strand) +
-     *                            residue ID (each nucleotide has its own number inside the file)
-     * @param xyz Array of cartesian coordinates for the current atom, obtained from {@link PDB#calculateXYZ(AbstractModel.CylinderCoords)}.
-     * @return A line representing the current atom that can be parsed by a simulation tool like PyMOL or Coot.
+     * A clash found inside a window, with the position of both atoms inside the whole helix.
+     * @param atom1 Index of the first atom inside its nucleotide.
+     * @param atom2 Index of the second atom inside its nucleotide.
+     */
+    private record WindowClash(int nucleotide1, int atom1, int nucleotide2, int atom2, SpatialIndex.Clash clash) {}
+
+    /**
+     * @return Index of a nucleotide of a window inside the whole helix, the first strand before the second one.
      */
-    static String formatLine(int atomNumber, String atomName, String residue_chain_resID, String[] xyz) {
-        final String atomNumberString = Integer.toString(atomNumber);
-        final String atomNumberPadding = getPadding(atomNumberString, 7);
-        final String atomNamePadding = getPadding(atomName, 5);
-        final String xPadding = getPadding(xyz[0], 12);
-        final String yPadding = getPadding(xyz[1], 8);
-        final String zPadding = getPadding(xyz[2], 8);
-        final String atomSymbol = switch (atomName.charAt(0)) {
-            case 'C' -> "C";
-            case 'H' -> "H";
-            case 'N' -> "N";
-            case 'O' -> "O";
-            case 'P' -> "P";
-            default -> throw new IllegalStateException("Unexpected value: " + atomName.charAt(0));
-        };
-
-        return String.join("", "ATOM", atomNumberPadding, atomNumberString, "  ",
-                atomName, atomNamePadding, residue_chain_resID,
-                xPadding, xyz[0], yPadding, xyz[1], zPadding, xyz[2],
-                "  1.00  0.00           ", atomSymbol);
+    private static int globalNucleotide(int nucleotide, int from, int windowLength, int length) {
+        return nucleotide < windowLength ? from + nucleotide : length + from + nucleotide - windowLength;
     }
 
-    // Preallocate padding
-    private static final String[] SPACE_PADDING = new String[16];
+    /**
+     * A single ATOM or HETATM record of a PDB file.
+     * @param name Name of the atom, e.g. "C1'".
+     * @param resName Name of the residue, e.g. "DT".
+     * @param chainID Chain identifier.
+     * @param resSeq Residue sequence number.
+     * @param iCode Insertion code, a blank if there is none.
+     * @param x Cartesian x coordinate, in Ångström.
+     * @param y Cartesian y coordinate, in Ångström.
+     * @param z Cartesian z coordinate, in Ångström.
+     */
+    public record AtomRecord(String name, String resName, char chainID, int resSeq, char iCode, double x, double y, double z) {}
 
     /**
-     * Determines how much padding is needed to extend the input string to the target length.
-     * @param str Input string.
-     * @param targetLength Length of the string after padding has been applied.
-     * @return A white space string, consisting of only spaces, or the empty string "".
+     * Reads the atoms of a PDB file, e.g. an experimental structure or a file written by {@link PDB#writeModelPdb}.
+     * Only the first model of the file is read, and only the first alternate location of each atom.
+     * @param file The PDB file.
+     * @return All atoms in the order of the file.
      */
-    static String getPadding(String str, int targetLength) {
-        return SPACE_PADDING[targetLength - str.length()];
+    public static List<AtomRecord> readAtoms(Path file) throws IOException {
+        final List<AtomRecord> atoms = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.ISO_8859_1)) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("ENDMDL")) {
+                    break;
+                }
+
+                if (!line.startsWith("ATOM  ") && !line.startsWith("HETATM")) {
+                    continue;
+                }
+
+                if (line.length() < 54) {
+                    throw new IOException("Truncated atom record in " + file + ": " + line);
+                }
+
+                final char altLoc = line.charAt(16);
+
+                if (altLoc != ' ' && altLoc != 'A') {
+                    continue;
+                }
+
+                try {
+                    atoms.add(new AtomRecord(line.substring(12, 16).trim(), line.substring(17, 20).trim(), line.charAt(21),
+                            Integer.parseInt(line.substring(22, 26).trim()), line.charAt(26),
+                            Double.parseDouble(line.substring(30, 38).trim()),
+                            Double.parseDouble(line.substring(38, 46).trim()),
+                            Double.parseDouble(line.substring(46, 54).trim())));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Malformed atom record in " + file + ": " + line, e);
+                }
+            }
+        }
+
+        return atoms;
     }
 
-    static {
-        for (int i = 0; i < SPACE_PADDING.length; i++) {
-            SPACE_PADDING[i] = " ".repeat(i);
+    /**
+     * Translates the atom names of a model into the names that the PDB format uses.
+     * @param table The atom names of the model.
+     * @return A name table with the same indices.
+     */
+    static String[] atomNames(AtomTable table) {
+        final String[] names = new String[table.size()];
+
+        for (int i = 0; i < names.length; i++) {
+            names[i] = table.name(i);
+        }
+
+        // Sugar atoms are primed
+        for (int i = table.sugarOffset(); i < table.phosphateOffset(); i++) {
+            names[i] += "'";
+        }
+
+        for (int i = 0; i < PHOSPHATE_NAMES.length; i++) {
+            names[table.phosphateOffset() + i] = PHOSPHATE_NAMES[i];
+        }
+
+        // The methyl group of thymine
+        if (table.contains('T')) {
+            names[table.baseOffset('T') + 2] = "C7";
         }
 
-        FLOAT_FORMAT.setRoundingMode(RoundingMode.HALF_UP);
+        return names;
     }
 
     private PDB() {}
@@ -0,0 +1,353 @@
+package com.pfaff.maximilian.model;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable DNA/ RNA sequence that stores every nucleotide in 2 bits (A = 0, C = 1, G = 2, T/ U = 3), 32 of them per
+ * {@code long}. That is an eighth of the memory of a {@code char[]}, and complementing a nucleotide is just flipping
+ * both of its bits, so whole words are complemented at once.
+ * <p>
+ * Since it is a {@link CharSequence}, it can be passed to the model builders and the PDB writer directly. Letters are
+ * always returned in upper case.
+ */
+public final class PackedSequence implements CharSequence {
+    private static final int BASES_PER_WORD = 32;
+    private static final char[] DNA_LETTERS = {'A', 'C', 'G', 'T'};
+    private static final char[] RNA_LETTERS = {'A', 'C', 'G', 'U'};
+    // Low bit of every base
+    private static final long LOW_BITS = 0x5555555555555555L;
+    // Number of nucleotides a builder has room for before it grows
+    private static final int INITIAL_CAPACITY = 512;
+
+    // Bases are packed starting at the lowest bits, unused bits of the last word are always 0
+    private final long[] words;
+    private final int length;
+    private final boolean rna;
+
+    private PackedSequence(long[] words, int length, boolean rna) {
+        this.words = words;
+        this.length = length;
+        this.rna = rna;
+
+        clearUnusedBits();
+    }
+
+    /**
+     * Packs a sequence. Whether it is DNA or RNA is decided by whether it contains 'T' or 'U'.
+     * @param sequence Sequence of one-letter codes, upper or lower case.
+     * @return The packed sequence.
+     */
+    public static PackedSequence of(CharSequence sequence) {
+        if (sequence instanceof PackedSequence packed) {
+            return packed;
+        }
+
+        final int length = sequence.length();
+        final Builder builder = new Builder(length);
+
+        for (int i = 0; i < length; i++) {
+            builder.append(sequence.charAt(i));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Packs a sequence letter by letter, e.g. while it is being read from a file, so that its letters are never held
+     * in memory as a whole.
+     */
+    public static final class Builder {
+        private long[] words;
+        private int length = 0;
+        private boolean thymine = false;
+        private boolean uracil = false;
+
+        public Builder() {
+            this(INITIAL_CAPACITY);
+        }
+
+        private Builder(int capacity) {
+            words = new long[wordCount(capacity)];
+        }
+
+        /**
+         * @param letter One-letter code of the next nucleotide, upper or lower case.
+         * @return This builder.
+         */
+        public Builder append(char letter) {
+            final long code = switch (letter) {
+                case 'a', 'A' -> 0;
+                case 'c', 'C' -> 1;
+                case 'g', 'G' -> 2;
+                case 't', 'T' -> {
+                    thymine = true;
+                    yield 3;
+                }
+                case 'u', 'U' -> {
+                    uracil = true;
+                    yield 3;
+                }
+                default -> throw new IllegalStateException("Unexpected value: " + letter);
+            };
+
+            if (length == words.length * BASES_PER_WORD) {
+                // Grows by half, like an ArrayList
+                words = Arrays.copyOf(words, Math.max(words.length + (words.length >> 1), wordCount(Math.addExact(length, 1))));
+            }
+
+            words[length / BASES_PER_WORD] |= code << 2 * (length % BASES_PER_WORD);
+            length++;
+
+            return this;
+        }
+
+        /**
+         * @return Number of nucleotides appended since the last {@link Builder#build()}.
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Whether it is DNA or RNA is decided like in {@link PackedSequence#of(CharSequence)}.
+         * @return The packed sequence of all nucleotides appended so far. The builder is empty afterwards.
+         */
+        public PackedSequence build() {
+            if (thymine && uracil) {
+                throw new IllegalStateException("Sequence contains both thymine and uracil");
+            }
+
+            final int count = wordCount(length);
+            final PackedSequence sequence;
+
+            if (words.length == count) {
+                // Hand the words over instead of copying them
+                sequence = new PackedSequence(words, length, uracil);
+                words = new long[wordCount(INITIAL_CAPACITY)];
+            } else {
+                sequence = new PackedSequence(Arrays.copyOf(words, count), length, uracil);
+                Arrays.fill(words, 0, count, 0L);
+            }
+
+            length = 0;
+            thymine = false;
+            uracil = false;
+
+            return sequence;
+        }
+    }
+
+    /**
+     * @return Whether the sequence is RNA, i.e. code 3 stands for uracil instead of thymine.
+     */
+    public boolean isRna() {
+        return rna;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return letter(code(index));
+    }
+
+    /**
+     * @param index Index of a nucleotide.
+     * @return The 2-bit code of the nucleotide: A = 0, C = 1, G = 2, T/ U = 3.
+     */
+    public int code(int index) {
+        Objects.checkIndex(index, length);
+
+        return (int) (words[index / BASES_PER_WORD] >>> 2 * (index % BASES_PER_WORD)) & 3;
+    }
+
+    /**
+     * @param code A 2-bit code.
+     * @return The one-letter code that the 2-bit code stands for in this sequence.
+     */
+    public char letter(int code) {
+        return (rna ? RNA_LETTERS : DNA_LETTERS)[code];
+    }
+
+    /**
+     * Copies a range of letters into an array like {@link String#getChars(int, int, char[], int)}, decoding a whole
+     * word at a time.
+     * @param srcBegin Index of the first nucleotide, inclusive.
+     * @param srcEnd Index of the last nucleotide, exclusive.
+     * @param dst The array.
+     * @param dstBegin Index inside the array of the first letter.
+     */
+    public void getChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        decode(srcBegin, srcEnd, dst, dstBegin, 0L);
+    }
+
+    /**
+     * Same as {@link PackedSequence#getChars(int, int, char[], int)}, but copies the complementary letters, i.e. those of
+     * {@link PackedSequence#complement()}, without creating the complementary sequence.
+     */
+    public void getComplementChars(int srcBegin, int srcEnd, char[] dst, int dstBegin) {
+        decode(srcBegin, srcEnd, dst, dstBegin, -1L);
+    }
+
+    /**
+     * Counts the nucleotides of a range by their 2-bit code, a whole word at a time.
+     * @param from Index of the first nucleotide, inclusive.
+     * @param to Index of the last nucleotide, exclusive.
+     * @return Number of nucleotides with each code, indexed by the code.
+     */
+    public int[] codeCounts(int from, int to) {
+        Objects.checkFromToIndex(from, to, length);
+
+        final int[] counts = new int[4];
+
+        for (int i = from; i < to; ) {
+            final int word = i / BASES_PER_WORD;
+            final int end = Math.min(to, (word + 1) * BASES_PER_WORD);
+            final int bases = end - i;
+
+            // Only the bases of the range, moved to the lowest bits
+            final long value = words[word] >>> 2 * (i % BASES_PER_WORD);
+            final long mask = bases == BASES_PER_WORD ? LOW_BITS : LOW_BITS & (1L << 2 * bases) - 1;
+
+            final long low = value & mask;
+            final long high = value >>> 1 & mask;
+            final int both = Long.bitCount(low & high);
+            final int lowOnly = Long.bitCount(low) - both;
+            final int highOnly = Long.bitCount(high) - both;
+
+            counts[0] += bases - lowOnly - highOnly - both;
+            counts[1] += lowOnly;
+            counts[2] += highOnly;
+            counts[3] += both;
+
+            i = end;
+        }
+
+        return counts;
+    }
+
+    /**
+     * @return The complementary sequence, read in the same direction.
+     */
+    public PackedSequence complement() {
+        final long[] complement = new long[words.length];
+
+        for (int i = 0; i < words.length; i++) {
+            complement[i] = ~words[i];
+        }
+
+        return new PackedSequence(complement, length, rna);
+    }
+
+    /**
+     * @return The complementary sequence, read in the opposite direction, i.e. the other strand from 5' to 3'.
+     */
+    public PackedSequence reverseComplement() {
+        final long[] reversed = new long[words.length];
+
+        for (int i = 0; i < words.length; i++) {
+            reversed[words.length - 1 - i] = ~reverseBases(words[i]);
+        }
+
+        // The unused bits of the last word are now in front of the first base
+        final int padding = words.length * BASES_PER_WORD - length;
+
+        return new PackedSequence(extract(reversed, padding, length), length, rna);
+    }
+
+    @Override
+    public PackedSequence subSequence(int start, int end) {
+        Objects.checkFromToIndex(start, end, length);
+
+        return new PackedSequence(extract(words, start, end - start), end - start, rna);
+    }
+
+    @Override
+    public String toString() {
+        final char[] letters = new char[length];
+
+        for (int i = 0; i < length; i++) {
+            letters[i] = charAt(i);
+        }
+
+        return new String(letters);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof PackedSequence other && length == other.length && rna == other.rna && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(words) + length;
+    }
+
+    /**
+     * @param flip 0 for the letters themselves, all bits set for the complementary ones.
+     */
+    private void decode(int from, int to, char[] dst, int offset, long flip) {
+        Objects.checkFromToIndex(from, to, length);
+        Objects.checkFromIndexSize(offset, to - from, dst.length);
+
+        final char[] letters = rna ? RNA_LETTERS : DNA_LETTERS;
+        int position = offset;
+
+        for (int i = from; i < to; ) {
+            final int word = i / BASES_PER_WORD;
+            final int end = Math.min(to, (word + 1) * BASES_PER_WORD);
+
+            long value = (words[word] ^ flip) >>> 2 * (i % BASES_PER_WORD);
+
+            for (; i < end; i++, value >>>= 2) {
+                dst[position++] = letters[(int) value & 3];
+            }
+        }
+    }
+
+    /**
+     * Reverses the order of the 32 bases inside a word, while keeping the order of the 2 bits of each base.
+     */
+    private static long reverseBases(long word) {
+        final long reversed = Long.reverse(word);
+
+        return (reversed >>> 1) & 0x5555555555555555L | (reversed & 0x5555555555555555L) << 1;
+    }
+
+    /**
+     * Copies a range of bases into new words, so that the first base of the range ends up at the lowest bits.
+     */
+    private static long[] extract(long[] words, int start, int count) {
+        final long[] result = new long[wordCount(count)];
+        final int first = start / BASES_PER_WORD;
+        final int shift = 2 * (start % BASES_PER_WORD);
+
+        for (int i = 0; i < result.length; i++) {
+            long word = words[first + i] >>> shift;
+
+            if (shift != 0 && first + i + 1 < words.length) {
+                word |= words[first + i + 1] << 64 - shift;
+            }
+
+            result[i] = word;
+        }
+
+        return result;
+    }
+
+    private void clearUnusedBits() {
+        final int used = length % BASES_PER_WORD;
+
+        if (used != 0) {
+            words[words.length - 1] &= (1L << 2 * used) - 1;
+        }
+    }
+
+    private static int wordCount(int length) {
+        return (length + BASES_PER_WORD - 1) / BASES_PER_WORD;
+    }
+}
@@ -0,0 +1,456 @@
+package com.pfaff.maximilian.model;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Fits the helical parameters of a model to a reference structure. Every combination of helix turn, elevation and
+ * template variant is built as a candidate helix and scored by its RMSD to the reference after optimal superposition,
+ * see {@link Superposition}. The combinations are spread over the common fork/join pool, and only the coordinates of
+ * atoms that the reference contains are calculated, without allocating anything per candidate.
+ * <p>
+ * Residues are matched by their order inside chain A for the first strand and chain B for the second one, atoms by
+ * their name in the PDB format, see {@link PDB#atomNames(AtomTable)}. Atoms that are missing on either side are skipped.
+ */
+public final class ParameterSweep {
+    /**
+     * Integer values from one bound to the other, both inclusive, in the fixed-point unit of the parameter.
+     * @param from First value.
+     * @param to Last value, which is only included if it is a multiple of the step away from the first one.
+     * @param step Distance between two values.
+     */
+    public record Range(int from, int to, int step) {
+        public Range {
+            if (step < 1 || to < from) {
+                throw new IllegalArgumentException("Invalid range: " + from + ":" + to + ":" + step);
+            }
+        }
+
+        /**
+         * @param value The only value of the range.
+         */
+        public static Range of(int value) {
+            return new Range(value, value, 1);
+        }
+
+        /**
+         * @param range Either a single value or "from:to:step", e.g. "340:380:2".
+         */
+        public static Range parse(String range) {
+            final String[] parts = range.split(":");
+
+            return switch (parts.length) {
+                case 1 -> of(Integer.parseInt(parts[0]));
+                case 3 -> new Range(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                default -> throw new IllegalArgumentException("Expected <value> or <from>:<to>:<step>, got " + range);
+            };
+        }
+
+        /**
+         * @return Number of values.
+         */
+        public int count() {
+            return (to - from) / step + 1;
+        }
+
+        int value(int index) {
+            return from + index * step;
+        }
+    }
+
+    /**
+     * Shifts a single atom of the template, in the same fixed-point units as the template coordinates.
+     * @param group Either "sugar", "phosphate" or the one-letter code of a nucleic base.
+     * @param atom Name of the atom inside the group as the model calls it, e.g. "C1".
+     * @param radius Added to the radius, in hundredths of an Ångström.
+     * @param theta Added to the angle, in tenths of a degree.
+     * @param height Added to the height, in hundredths of an Ångström.
+     */
+    public record Offset(String group, String atom, int radius, int theta, int height) {}
+
+    /**
+     * A scored combination of parameters.
+     * @param helixTurn The angle that the helix turns with each nucleotide times 10.
+     * @param elevation The distance the helix rises with each nucleotide times 100.
+     * @param variant Index of the template variant, 0 if no variants were given.
+     * @param rmsd RMSD to the reference after superposition, in Ångström.
+     */
+    public record Candidate(int helixTurn, int elevation, int variant, double rmsd) {}
+
+    /**
+     * Sweeps the parameters with the unmodified template, see
+     * {@link ParameterSweep#run(AbstractModel.Model, CharSequence, List, Range, Range, List, int)}.
+     * @param reference A PDB file, e.g. an experimental structure of the sequence.
+     */
+    public static List<Candidate> run(AbstractModel.Model model, CharSequence query, Path reference, Range helixTurn,
+                                      Range elevation, int k) throws IOException {
+        return run(model, query, PDB.readAtoms(reference), helixTurn, elevation, List.of(), k);
+    }
+
+    /**
+     * Scores every combination of the parameters against a reference structure.
+     * @param model The DNA/ RNA model whose template is used.
+     * @param query The DNA/ RNA sequence of the reference.
+     * @param reference The atoms of the reference structure, see {@link PDB#readAtoms(Path)}.
+     * @param helixTurn Values for the angle that the helix turns with each nucleotide times 10.
+     * @param elevation Values for the distance the helix rises with each nucleotide times 100.
+     * @param variants Sets of offsets that are applied to the template, each of them swept on its own. If empty, only
+     *                 the unmodified template is used.
+     * @param k Maximum number of candidates to return.
+     * @return The best candidates, lowest RMSD first. Ties are ordered by variant, helix turn and elevation.
+     */
+    public static List<Candidate> run(AbstractModel.Model model, CharSequence query, List<PDB.AtomRecord> reference,
+                                      Range helixTurn, Range elevation, List<List<Offset>> variants, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("At least one candidate has to be returned, got " + k);
+        }
+
+        final Fit fit = new Fit(model, query, reference, variants.isEmpty() ? List.of(List.of()) : variants,
+                helixTurn, elevation);
+        final int total = Math.multiplyExact(Math.multiplyExact(fit.variantCount, helixTurn.count()), elevation.count());
+
+        return IntStream.range(0, total).parallel()
+                .collect(() -> new TopK(fit, k), TopK::accept, TopK::merge)
+                .candidates();
+    }
+
+    /**
+     * Everything that all candidates share: the matched atoms, the centered reference and the templates.
+     */
+    private static final class Fit {
+        private final Range helixTurn;
+        private final Range elevation;
+        private final int variantCount;
+
+        // Per matched atom
+        private final int atoms;
+        private final int[] position;
+        private final int[] direction;
+        private final int[] template;
+        private final double[] referenceX;
+        private final double[] referenceY;
+        private final double[] referenceZ;
+        private final double referenceSquares;
+
+        // Per variant and atom table index
+        private final int[][] radius;
+        private final int[][] theta;
+        private final int[][] height;
+
+        Fit(AbstractModel.Model model, CharSequence query, List<PDB.AtomRecord> reference, List<List<Offset>> variants,
+            Range helixTurn, Range elevation) {
+            this.helixTurn = helixTurn;
+            this.elevation = elevation;
+            this.variantCount = variants.size();
+
+            final AtomTable table = model.atomTable();
+            final String[] names = PDB.atomNames(table);
+            final Map<String, PDB.AtomRecord> atomsByKey = indexReference(reference);
+
+            final List<int[]> matched = new ArrayList<>();
+            final List<PDB.AtomRecord> matchedRecords = new ArrayList<>();
+            final int strands = model != AbstractModel.Model.A_RNA ? 2 : 1;
+
+            // Sugar and phosphate come first in the atom table, followed by all bases
+            final int backboneAtoms = table.phosphateOffset() + table.phosphate().names().length;
+
+            for (int strand = 0; strand < strands; strand++) {
+                final char chainID = strand == 0 ? 'A' : 'B';
+
+                for (int i = 0; i < query.length(); i++) {
+                    final char letter = strand == 0 ? query.charAt(i) : AbstractModel.complementary(query.charAt(i));
+                    final int baseOffset = table.baseOffset(letter);
+                    final int nucleotideAtoms = backboneAtoms + table.base(letter).names().length;
+
+                    for (int atomIndex = 0; atomIndex < nucleotideAtoms; atomIndex++) {
+                        final int index = atomIndex < backboneAtoms ? atomIndex : baseOffset + atomIndex - backboneAtoms;
+                        final PDB.AtomRecord atom = atomsByKey.get(key(chainID, i, names[index]));
+
+                        if (atom == null) {
+                            continue;
+                        }
+
+                        final String resName = atom.resName();
+
+                        if (resName.isEmpty()
+                                || Character.toUpperCase(resName.charAt(resName.length() - 1)) != Character.toUpperCase(letter)) {
+                            throw new IllegalArgumentException("Residue " + atom.resSeq() + " of chain " + chainID
+                                    + " is " + resName + ", but the sequence has " + letter + " there");
+                        }
+
+                        matched.add(new int[]{i, strand == 0 ? 1 : -1, index});
+                        matchedRecords.add(atom);
+                    }
+                }
+            }
+
+            this.atoms = matched.size();
+
+            if (atoms < 3) {
+                throw new IllegalArgumentException("Only " + atoms + " atoms of the reference match the model, at least 3 are needed");
+            }
+
+            this.position = new int[atoms];
+            this.direction = new int[atoms];
+            this.template = new int[atoms];
+            this.referenceX = new double[atoms];
+            this.referenceY = new double[atoms];
+            this.referenceZ = new double[atoms];
+
+            double cx = 0, cy = 0, cz = 0;
+
+            for (int j = 0; j < atoms; j++) {
+                final PDB.AtomRecord atom = matchedRecords.get(j);
+
+                cx += atom.x();
+                cy += atom.y();
+                cz += atom.z();
+            }
+
+            cx /= atoms;
+            cy /= atoms;
+            cz /= atoms;
+
+            double squares = 0;
+
+            // Centered once, so that the cross products of each candidate do not depend on its centroid
+            for (int j = 0; j < atoms; j++) {
+                final int[] match = matched.get(j);
+                final PDB.AtomRecord atom = matchedRecords.get(j);
+
+                position[j] = match[0];
+                direction[j] = match[1];
+                template[j] = match[2];
+                referenceX[j] = atom.x() - cx;
+                referenceY[j] = atom.y() - cy;
+                referenceZ[j] = atom.z() - cz;
+
+                squares += referenceX[j] * referenceX[j] + referenceY[j] * referenceY[j] + referenceZ[j] * referenceZ[j];
+            }
+
+            this.referenceSquares = squares;
+
+            this.radius = new int[variantCount][];
+            this.theta = new int[variantCount][];
+            this.height = new int[variantCount][];
+
+            for (int v = 0; v < variantCount; v++) {
+                radius[v] = new int[table.size()];
+                theta[v] = new int[table.size()];
+                height[v] = new int[table.size()];
+
+                copyTemplate(table.sugar(), table.sugarOffset(), v);
+                copyTemplate(table.phosphate(), table.phosphateOffset(), v);
+
+                for (char letter : table.model().bases().toCharArray()) {
+                    copyTemplate(table.base(letter), table.baseOffset(letter), v);
+                }
+
+                for (Offset offset : variants.get(v)) {
+                    final int index = templateIndex(table, offset);
+
+                    radius[v][index] += offset.radius();
+                    theta[v][index] += offset.theta();
+                    height[v][index] += offset.height();
+                }
+            }
+        }
+
+        /**
+         * Builds the candidate of a combination and superposes it onto the reference.
+         */
+        double rmsd(int variant, int helixTurn, int elevation) {
+            final int[] radius = this.radius[variant];
+            final int[] theta = this.theta[variant];
+            final int[] height = this.height[variant];
+
+            double cx = 0, cy = 0, cz = 0;
+            double squares = 0;
+            double sxx = 0, sxy = 0, sxz = 0;
+            double syx = 0, syy = 0, syz = 0;
+            double szx = 0, szy = 0, szz = 0;
+
+            for (int j = 0; j < atoms; j++) {
+                final int index = template[j];
+                final int d = direction[j];
+
+                // Same coordinates as the model builder calculates for these parameters
+                final int angle = Math.floorMod((long) position[j] * helixTurn + theta[index] * d, TrigTable.SIZE);
+                final double r = radius[index] / 100d;
+
+                final double x = r * TrigTable.cos(angle);
+                final double y = r * TrigTable.sin(angle);
+                final double z = ((long) position[j] * elevation + height[index] * d) / 100d;
+
+                cx += x;
+                cy += y;
+                cz += z;
+                squares += x * x + y * y + z * z;
+
+                final double rx = referenceX[j];
+                final double ry = referenceY[j];
+                final double rz = referenceZ[j];
+
+                sxx += x * rx;
+                sxy += x * ry;
+                sxz += x * rz;
+                syx += y * rx;
+                syy += y * ry;
+                syz += y * rz;
+                szx += z * rx;
+                szy += z * ry;
+                szz += z * rz;
+            }
+
+            // The reference sums up to zero, so only the squares of the candidate need to be centered
+            final double centeredSquares = squares - (cx * cx + cy * cy + cz * cz) / atoms;
+
+            return Superposition.rmsd(sxx, sxy, sxz, syx, syy, syz, szx, szy, szz,
+                    (centeredSquares + referenceSquares) / 2, atoms);
+        }
+
+        private void copyTemplate(AbstractModel.Value value, int offset, int variant) {
+            final int[][] coords = value.coords();
+
+            for (int i = 0; i < coords.length; i++) {
+                radius[variant][offset + i] = coords[i][0];
+                theta[variant][offset + i] = coords[i][1];
+                height[variant][offset + i] = coords[i][2];
+            }
+        }
+
+        private static int templateIndex(AtomTable table, Offset offset) {
+            final String group = offset.group();
+
+            final AbstractModel.Value value;
+            final int first;
+
+            if (group.equalsIgnoreCase("sugar")) {
+                value = table.sugar();
+                first = table.sugarOffset();
+            } else if (group.equalsIgnoreCase("phosphate")) {
+                value = table.phosphate();
+                first = table.phosphateOffset();
+            } else if (group.length() == 1 && table.contains(group.charAt(0))) {
+                value = table.base(group.charAt(0));
+                first = table.baseOffset(group.charAt(0));
+            } else {
+                throw new IllegalArgumentException("Unknown group: " + group);
+            }
+
+            final int index = Arrays.asList(value.names()).indexOf(offset.atom());
+
+            if (index < 0) {
+                throw new IllegalArgumentException("Unknown atom " + offset.atom() + " in group " + group);
+            }
+
+            return first + index;
+        }
+
+        /**
+         * @return The atoms of chains A and B by chain, position of the residue inside its chain and atom name.
+         */
+        private static Map<String, PDB.AtomRecord> indexReference(List<PDB.AtomRecord> reference) {
+            final Map<String, PDB.AtomRecord> atomsByKey = new HashMap<>();
+            final Map<Character, Integer> residues = new HashMap<>();
+            final Map<Character, String> lastResidue = new HashMap<>();
+
+            for (PDB.AtomRecord atom : reference) {
+                final char chainID = atom.chainID();
+                final String residue = atom.resSeq() + "" + atom.iCode();
+
+                if (!residue.equals(lastResidue.put(chainID, residue))) {
+                    residues.merge(chainID, 1, Integer::sum);
+                }
+
+                atomsByKey.putIfAbsent(key(chainID, residues.get(chainID) - 1, atom.name()), atom);
+            }
+
+            return atomsByKey;
+        }
+
+        private static String key(char chainID, int residue, String atomName) {
+            return chainID + ":" + residue + ":" + atomName;
+        }
+    }
+
+    /**
+     * The best candidates of a part of the sweep, merged with the other parts at the end.
+     */
+    private static final class TopK {
+        private final Fit fit;
+        private final int k;
+
+        // Sorted by RMSD and then by combination, so that the result does not depend on how the sweep was split
+        private final double[] rmsd;
+        private final int[] combination;
+        private int size = 0;
+
+        TopK(Fit fit, int k) {
+            this.fit = fit;
+            this.k = k;
+            this.rmsd = new double[k];
+            this.combination = new int[k];
+        }
+
+        void accept(int combination) {
+            final int elevations = fit.elevation.count();
+            final int perVariant = fit.helixTurn.count() * elevations;
+            final int variant = combination / perVariant;
+            final int rest = combination % perVariant;
+
+            offer(fit.rmsd(variant, fit.helixTurn.value(rest / elevations), fit.elevation.value(rest % elevations)), combination);
+        }
+
+        void merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.rmsd[i], other.combination[i]);
+            }
+        }
+
+        private void offer(double value, int candidate) {
+            if (size == k && !isBetter(value, candidate, rmsd[k - 1], combination[k - 1])) {
+                return;
+            }
+
+            int i = size < k ? size++ : k - 1;
+
+            for (; i > 0 && isBetter(value, candidate, rmsd[i - 1], combination[i - 1]); i--) {
+                rmsd[i] = rmsd[i - 1];
+                combination[i] = combination[i - 1];
+            }
+
+            rmsd[i] = value;
+            combination[i] = candidate;
+        }
+
+        private static boolean isBetter(double value, int candidate, double otherValue, int otherCandidate) {
+            final int order = Double.compare(value, otherValue);
+
+            return order < 0 || order == 0 && candidate < otherCandidate;
+        }
+
+        List<Candidate> candidates() {
+            final int elevations = fit.elevation.count();
+            final int perVariant = fit.helixTurn.count() * elevations;
+            final List<Candidate> candidates = new ArrayList<>(size);
+
+            for (int i = 0; i < size; i++) {
+                final int rest = combination[i] % perVariant;
+
+                candidates.add(new Candidate(fit.helixTurn.value(rest / elevations), fit.elevation.value(rest % elevations),
+                        combination[i] / perVariant, rmsd[i]));
+            }
+
+            return candidates;
+        }
+    }
+
+    private ParameterSweep() {}
+}
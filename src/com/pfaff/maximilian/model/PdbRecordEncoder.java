@@ -0,0 +1,187 @@
+package com.pfaff.maximilian.model;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes fixed-width PDB ATOM records straight into a byte array. Nothing is allocated per record, all numbers are
+ * formatted by hand and coordinates are rounded exactly like {@link java.text.DecimalFormat} with
+ * {@link java.math.RoundingMode#HALF_UP} and the pattern "0.000" would round them.
+ */
+final class PdbRecordEncoder {
+    /**
+     * Length of a single ATOM record in bytes, without line break.
+     */
+    static final int RECORD_LENGTH = 78;
+
+    private static final byte[] ATOM = {'A', 'T', 'O', 'M'};
+    private static final byte[] OCCUPANCY_TEMPERATURE = "  1.00  0.00           ".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int X_WIDTH = 12;
+    private static final int YZ_WIDTH = 8;
+
+    /**
+     * Encodes a single ATOM record.
+     * @param dst Target array, which needs at least {@link PdbRecordEncoder#RECORD_LENGTH} bytes of space after the offset.
+     * @param offset Index of the first byte of the record inside the target array.
+     * @param atomNumber Unique number of the atom inside the file.
+     * @param atomName Name of the atom in the context of a nucleic acid, at most five characters.
+     * @param letter One-letter code of the nucleotide that the atom belongs to.
+     * @param chainID ID of the strand, 'A' or 'B'.
+     * @param resID Unique number of the nucleotide inside the file.
+     * @param x Cartesian x coordinate.
+     * @param y Cartesian y coordinate.
+     * @param z Cartesian z coordinate.
+     * @return Index right after the last byte of the record.
+     */
+    static int encodeAtom(byte[] dst, int offset, int atomNumber, String atomName, char letter, char chainID, int resID,
+                          double x, double y, double z) {
+        System.arraycopy(ATOM, 0, dst, offset, ATOM.length);
+        int position = offset + ATOM.length;
+
+        position = encodeInt(dst, position, atomNumber, 7);
+
+        dst[position++] = ' ';
+        dst[position++] = ' ';
+
+        // Atom name, left-aligned in five columns
+        final int nameEnd = position + 5;
+        if (atomName.length() > 5) {
+            throw new IllegalArgumentException("Atom name does not fit into the PDB format: " + atomName);
+        }
+
+        for (int i = 0; i < atomName.length(); i++) {
+            dst[position++] = (byte) atomName.charAt(i);
+        }
+
+        while (position < nameEnd) {
+            dst[position++] = ' ';
+        }
+
+        dst[position++] = 'D';
+        dst[position++] = (byte) letter;
+        dst[position++] = ' ';
+        dst[position++] = (byte) chainID;
+
+        position = encodeInt(dst, position, resID, 4);
+
+        position = encodeFixed3(dst, position, x, X_WIDTH);
+        position = encodeFixed3(dst, position, y, YZ_WIDTH);
+        position = encodeFixed3(dst, position, z, YZ_WIDTH);
+
+        System.arraycopy(OCCUPANCY_TEMPERATURE, 0, dst, position, OCCUPANCY_TEMPERATURE.length);
+        position += OCCUPANCY_TEMPERATURE.length;
+
+        dst[position++] = elementSymbol(atomName.charAt(0));
+
+        return position;
+    }
+
+    /**
+     * @param firstLetter First letter of the atom name.
+     * @return The element symbol of the atom.
+     */
+    static byte elementSymbol(char firstLetter) {
+        return switch (firstLetter) {
+            case 'C', 'H', 'N', 'O', 'P' -> (byte) firstLetter;
+            default -> throw new IllegalStateException("Unexpected value: " + firstLetter);
+        };
+    }
+
+    /**
+     * Writes a non-negative integer right-aligned into a field of the given width.
+     * @param dst Target array.
+     * @param offset Index of the first byte of the field.
+     * @param value The number.
+     * @param width Width of the field.
+     * @return Index right after the field.
+     */
+    static int encodeInt(byte[] dst, int offset, int value, int width) {
+        final int end = offset + width;
+        int position = end;
+        int remaining = value;
+
+        do {
+            if (position == offset) {
+                throw new IllegalArgumentException(value + " does not fit into " + width + " columns of the PDB format");
+            }
+
+            dst[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+
+        while (position > offset) {
+            dst[--position] = ' ';
+        }
+
+        return end;
+    }
+
+    /**
+     * Writes a number with three decimal places right-aligned into a field of the given width.
+     * @param dst Target array.
+     * @param offset Index of the first byte of the field.
+     * @param value The number.
+     * @param width Width of the field.
+     * @return Index right after the field.
+     */
+    static int encodeFixed3(byte[] dst, int offset, double value, int width) {
+        // DecimalFormat keeps the sign of negative numbers that are rounded to zero, including -0.0
+        final boolean negative = Double.doubleToRawLongBits(value) < 0;
+
+        long thousandths = roundThousandths(Math.abs(value));
+
+        final int end = offset + width;
+        int position = end;
+
+        for (int i = 0; i < 3; i++) {
+            dst[--position] = (byte) ('0' + thousandths % 10);
+            thousandths /= 10;
+        }
+
+        dst[--position] = '.';
+
+        do {
+            if (position == offset) {
+                throw new IllegalArgumentException(value + " does not fit into " + width + " columns of the PDB format");
+            }
+
+            dst[--position] = (byte) ('0' + thousandths % 10);
+            thousandths /= 10;
+        } while (thousandths != 0);
+
+        if (negative) {
+            if (position == offset) {
+                throw new IllegalArgumentException(value + " does not fit into " + width + " columns of the PDB format");
+            }
+
+            dst[--position] = '-';
+        }
+
+        while (position > offset) {
+            dst[--position] = ' ';
+        }
+
+        return end;
+    }
+
+    /**
+     * Rounds a non-negative number to thousandths, half up. Ties are decided by the exact binary value of the input
+     * rather than by the product with 1000, which would introduce another rounding error.
+     * @param value A non-negative, finite number.
+     * @return The number of thousandths.
+     */
+    static long roundThousandths(double value) {
+        long rounded = (long) (value * 1000 + 0.5);
+
+        // value * 1000 - (rounded -/+ 0.5) is rounded only once by fma, so its sign is exact
+        if (Math.fma(value, 1000, -(rounded - 0.5)) < 0) {
+            rounded--;
+        } else if (Math.fma(value, 1000, -(rounded + 0.5)) >= 0) {
+            rounded++;
+        }
+
+        return rounded;
+    }
+
+    private PdbRecordEncoder() {}
+}
@@ -0,0 +1,36 @@
+package com.pfaff.maximilian.model;
+
+/**
+ * The plain loop over all atoms of a nucleotide, which works on every JVM.
+ */
+final class ScalarTransformKernel implements TransformKernel {
+    @Override
+    public void transform(AtomTable.Template template, int theta, int z, int direction, HelixBuffer buffer,
+                          int firstAtom) {
+        final int[] templateTheta = template.theta();
+        final int[] templateHeight = template.height();
+
+        for (int i = 0, atom = firstAtom; i < template.size(); i++, atom++) {
+            int intermediateTheta = (theta + templateTheta[i] * direction) % 3600;
+
+            // Prevent negative angles
+            if (intermediateTheta < 0) {
+                intermediateTheta = 3600 + intermediateTheta;
+            }
+
+            buffer.radius[atom] = template.radius()[i];
+            buffer.theta[atom] = (short) intermediateTheta;
+            buffer.height[atom] = z + templateHeight[i] * direction;
+            buffer.names[atom] = template.names()[i];
+
+            if (buffer.x != null) {
+                // Same values as the conversion of the cylindrical coordinates, without calling any trigonometric function
+                final double radius = template.radiusAngstrom()[i];
+
+                buffer.x[atom] = radius * TrigTable.cos(intermediateTheta);
+                buffer.y[atom] = radius * TrigTable.sin(intermediateTheta);
+                buffer.z[atom] = buffer.height[atom] / 100d;
+            }
+        }
+    }
+}
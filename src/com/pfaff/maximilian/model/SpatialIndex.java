@@ -0,0 +1,450 @@
+package com.pfaff.maximilian.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
+
+/**
+ * Cell list over all atoms of a generated helix, for clash detection, contact maps and radius queries in time that
+ * grows linearly with the number of atoms instead of checking all pairs.
+ * <p>
+ * The cells follow the cylindrical coordinates of the helix: the axis is cut into slabs of equal height, and each slab
+ * into sectors of equal angle around the axis. A query only visits the slabs within reach and, as long as it is
+ * farther from the axis than the query distance, only the sectors that a sphere of that distance can reach.
+ * Since every model has a bounded radius, the number of cells grows with the length of the helix and not with its
+ * square, and each cell holds about the same number of atoms.
+ * <p>
+ * Nucleotides and atoms are numbered like inside a {@link HelixBuffer}: the first strand, then the second one, and
+ * inside each nucleotide sugar, phosphate and base.
+ */
+public final class SpatialIndex {
+    /**
+     * Minimum distance between atoms that are not covalently linked, in Ångström. No atoms of the models come closer
+     * than the hydrogen bonds between paired bases at about 2.7 Å, so only atoms that really overlap are reported.
+     */
+    public static final double DEFAULT_CLASH_DISTANCE = 2.2d;
+
+    // Accepts atoms exactly at the query distance despite rounding inside asin and atan2
+    private static final double ANGLE_TOLERANCE = 1e-9;
+
+    /**
+     * Receives pairs of atoms.
+     */
+    @FunctionalInterface
+    public interface PairConsumer {
+        /**
+         * @param atom1 Index of the first atom, always less than the second one.
+         * @param atom2 Index of the second atom.
+         * @param distance Distance between both atoms, in Ångström.
+         */
+        void accept(int atom1, int atom2, double distance);
+    }
+
+    /**
+     * Two atoms that are closer to each other than allowed.
+     * @param chainID1 Chain of the first atom, 'A' for the first strand and 'B' for the second one.
+     * @param residue1 Residue number of the first atom, the same as inside the PDB file.
+     * @param atom1 Name of the first atom.
+     * @param chainID2 Chain of the second atom.
+     * @param residue2 Residue number of the second atom.
+     * @param atom2 Name of the second atom.
+     * @param distance Distance between both atoms, in Ångström.
+     */
+    public record Clash(char chainID1, int residue1, String atom1, char chainID2, int residue2, String atom2, double distance) {
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%c %d %s - %c %d %s: %.2f Å", chainID1, residue1, atom1, chainID2, residue2, atom2, distance);
+        }
+    }
+
+    /**
+     * An entry of the contact map between nucleotides.
+     * @param nucleotide1 Index of the first nucleotide, always less than the second one.
+     * @param nucleotide2 Index of the second nucleotide.
+     * @param atomPairs Number of atom pairs within the cutoff.
+     * @param distance Distance of the closest pair of atoms, in Ångström.
+     */
+    public record Contact(int nucleotide1, int nucleotide2, int atomPairs, double distance) {}
+
+    private final double cellSize;
+
+    // One entry per atom
+    private final int atomCount;
+    private final double[] x;
+    private final double[] y;
+    private final double[] z;
+    private final int[] nucleotides;
+    private final String[] names;
+
+    // One entry per nucleotide
+    private final int nucleotideCount;
+    private final byte[] strands;
+
+    private final double minZ;
+    private final int slabs;
+    private final int sectors;
+    private final double sectorAngle;
+
+    // Atoms sorted by cell, the atoms of cell i are cellAtoms[cellStarts[i]] until cellAtoms[cellStarts[i + 1]]
+    private final int[] cellStarts;
+    private final int[] cellAtoms;
+
+    private SpatialIndex(double cellSize, double[] x, double[] y, double[] z, int[] nucleotides, String[] names, byte[] strands) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Cell size has to be positive, got " + cellSize);
+        }
+
+        this.cellSize = cellSize;
+        this.atomCount = x.length;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+        this.nucleotides = nucleotides;
+        this.names = names;
+        this.nucleotideCount = strands.length;
+        this.strands = strands;
+
+        double minZ = 0;
+        double maxZ = 0;
+        double maxRadius = 0;
+
+        for (int atom = 0; atom < atomCount; atom++) {
+            minZ = atom == 0 ? z[atom] : Math.min(minZ, z[atom]);
+            maxZ = atom == 0 ? z[atom] : Math.max(maxZ, z[atom]);
+            maxRadius = Math.max(maxRadius, Math.hypot(x[atom], y[atom]));
+        }
+
+        this.minZ = minZ;
+        this.slabs = (int) ((maxZ - minZ) / cellSize) + 1;
+
+        // The outermost atoms of neighbouring sectors are about one cell size apart
+        this.sectors = Math.max(1, (int) (2 * Math.PI * maxRadius / cellSize));
+        this.sectorAngle = 2 * Math.PI / sectors;
+
+        final int cells = Math.multiplyExact(slabs, sectors);
+        final int[] cellOfAtom = new int[atomCount];
+
+        this.cellStarts = new int[cells + 1];
+        this.cellAtoms = new int[atomCount];
+
+        // Counting sort, which keeps the atoms of each cell in ascending order
+        for (int atom = 0; atom < atomCount; atom++) {
+            cellOfAtom[atom] = slab(z[atom]) * sectors + sector(angle(x[atom], y[atom]));
+            cellStarts[cellOfAtom[atom] + 1]++;
+        }
+
+        for (int cell = 0; cell < cells; cell++) {
+            cellStarts[cell + 1] += cellStarts[cell];
+        }
+
+        final int[] next = Arrays.copyOf(cellStarts, cells);
+
+        for (int atom = 0; atom < atomCount; atom++) {
+            cellAtoms[next[cellOfAtom[atom]]++] = atom;
+        }
+    }
+
+    /**
+     * Indexes all atoms of a buffer. The buffer is not referenced afterwards.
+     * @param helix A buffer with any number of nucleotides, with or without Cartesian coordinates.
+     * @param cellSize Height of the slabs and approximate width of the sectors, in Ångström. Queries are fastest for
+     *                 distances around the cell size.
+     * @return The index.
+     */
+    public static SpatialIndex of(HelixBuffer helix, double cellSize) {
+        final int atoms = helix.atomCount();
+        final double[] x = new double[atoms];
+        final double[] y = new double[atoms];
+        final double[] z = new double[atoms];
+        final int[] nucleotides = new int[atoms];
+        final String[] names = new String[atoms];
+        final byte[] strands = Arrays.copyOf(helix.strands, helix.nucleotideCount());
+
+        for (int nucleotide = 0; nucleotide < helix.nucleotideCount(); nucleotide++) {
+            for (int atom = helix.sugarStart(nucleotide); atom < helix.atomEnd(nucleotide); atom++) {
+                if (helix.hasCartesian()) {
+                    x[atom] = helix.x(atom);
+                    y[atom] = helix.y(atom);
+                } else {
+                    x[atom] = helix.radius(atom) * TrigTable.cos(helix.scaledTheta(atom));
+                    y[atom] = helix.radius(atom) * TrigTable.sin(helix.scaledTheta(atom));
+                }
+
+                z[atom] = helix.height(atom);
+                nucleotides[atom] = nucleotide;
+                names[atom] = helix.atomName(atom);
+            }
+        }
+
+        return new SpatialIndex(cellSize, x, y, z, nucleotides, names, strands);
+    }
+
+    /**
+     * Indexes all atoms of a helix, see {@link SpatialIndex#of(HelixBuffer, double)}.
+     * @param helix A helix as returned by {@link AbstractModel#createModel(AbstractModel.Model, CharSequence)}.
+     */
+    public static SpatialIndex of(AbstractModel.Helix helix, double cellSize) {
+        final List<AbstractModel.Nucleotide> nucleotideList = new ArrayList<>(helix.strand1());
+
+        if (helix.strand2() != null) {
+            nucleotideList.addAll(helix.strand2());
+        }
+
+        int atoms = 0;
+
+        for (AbstractModel.Nucleotide nucleotide : nucleotideList) {
+            atoms += nucleotide.sugar().size() + nucleotide.phosphate().size() + nucleotide.base().size();
+        }
+
+        final double[] x = new double[atoms];
+        final double[] y = new double[atoms];
+        final double[] z = new double[atoms];
+        final int[] nucleotides = new int[atoms];
+        final String[] names = new String[atoms];
+        final byte[] strands = new byte[nucleotideList.size()];
+
+        int atom = 0;
+
+        for (int i = 0; i < nucleotideList.size(); i++) {
+            final AbstractModel.Nucleotide nucleotide = nucleotideList.get(i);
+
+            strands[i] = (byte) (i < helix.strand1().size() ? 1 : 2);
+
+            for (List<AbstractModel.CylinderCoords> part : List.of(nucleotide.sugar(), nucleotide.phosphate(), nucleotide.base())) {
+                for (AbstractModel.CylinderCoords coords : part) {
+                    x[atom] = coords.x();
+                    y[atom] = coords.y();
+                    z[atom] = coords.z();
+                    nucleotides[atom] = i;
+                    names[atom] = coords.atom();
+                    atom++;
+                }
+            }
+        }
+
+        return new SpatialIndex(cellSize, x, y, z, nucleotides, names, strands);
+    }
+
+    /**
+     * @return Number of indexed atoms.
+     */
+    public int atomCount() {
+        return atomCount;
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Index of the nucleotide the atom belongs to.
+     */
+    public int nucleotide(int atom) {
+        return nucleotides[atom];
+    }
+
+    /**
+     * @param atom Index of an atom.
+     * @return Name of the atom.
+     */
+    public String atomName(int atom) {
+        return names[atom];
+    }
+
+    /**
+     * Finds all atoms around a point.
+     * @param x Cartesian x coordinate of the point, in Ångström.
+     * @param y Cartesian y coordinate of the point, in Ångström.
+     * @param z Cartesian z coordinate of the point, in Ångström.
+     * @param distance Maximum distance from the point, inclusive.
+     * @param consumer Receives the index of every atom within the distance, cell by cell.
+     */
+    public void forEachWithin(double x, double y, double z, double distance, IntConsumer consumer) {
+        visit(x, y, z, distance, -1, (self, atom, d) -> consumer.accept(atom));
+    }
+
+    /**
+     * Finds all pairs of atoms that are at most a certain distance apart, each pair exactly once.
+     * @param distance Maximum distance between both atoms, inclusive.
+     * @param consumer Receives every pair, ordered by the first atom.
+     */
+    public void forEachPair(double distance, PairConsumer consumer) {
+        for (int atom = 0; atom < atomCount; atom++) {
+            visit(x[atom], y[atom], z[atom], distance, atom, consumer);
+        }
+    }
+
+    /**
+     * Finds all pairs of atoms that are closer than allowed, except for atoms of the same nucleotide and of neighbouring
+     * nucleotides of the same strand, which are covalently linked.
+     * @param minDistance Minimum distance between two atoms, e.g. {@link SpatialIndex#DEFAULT_CLASH_DISTANCE}.
+     * @return All clashes, ordered by the first and then by the second atom.
+     */
+    public List<Clash> clashes(double minDistance) {
+        final List<long[]> pairs = new ArrayList<>();
+
+        forEachClash(minDistance, (atom1, atom2, distance) -> pairs.add(new long[]{atom1, atom2, Double.doubleToRawLongBits(distance)}));
+
+        pairs.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        final List<Clash> clashes = new ArrayList<>(pairs.size());
+
+        for (long[] pair : pairs) {
+            final int atom1 = (int) pair[0];
+            final int atom2 = (int) pair[1];
+
+            clashes.add(new Clash(chainID(atom1), nucleotides[atom1] + 1, names[atom1], chainID(atom2),
+                    nucleotides[atom2] + 1, names[atom2], Double.longBitsToDouble(pair[2])));
+        }
+
+        return clashes;
+    }
+
+    /**
+     * Finds the same pairs as {@link SpatialIndex#clashes(double)}, but hands them over as they are found.
+     * @param consumer Receives every clash, in no particular order.
+     */
+    void forEachClash(double minDistance, PairConsumer consumer) {
+        forEachPair(minDistance, (atom1, atom2, distance) -> {
+            if (distance < minDistance && !linked(nucleotides[atom1], nucleotides[atom2])) {
+                consumer.accept(atom1, atom2, distance);
+            }
+        });
+    }
+
+    /**
+     * Builds the contact map between nucleotides. Only nucleotides with at least one pair of atoms within the cutoff
+     * are listed, so the map stays as sparse as the helix itself.
+     * @param cutoff Maximum distance between two atoms that are in contact, inclusive.
+     * @return All contacts between different nucleotides, ordered by the first and then by the second nucleotide.
+     */
+    public List<Contact> contacts(double cutoff) {
+        final List<Contact> contacts = new ArrayList<>();
+
+        // Pairs arrive ordered by their first atom, so all contacts of a nucleotide are complete once the next one starts
+        final int[] atomPairs = new int[nucleotideCount];
+        final double[] closest = new double[nucleotideCount];
+        final int[] touched = new int[nucleotideCount];
+        final int[] state = {-1, 0}; // Current nucleotide, number of touched entries
+
+        final Runnable flush = () -> {
+            Arrays.sort(touched, 0, state[1]);
+
+            for (int i = 0; i < state[1]; i++) {
+                final int other = touched[i];
+
+                contacts.add(new Contact(state[0], other, atomPairs[other], closest[other]));
+                atomPairs[other] = 0;
+            }
+
+            state[1] = 0;
+        };
+
+        forEachPair(cutoff, (atom1, atom2, distance) -> {
+            final int nucleotide1 = nucleotides[atom1];
+            final int nucleotide2 = nucleotides[atom2];
+
+            if (nucleotide1 != state[0]) {
+                flush.run();
+                state[0] = nucleotide1;
+            }
+
+            if (nucleotide1 == nucleotide2) {
+                return;
+            }
+
+            if (atomPairs[nucleotide2]++ == 0) {
+                touched[state[1]++] = nucleotide2;
+                closest[nucleotide2] = distance;
+            } else {
+                closest[nucleotide2] = Math.min(closest[nucleotide2], distance);
+            }
+        });
+
+        flush.run();
+
+        return contacts;
+    }
+
+    /**
+     * Visits all atoms within a distance of a point, skipping the atom at the point itself and all atoms before it.
+     * @param self Index of the atom at the point, or -1 for any point.
+     */
+    private void visit(double px, double py, double pz, double distance, int self, PairConsumer consumer) {
+        final int firstSlab = Math.max(0, slab(pz - distance));
+        final int lastSlab = Math.min(slabs - 1, slab(pz + distance));
+
+        if (firstSlab > lastSlab) {
+            return;
+        }
+
+        final double radius = Math.sqrt(px * px + py * py);
+
+        final int firstSector;
+        final int sectorCount;
+
+        if (radius <= distance || sectors == 1) {
+            // The sphere contains the axis
+            firstSector = 0;
+            sectorCount = sectors;
+        } else {
+            final double angle = angle(px, py);
+            final double halfWidth = Math.asin(distance / radius) + ANGLE_TOLERANCE;
+
+            firstSector = (int) Math.floor((angle - halfWidth) / sectorAngle);
+            sectorCount = Math.min(sectors, (int) Math.floor((angle + halfWidth) / sectorAngle) - firstSector + 1);
+        }
+
+        final double maxSquared = distance * distance;
+
+        for (int slab = firstSlab; slab <= lastSlab; slab++) {
+            for (int i = 0; i < sectorCount; i++) {
+                final int cell = slab * sectors + Math.floorMod(firstSector + i, sectors);
+
+                for (int k = cellStarts[cell]; k < cellStarts[cell + 1]; k++) {
+                    final int atom = cellAtoms[k];
+
+                    if (atom <= self) {
+                        continue;
+                    }
+
+                    final double dx = x[atom] - px;
+                    final double dy = y[atom] - py;
+                    final double dz = z[atom] - pz;
+                    final double squared = dx * dx + dy * dy + dz * dz;
+
+                    if (squared <= maxSquared) {
+                        consumer.accept(self, atom, Math.sqrt(squared));
+                    }
+                }
+            }
+        }
+    }
+
+    private int slab(double height) {
+        return (int) Math.floor((height - minZ) / cellSize);
+    }
+
+    private int sector(double angle) {
+        return Math.min(sectors - 1, (int) (angle / sectorAngle));
+    }
+
+    /**
+     * @return Angle around the axis between 0 and 2 pi.
+     */
+    private static double angle(double x, double y) {
+        final double angle = Math.atan2(y, x);
+
+        return angle < 0 ? angle + 2 * Math.PI : angle;
+    }
+
+    /**
+     * @return Whether both nucleotides are the same or neighbours on the same strand.
+     */
+    private boolean linked(int nucleotide1, int nucleotide2) {
+        return Math.abs(nucleotide1 - nucleotide2) <= 1 && strands[nucleotide1] == strands[nucleotide2];
+    }
+
+    private char chainID(int atom) {
+        return strands[nucleotides[atom]] == 1 ? 'A' : 'B';
+    }
+}
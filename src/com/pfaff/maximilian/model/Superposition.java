@@ -0,0 +1,149 @@
+package com.pfaff.maximilian.model;
+
+/**
+ * Root-mean-square deviation of two sets of atoms after optimal superposition, as the Kabsch algorithm would find it.
+ * Instead of a singular value decomposition, the largest eigenvalue of Horn's quaternion matrix is found as the root of
+ * its characteristic polynomial with Newton's method (QCP, Theobald 2005). The rotation itself is never needed, which
+ * keeps every call free of allocations.
+ */
+public final class Superposition {
+    // Relative precision of the eigenvalue, well below the precision of any coordinate
+    private static final double EIGENVALUE_PRECISION = 1e-11;
+    private static final int MAX_ITERATIONS = 50;
+
+    /**
+     * Superposes two sets of atoms with the same order. Both sets are centered on their centroid first, the input
+     * arrays are not modified.
+     * @param x1 Cartesian x coordinates of the first set.
+     * @param y1 Cartesian y coordinates of the first set.
+     * @param z1 Cartesian z coordinates of the first set.
+     * @param x2 Cartesian x coordinates of the second set.
+     * @param y2 Cartesian y coordinates of the second set.
+     * @param z2 Cartesian z coordinates of the second set.
+     * @param n Number of atoms, i.e. of entries that are used from each array.
+     * @return The minimal RMSD over all rotations and translations, in the unit of the coordinates.
+     */
+    public static double rmsd(double[] x1, double[] y1, double[] z1, double[] x2, double[] y2, double[] z2, int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("At least one atom is needed, got " + n);
+        }
+
+        double cx1 = 0, cy1 = 0, cz1 = 0;
+        double cx2 = 0, cy2 = 0, cz2 = 0;
+
+        for (int i = 0; i < n; i++) {
+            cx1 += x1[i];
+            cy1 += y1[i];
+            cz1 += z1[i];
+            cx2 += x2[i];
+            cy2 += y2[i];
+            cz2 += z2[i];
+        }
+
+        cx1 /= n;
+        cy1 /= n;
+        cz1 /= n;
+        cx2 /= n;
+        cy2 /= n;
+        cz2 /= n;
+
+        double sxx = 0, sxy = 0, sxz = 0;
+        double syx = 0, syy = 0, syz = 0;
+        double szx = 0, szy = 0, szz = 0;
+        double g = 0;
+
+        for (int i = 0; i < n; i++) {
+            final double ax = x1[i] - cx1;
+            final double ay = y1[i] - cy1;
+            final double az = z1[i] - cz1;
+            final double bx = x2[i] - cx2;
+            final double by = y2[i] - cy2;
+            final double bz = z2[i] - cz2;
+
+            g += ax * ax + ay * ay + az * az + bx * bx + by * by + bz * bz;
+
+            sxx += ax * bx;
+            sxy += ax * by;
+            sxz += ax * bz;
+            syx += ay * bx;
+            syy += ay * by;
+            syz += ay * bz;
+            szx += az * bx;
+            szy += az * by;
+            szz += az * bz;
+        }
+
+        return rmsd(sxx, sxy, sxz, syx, syy, syz, szx, szy, szz, g / 2, n);
+    }
+
+    /**
+     * The QCP kernel on its own, for callers that accumulate the sums themselves, e.g. without storing the coordinates.
+     * All sums are taken over both sets centered on their centroid; sxy is the sum of x of the first set times y of
+     * the second one, and so on.
+     * @param e0 Half of the sum of the squared distances of all atoms of both sets from their centroid.
+     * @param n Number of atoms.
+     * @return The minimal RMSD over all rotations and translations.
+     */
+    static double rmsd(double sxx, double sxy, double sxz, double syx, double syy, double syz, double szx, double szy,
+                       double szz, double e0, int n) {
+        final double sxx2 = sxx * sxx;
+        final double syy2 = syy * syy;
+        final double szz2 = szz * szz;
+        final double sxy2 = sxy * sxy;
+        final double syz2 = syz * syz;
+        final double sxz2 = sxz * sxz;
+        final double syx2 = syx * syx;
+        final double szy2 = szy * szy;
+        final double szx2 = szx * szx;
+
+        final double syzSzyMinusSyySzz2 = 2 * (syz * szy - syy * szz);
+        final double sxx2Syy2Szz2Syz2Szy2 = syy2 + szz2 - sxx2 + syz2 + szy2;
+
+        // Coefficients of the characteristic polynomial x^4 + c2 x^2 + c1 x + c0, the cubic term is always 0
+        final double c2 = -2 * (sxx2 + syy2 + szz2 + sxy2 + syx2 + sxz2 + szx2 + syz2 + szy2);
+        final double c1 = 8 * (sxx * syz * szy + syy * szx * sxz + szz * sxy * syx
+                - sxx * syy * szz - syz * szx * sxy - szy * syx * sxz);
+
+        final double sxzPlusSzx = sxz + szx;
+        final double syzPlusSzy = syz + szy;
+        final double sxyPlusSyx = sxy + syx;
+        final double syzMinusSzy = syz - szy;
+        final double sxzMinusSzx = sxz - szx;
+        final double sxyMinusSyx = sxy - syx;
+        final double sxxPlusSyy = sxx + syy;
+        final double sxxMinusSyy = sxx - syy;
+        final double sxy2Sxz2Syx2Szx2 = sxy2 + sxz2 - syx2 - szx2;
+
+        final double c0 = sxy2Sxz2Syx2Szx2 * sxy2Sxz2Syx2Szx2
+                + (sxx2Syy2Szz2Syz2Szy2 + syzSzyMinusSyySzz2) * (sxx2Syy2Szz2Syz2Szy2 - syzSzyMinusSyySzz2)
+                + (-sxzPlusSzx * syzMinusSzy + sxyMinusSyx * (sxxMinusSyy - szz))
+                * (-sxzMinusSzx * syzPlusSzy + sxyMinusSyx * (sxxMinusSyy + szz))
+                + (-sxzPlusSzx * syzPlusSzy - sxyPlusSyx * (sxxPlusSyy - szz))
+                * (-sxzMinusSzx * syzMinusSzy - sxyPlusSyx * (sxxPlusSyy + szz))
+                + (sxyPlusSyx * syzPlusSzy + sxzPlusSzx * (sxxMinusSyy + szz))
+                * (-sxyMinusSyx * syzMinusSzy + sxzPlusSzx * (sxxPlusSyy + szz))
+                + (sxyPlusSyx * syzMinusSzy + sxzMinusSzx * (sxxMinusSyy - szz))
+                * (-sxyMinusSyx * syzPlusSzy + sxzMinusSzx * (sxxPlusSyy - szz));
+
+        // E0 is an upper bound of the largest eigenvalue, so Newton's method converges to it from above
+        double eigenvalue = e0;
+
+        for (int i = 0; i < MAX_ITERATIONS; i++) {
+            final double previous = eigenvalue;
+            final double x2 = eigenvalue * eigenvalue;
+            final double b = (x2 + c2) * eigenvalue;
+            final double a = b + c1;
+
+            eigenvalue -= (a * eigenvalue + c0) / (2 * x2 * eigenvalue + b + a);
+
+            if (Math.abs(eigenvalue - previous) < Math.abs(EIGENVALUE_PRECISION * eigenvalue)) {
+                break;
+            }
+        }
+
+        // Rounding may leave a tiny negative difference for identical sets
+        return Math.sqrt(Math.abs(2 * (e0 - eigenvalue) / n));
+    }
+
+    private Superposition() {}
+}
@@ -0,0 +1,50 @@
+package com.pfaff.maximilian.model;
+
+/**
+ * Places the base coordinates of a whole nucleotide at its position inside the helix: rotates them around the axis,
+ * mirrors them for the strand that runs downwards and shifts them along the axis. The result is written straight into
+ * the columns of a {@link HelixBuffer}, including the Cartesian ones if the buffer has them.
+ * <p>
+ * If the JVM is started with {@code --add-modules jdk.incubator.vector}, the {@link TransformKernel#DEFAULT} kernel uses
+ * the Vector API, otherwise it falls back to plain loops. It can also be forced to the scalar one with
+ * {@code -Dmodellbau.vector=false}. Both produce exactly the same columns.
+ */
+interface TransformKernel {
+    String VECTOR_MODULE = "jdk.incubator.vector";
+
+    TransformKernel SCALAR = new ScalarTransformKernel();
+
+    TransformKernel DEFAULT = select();
+
+    /**
+     * @param template The base coordinates of the nucleotide, see {@link AtomTable#template(char)}.
+     * @param theta Angle of the nucleotide around the axis, in tenths of a degree between 0 and 3599.
+     * @param z Height of the nucleotide along the axis, in hundredths of an Ångström.
+     * @param direction Either {@link AbstractModel#UP} = 1 or {@link AbstractModel#DOWN} = -1.
+     * @param buffer The buffer, which must have room for all atoms of the nucleotide.
+     * @param firstAtom Index inside the buffer where the first atom of the nucleotide is written to.
+     */
+    void transform(AtomTable.Template template, int theta, int z, int direction, HelixBuffer buffer, int firstAtom);
+
+    /**
+     * @return The vectorized kernel if the incubator module is part of the boot layer, otherwise the scalar one.
+     */
+    static TransformKernel vectorOrScalar() {
+        if (ModuleLayer.boot().findModule(VECTOR_MODULE).isEmpty()) {
+            return SCALAR;
+        }
+
+        try {
+            // Loaded by name, so that nothing links against the incubator module unless it is there
+            return (TransformKernel) Class.forName(TransformKernel.class.getPackageName() + ".VectorTransformKernel")
+                    .getDeclaredConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    private static TransformKernel select() {
+        return Boolean.parseBoolean(System.getProperty("modellbau.vector", "true")) ? vectorOrScalar() : SCALAR;
+    }
+}
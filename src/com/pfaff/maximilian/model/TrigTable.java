@@ -0,0 +1,40 @@
+package com.pfaff.maximilian.model;
+
+/**
+ * Precomputed sine and cosine for every angle that a model can produce. All angles are integers in tenths of a degree
+ * between 0 and 3599, so the 3600 entries cover every atom without calling any trigonometric function.
+ * The entries are calculated exactly like {@code Math.cos(Math.toRadians(theta / 10d))}, so lookups return the same values.
+ */
+final class TrigTable {
+    static final int SIZE = 3600;
+
+    private static final double[] COS = new double[SIZE];
+    private static final double[] SIN = new double[SIZE];
+
+    static {
+        for (int i = 0; i < SIZE; i++) {
+            final double theta = Math.toRadians(i / 10d);
+
+            COS[i] = Math.cos(theta);
+            SIN[i] = Math.sin(theta);
+        }
+    }
+
+    /**
+     * @param theta Angle in tenths of a degree, between 0 and 3599.
+     * @return The cosine of the angle.
+     */
+    static double cos(int theta) {
+        return COS[theta];
+    }
+
+    /**
+     * @param theta Angle in tenths of a degree, between 0 and 3599.
+     * @return The sine of the angle.
+     */
+    static double sin(int theta) {
+        return SIN[theta];
+    }
+
+    private TrigTable() {}
+}
@@ -0,0 +1,150 @@
+package com.pfaff.maximilian.model;
+
+/**
+ * Writes the atom lines of the table that {@link AbstractModel#createModelDump(AbstractModel.Model, CharSequence, double)}
+ * creates straight into a byte array. The output is the same as
+ * {@link AbstractModel.CylinderCoords#toString(double, double)} produces with {@link String#format}, but without
+ * parsing a format string and boxing six numbers for every atom.
+ */
+final class TsvEncoder {
+    /**
+     * Upper bound for the length of a line, without line break, given an atom name of at most 16 characters.
+     */
+    static final int MAX_LINE_LENGTH = 16 + 6 * 24;
+
+    // Tenths of larger numbers could not be counted exactly anymore
+    private static final double MAX_FAST_VALUE = 1e12;
+
+    private static final long[] TEN_POWERS = {1, 10, 100, 1_000, 10_000, 100_000, 1_000_000};
+
+    /**
+     * Encodes a single atom as a tab-separated line.
+     * @param dst Target array, which needs at least {@link TsvEncoder#MAX_LINE_LENGTH} bytes of space after the offset.
+     * @param offset Index of the first byte of the line inside the target array.
+     * @param atomName Name of the atom.
+     * @param radius Distance from the helical axis, in hundredths of an Ångström.
+     * @param theta Angle around the axis, in tenths of a degree.
+     * @param height Height along the axis, in hundredths of an Ångström.
+     * @param scale Factor that converts Ångström to the unit of the physical model.
+     * @param extraHeight Additional height offset, in the unit of the physical model.
+     * @return Index right after the last byte of the line.
+     */
+    static int encodeAtom(byte[] dst, int offset, String atomName, int radius, int theta, int height, double scale,
+                          double extraHeight) {
+        int position = offset;
+
+        for (int i = 0; i < atomName.length(); i++) {
+            dst[position++] = (byte) atomName.charAt(i);
+        }
+
+        // Same doubles as the ones the table has always been formatted from
+        final double radiusAngstrom = radius / 100d;
+        final double heightAngstrom = height / 100d;
+
+        dst[position++] = '\t';
+        position = encodeFixed(dst, position, radius, 2);
+        dst[position++] = '\t';
+        position = encodeRoundedTenths(dst, position, radiusAngstrom * scale);
+        dst[position++] = '\t';
+        position = encodeFixed(dst, position, theta, 1);
+        dst[position++] = '\t';
+        position = encodeFixed(dst, position, height, 2);
+        dst[position++] = '\t';
+        position = encodeRoundedTenths(dst, position, heightAngstrom * scale + extraHeight);
+
+        return position;
+    }
+
+    /**
+     * Writes a fixed-point number. Its double value is the closest one to the decimal number, so String.format prints
+     * the same digits without rounding anything.
+     * @param value The number, scaled by 10 to the power of the decimal places.
+     * @param decimals Number of decimal places, either 1 or 2.
+     * @return Index right after the last digit.
+     */
+    static int encodeFixed(byte[] dst, int offset, long value, int decimals) {
+        int position = offset;
+
+        if (value < 0) {
+            dst[position++] = '-';
+        }
+
+        long remaining = Math.abs(value);
+
+        // Number of digits, with at least one before the decimal point
+        int digits = decimals + 1;
+
+        for (long rest = remaining / TEN_POWERS[digits]; rest != 0; rest /= 10) {
+            digits++;
+        }
+
+        final int end = position + digits + 1;
+
+        for (int i = end - 1; i > end - 1 - decimals; i--) {
+            dst[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        dst[end - 1 - decimals] = '.';
+
+        for (int i = end - 2 - decimals; i >= position; i--) {
+            dst[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+
+        return end;
+    }
+
+    /**
+     * Writes a number rounded to one decimal place exactly like {@code String.format("%.1f")} does. Unlike
+     * {@link PdbRecordEncoder#roundThousandths(double)}, Formatter does not round the binary value of the number but
+     * its shortest decimal representation, half up. E.g. 0.15 is slightly less than 0.15 as a double, but printed as 0.2.
+     * @return Index right after the last digit.
+     */
+    static int encodeRoundedTenths(byte[] dst, int offset, double value) {
+        final double magnitude = Math.abs(value);
+
+        if (!(magnitude < MAX_FAST_VALUE)) {
+            throw new IllegalArgumentException("Value is not finite or too large for the model dump: " + value);
+        }
+
+        int position = offset;
+
+        // Formatter keeps the sign of negative numbers that are rounded to zero, including -0.0
+        if (Double.doubleToRawLongBits(value) < 0) {
+            dst[position++] = '-';
+        }
+
+        return encodeFixed(dst, position, roundTenths(magnitude), 1);
+    }
+
+    /**
+     * Rounds the shortest decimal representation of a number to tenths, half up. The decimal representation is at or
+     * above the tie k + 0.5 tenths exactly if the number is at or above the double closest to that tie, so the
+     * result is the number of ties that are less than or equal to the input.
+     * @param value A non-negative number below {@link TsvEncoder#MAX_FAST_VALUE}.
+     * @return The number of tenths.
+     */
+    static long roundTenths(double value) {
+        long rounded = (long) (value * 10 + 0.5);
+
+        while (rounded > 0 && tie(rounded - 1) > value) {
+            rounded--;
+        }
+
+        while (tie(rounded) <= value) {
+            rounded++;
+        }
+
+        return rounded;
+    }
+
+    /**
+     * @return The double closest to (k + 0.5) / 10. Both operands are exact, so the division rounds only once.
+     */
+    private static double tie(long k) {
+        return (2 * k + 1) / 20d;
+    }
+
+    private TsvEncoder() {}
+}
@@ -0,0 +1,108 @@
+package com.pfaff.maximilian.model;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Transforms the atoms of a nucleotide in blocks of as many lanes as the preferred double vector has, the remaining
+ * atoms one by one. The integer columns use vectors with the same number of lanes, so a single loop covers all columns.
+ * Instead of a remainder per atom, the angles are looked up in tables that run over two full turns, and the strand that
+ * runs downwards uses the mirrored angles of the template, which keeps every sum of two angles below 7200.
+ * <p>
+ * The lookups are plain loads rather than a gather: C2 of JDK 21.0.1 encodes the index register of a gather wrongly if
+ * it is one of the upper AVX-512 registers, so the gather read from random addresses depending on register allocation.
+ * <p>
+ * Only loaded by {@link TransformKernel#vectorOrScalar()} if the incubator module is available.
+ */
+final class VectorTransformKernel implements TransformKernel {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS =
+            VectorSpecies.of(int.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    // Same shape as the int vectors
+    private static final VectorSpecies<Short> SHORTS = VectorSpecies.of(short.class, INTS.vectorShape());
+
+    private static final int LANES = DOUBLES.length();
+    // The narrowed angles only fill the lower half of the short lanes
+    private static final VectorMask<Short> NARROWED = SHORTS.indexInRange(0, LANES);
+
+    private static final double[] COS = new double[2 * TrigTable.SIZE];
+    private static final double[] SIN = new double[2 * TrigTable.SIZE];
+
+    static {
+        for (int i = 0; i < COS.length; i++) {
+            COS[i] = TrigTable.cos(i % TrigTable.SIZE);
+            SIN[i] = TrigTable.sin(i % TrigTable.SIZE);
+        }
+    }
+
+    @Override
+    public void transform(AtomTable.Template template, int theta, int z, int direction, HelixBuffer buffer,
+                          int firstAtom) {
+        final int size = template.size();
+        // theta - t equals theta + (3600 - t) modulo 3600, but is never negative
+        final int[] angles = direction > 0 ? template.theta() : template.reversedTheta();
+
+        System.arraycopy(template.radius(), 0, buffer.radius, firstAtom, size);
+        System.arraycopy(template.names(), 0, buffer.names, firstAtom, size);
+
+        final int bound = DOUBLES.loopBound(size);
+        int i = 0;
+
+        for (; i < bound; i += LANES) {
+            transformBlock(template, angles, theta, z, direction, buffer, firstAtom + i, i);
+        }
+
+        // Masked vectors for the remainder are slower than plain loops on current JDKs
+        for (; i < size; i++) {
+            final int atom = firstAtom + i;
+
+            int angle = theta + angles[i];
+
+            if (angle >= TrigTable.SIZE) {
+                angle -= TrigTable.SIZE;
+            }
+
+            buffer.theta[atom] = (short) angle;
+            buffer.height[atom] = z + template.height()[i] * direction;
+
+            if (buffer.x != null) {
+                final double radius = template.radiusAngstrom()[i];
+
+                buffer.x[atom] = radius * COS[angle];
+                buffer.y[atom] = radius * SIN[angle];
+                buffer.z[atom] = buffer.height[atom] / 100d;
+            }
+        }
+    }
+
+    private static void transformBlock(AtomTable.Template template, int[] angles, int theta, int z, int direction,
+                                       HelixBuffer buffer, int atom, int i) {
+        IntVector sum = IntVector.fromArray(INTS, angles, i).add(theta);
+        sum = sum.sub(TrigTable.SIZE, sum.compare(VectorOperators.GE, TrigTable.SIZE));
+        ((ShortVector) sum.convert(VectorOperators.I2S, 0)).intoArray(buffer.theta, atom, NARROWED);
+
+        final IntVector height = IntVector.fromArray(INTS, template.height(), i).mul(direction).add(z);
+        height.intoArray(buffer.height, atom);
+
+        if (buffer.x != null) {
+            final DoubleVector radius = DoubleVector.fromArray(DOUBLES, template.radiusAngstrom(), i);
+
+            // Filled with the sine and cosine first and scaled in place
+            for (int lane = 0; lane < LANES; lane++) {
+                final int angle = theta + angles[i + lane];
+
+                buffer.x[atom + lane] = COS[angle];
+                buffer.y[atom + lane] = SIN[angle];
+            }
+
+            radius.mul(DoubleVector.fromArray(DOUBLES, buffer.x, atom)).intoArray(buffer.x, atom);
+            radius.mul(DoubleVector.fromArray(DOUBLES, buffer.y, atom)).intoArray(buffer.y, atom);
+            ((DoubleVector) height.convertShape(VectorOperators.I2D, DOUBLES, 0)).div(100d).intoArray(buffer.z, atom);
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.util.ByteSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Back-translates any number of peptides, e.g. a whole proteome, into possible coding strands. The peptides are read one
+ * after another and encoded concurrently in batches, while the finished batches are written in input order, so only a
+ * bounded number of batches is held in memory at any time.
+ * <p>
+ * The output is reproducible: every record gets its own generator, split from a single {@link SplittableRandom} in input
+ * order before any encoding starts. The codons of a record therefore only depend on the seed and its position in the
+ * input, but neither on the number of threads nor on how the records are batched.
+ * <p>
+ * The input is either a FASTA file, whose records are written with the same header line and the coding strand broken
+ * into lines of 60 bases, or a file with one peptide per line, which are written as one coding strand per line.
+ * White space inside a peptide is ignored. Each peptide is encoded like {@link DNA_Encoder#encode(String)} does it,
+ * except that '*', as written by {@link FastaTranslator}, stands for the stop codon.
+ */
+public final class BulkEncoder {
+    // Number of amino acids that are encoded by a single task
+    private static final int BATCH_SIZE = 1 << 16;
+    // Number of bases per line of FASTA output
+    private static final int LINE_LENGTH = 60;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Encodes a whole file on the common fork/join pool.
+     * @param input FASTA file with one or more peptides, or a file with one peptide per line.
+     * @param output The sink that receives the coding strands. It is neither flushed nor closed by this method.
+     * @param seed Seed of the generator that all records split their generators from.
+     * @return The number of encoded peptides.
+     */
+    public static long encode(Path input, ByteSink output, long seed) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8)) {
+            return encode(reader, output, seed);
+        }
+    }
+
+    /**
+     * Encodes everything that can be read from a reader on the common fork/join pool.
+     * @param input FASTA records or one peptide per line.
+     * @param output The sink that receives the coding strands. It is neither flushed nor closed by this method.
+     * @param seed Seed of the generator that all records split their generators from.
+     * @return The number of encoded peptides.
+     */
+    public static long encode(BufferedReader input, ByteSink output, long seed) throws IOException {
+        return encode(input, output, seed, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism() + 1);
+    }
+
+    /**
+     * Encodes everything that can be read from a reader.
+     * @param input FASTA records or one peptide per line.
+     * @param output The sink that receives the coding strands. It is neither flushed nor closed by this method.
+     * @param seed Seed of the generator that all records split their generators from.
+     * @param executor Runs the encoding of each batch.
+     * @param maxPending Maximum number of batches that are encoded at the same time before writing batches.
+     * @return The number of encoded peptides.
+     */
+    public static long encode(BufferedReader input, ByteSink output, long seed, Executor executor, int maxPending)
+            throws IOException {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("At least one batch has to be pending, got " + maxPending);
+        }
+
+        final Encoding encoding = new Encoding(output, new SplittableRandom(seed), executor, maxPending);
+
+        for (String line; (line = input.readLine()) != null; ) {
+            encoding.accept(line);
+        }
+
+        encoding.finish();
+
+        return encoding.records;
+    }
+
+    /**
+     * State of an encoding that is fed one line after another. Records are collected in batches, which are encoded on
+     * the executor and written strictly in order.
+     */
+    private static final class Encoding {
+        private final ByteSink output;
+        private final SplittableRandom random;
+        private final Executor executor;
+        private final int maxPending;
+
+        private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+
+        // Whether the first line that is not empty has been read, and whether it has been a header line
+        private boolean started = false;
+        private boolean fasta = false;
+
+        private String header = null;
+        private byte[] peptide = new byte[1024];
+        private int peptideLength = 0;
+
+        private Batch batch;
+        private long records = 0;
+
+        Encoding(ByteSink output, SplittableRandom random, Executor executor, int maxPending) {
+            this.output = output;
+            this.random = random;
+            this.executor = executor;
+            this.maxPending = maxPending;
+            this.batch = new Batch(0);
+        }
+
+        void accept(String line) throws IOException {
+            final boolean headerLine = line.startsWith(">");
+
+            if (!started) {
+                if (line.isBlank()) {
+                    return;
+                }
+
+                started = true;
+                fasta = headerLine;
+            }
+
+            if (headerLine) {
+                if (!fasta) {
+                    throw new IllegalArgumentException("Header line in record " + (records + 1)
+                            + " of an input that does not start with a header: " + line);
+                }
+
+                if (header != null) {
+                    finishRecord();
+                }
+
+                header = line;
+                return;
+            }
+
+            appendResidues(line);
+
+            if (!fasta && peptideLength > 0) {
+                finishRecord();
+            }
+        }
+
+        void finish() throws IOException {
+            if (header != null) {
+                finishRecord();
+            }
+
+            submitBatch();
+
+            while (!pending.isEmpty()) {
+                writeBatch(pending.removeFirst());
+            }
+        }
+
+        private void appendResidues(String line) {
+            for (int i = 0; i < line.length(); i++) {
+                final char c = line.charAt(i);
+
+                if (c == ' ' || c == '\t' || c == '\r') {
+                    continue;
+                }
+
+                if (peptideLength == peptide.length) {
+                    peptide = Arrays.copyOf(peptide, 2 * peptideLength);
+                }
+
+                // ASCII only, like the one-letter codes themselves
+                if (c >= 0x80) {
+                    throw new IllegalArgumentException("Illegal character " + c + " in record " + (records + 1));
+                }
+
+                peptide[peptideLength++] = (byte) c;
+            }
+        }
+
+        private void finishRecord() throws IOException {
+            // Split in input order, before the record is handed to any thread
+            batch.add(header, Arrays.copyOf(peptide, peptideLength), random.split());
+            records++;
+
+            header = null;
+            peptideLength = 0;
+
+            if (batch.residues >= BATCH_SIZE) {
+                submitBatch();
+            }
+        }
+
+        private void submitBatch() throws IOException {
+            if (batch.peptides.isEmpty()) {
+                return;
+            }
+
+            final Batch submitted = batch;
+            pending.addLast(CompletableFuture.supplyAsync(submitted::encode, executor));
+
+            batch = new Batch(records);
+
+            // Write finished batches right away, but only wait if too many are in flight
+            while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > maxPending)) {
+                writeBatch(pending.removeFirst());
+            }
+        }
+
+        private void writeBatch(CompletableFuture<byte[]> future) throws IOException {
+            final byte[] encoded;
+
+            try {
+                encoded = future.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof IllegalArgumentException cause) {
+                    throw cause;
+                }
+
+                throw e;
+            }
+
+            output.append(encoded);
+        }
+    }
+
+    /**
+     * Consecutive records of the input, each with its own generator.
+     */
+    private static final class Batch {
+        // Number of the first record of the batch, for error messages
+        private final long firstRecord;
+
+        private final List<String> headers = new ArrayList<>();
+        private final List<byte[]> peptides = new ArrayList<>();
+        private final List<SplittableRandom> randoms = new ArrayList<>();
+
+        private int residues = 0;
+
+        Batch(long firstRecord) {
+            this.firstRecord = firstRecord;
+        }
+
+        void add(String header, byte[] peptide, SplittableRandom random) {
+            headers.add(header);
+            peptides.add(peptide);
+            randoms.add(random);
+            residues += peptide.length;
+        }
+
+        /**
+         * Encodes all records into their final text form. Runs on the executor.
+         */
+        byte[] encode() {
+            int capacity = 0;
+            int maxStrandLength = 0;
+
+            for (int i = 0; i < peptides.size(); i++) {
+                final int strandLength = 3 * (peptides.get(i).length + 1);
+                final String header = headers.get(i);
+
+                maxStrandLength = Math.max(maxStrandLength, strandLength);
+                capacity += strandLength + (strandLength / LINE_LENGTH + 2) * LINE_SEPARATOR.length
+                        + (header == null ? 0 : 3 * header.length());
+            }
+
+            final byte[] dst = new byte[capacity];
+            final byte[] strand = new byte[maxStrandLength];
+            int position = 0;
+
+            for (int i = 0; i < peptides.size(); i++) {
+                final String header = headers.get(i);
+                final byte[] peptide = peptides.get(i);
+                final int strandLength;
+
+                try {
+                    strandLength = DNA_Encoder.encode(peptide, peptide.length, randoms.get(i), strand, 0);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Record " + (firstRecord + i + 1)
+                            + (header == null ? "" : " (" + header + ")") + ": " + e.getMessage(), e);
+                }
+
+                if (header == null) {
+                    System.arraycopy(strand, 0, dst, position, strandLength);
+                    position = newLine(dst, position + strandLength);
+                    continue;
+                }
+
+                final byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+                System.arraycopy(headerBytes, 0, dst, position, headerBytes.length);
+                position = newLine(dst, position + headerBytes.length);
+
+                for (int offset = 0; offset < strandLength; offset += LINE_LENGTH) {
+                    final int length = Math.min(LINE_LENGTH, strandLength - offset);
+
+                    System.arraycopy(strand, offset, dst, position, length);
+                    position = newLine(dst, position + length);
+                }
+            }
+
+            return Arrays.copyOf(dst, position);
+        }
+
+        private static int newLine(byte[] dst, int offset) {
+            System.arraycopy(LINE_SEPARATOR, 0, dst, offset, LINE_SEPARATOR.length);
+
+            return offset + LINE_SEPARATOR.length;
+        }
+    }
+
+    private BulkEncoder() {}
+}
@@ -1,12 +1,30 @@
 package com.pfaff.maximilian.riddle;
 
+import com.pfaff.maximilian.model.PackedSequence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public final class DNA_Encoder {
     private static final String STOP_CODON = "TAA";
+    private static final byte[] STOP_CODON_BASES = STOP_CODON.getBytes(StandardCharsets.US_ASCII);
     private static final Node[] NODES;
 
+    // 2-bit code of each base (A = 0, C = 1, G = 2, T = 3), -1 for everything else
+    private static final byte[] BASE_CODES = new byte[128];
+    // Amino acid of each codon, indexed by the 2-bit codes of its bases, first base in the highest bits
+    private static final char[] CODON_TABLE = new char[64];
+    private static final char ILLEGAL = Character.MAX_VALUE;
+
+    // All codons of all amino acids, three ASCII bases each, grouped by amino acid in alphabetical order
+    private static final byte[] CODON_BASES = new byte[3 * 64];
+    // Index of the first codon of each amino acid inside CODON_BASES and the number of its codons, 0 if unknown
+    private static final int[] FIRST_CODON = new int[26];
+    private static final int[] CODON_COUNTS = new int[26];
+
     static {
         // Alphabetically sorted array for quick access to letters
         NODES = new Node[]{
@@ -37,11 +55,51 @@ public final class DNA_Encoder {
                 new Node('Y', "TAT", "TAC"),
                 null,//new Node('Z')
         };
+
+        Arrays.fill(BASE_CODES, (byte) -1);
+        BASE_CODES['A'] = 0;
+        BASE_CODES['C'] = 1;
+        BASE_CODES['G'] = 2;
+        BASE_CODES['T'] = 3;
+
+        Arrays.fill(CODON_TABLE, ILLEGAL);
+
+        for (Node node : NODES) {
+            if (node == null) {
+                continue;
+            }
+
+            for (String codon : node.codons) {
+                CODON_TABLE[codonIndex(codon.charAt(0), codon.charAt(1), codon.charAt(2))] = node.aminoAcid;
+            }
+        }
+
+        CODON_TABLE[codonIndex(STOP_CODON.charAt(0), STOP_CODON.charAt(1), STOP_CODON.charAt(2))] = 0;
+
+        int codonCount = 0;
+
+        for (int i = 0; i < NODES.length; i++) {
+            if (NODES[i] == null) {
+                continue;
+            }
+
+            FIRST_CODON[i] = codonCount;
+            CODON_COUNTS[i] = NODES[i].codons.length;
+
+            for (String codon : NODES[i].codons) {
+                for (int j = 0; j < 3; j++) {
+                    CODON_BASES[3 * codonCount + j] = (byte) codon.charAt(j);
+                }
+
+                codonCount++;
+            }
+        }
     }
 
     /**
      * @param peptide Amino acid sequence.
      * @return Possible sequence of respective coding DNA strand.
+     * @throws IllegalArgumentException If the peptide does not start with methionine or contains B, J, X or Z.
      */
     public static String encode(String peptide) {
         final char[] chars = peptide.toUpperCase(Locale.US).toCharArray();
@@ -53,10 +111,14 @@ public final class DNA_Encoder {
         final Random random = new Random();
         final StringBuilder builder = new StringBuilder();
 
-        for (char c : chars) {
+        for (int i = 0; i < chars.length; i++) {
+            final char c = chars[i];
+
             if (c < 'A' || c > 'Z') {
                 // Not a letter, e.g. comma or space
                 builder.append(c);
+            } else if (CODON_COUNTS[c - 'A'] == 0) {
+                throw new IllegalArgumentException("Amino acid " + c + " at position " + i + " has no codon");
             } else {
                 final Node node = NODES[c - 'A'];
                 final String[] codons = node.codons;
@@ -69,6 +131,61 @@ public final class DNA_Encoder {
         return builder + STOP_CODON;
     }
 
+    /**
+     * Same as {@link DNA_Encoder#encode(String)} for a peptide given as ASCII bytes, with codons drawn from the given
+     * generator and written straight into an array. Every amino acid with more than one codon takes exactly one draw,
+     * so the result only depends on the state of the generator. A stop codon is written for '*' as well, and only
+     * appended at the end if the peptide does not already end with one.
+     * @param peptide Amino acid sequence, in upper or lower case.
+     * @param length Number of amino acids.
+     * @param random Picks one of the codons of each amino acid.
+     * @param dst Target array, which needs at least 3 * (length + 1) bytes of space after the offset.
+     * @param offset Index of the first base inside the target array.
+     * @return Index right after the last base.
+     */
+    static int encode(byte[] peptide, int length, RandomGenerator random, byte[] dst, int offset) {
+        if (length == 0 || (peptide[0] & ~0x20) != 'M') {
+            throw new IllegalArgumentException("Peptide sequence must start with methionine (M)! Input: "
+                    + new String(peptide, 0, Math.min(length, 20), StandardCharsets.US_ASCII));
+        }
+
+        int position = offset;
+
+        for (int i = 0; i < length; i++) {
+            final byte b = peptide[i];
+            // ASCII only, like the one-letter codes themselves
+            final int letter = (b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b) - 'A';
+
+            if (b == '*') {
+                position = appendStopCodon(dst, position);
+            } else if (letter < 0 || letter >= CODON_COUNTS.length) {
+                // Not a letter, e.g. comma or space
+                dst[position++] = b;
+            } else {
+                final int count = CODON_COUNTS[letter];
+
+                if (count == 0) {
+                    throw new IllegalArgumentException("Amino acid " + (char) b + " at position " + i + " has no codon");
+                }
+
+                final int codon = 3 * (FIRST_CODON[letter] + (count == 1 ? 0 : random.nextInt(count)));
+
+                dst[position] = CODON_BASES[codon];
+                dst[position + 1] = CODON_BASES[codon + 1];
+                dst[position + 2] = CODON_BASES[codon + 2];
+                position += 3;
+            }
+        }
+
+        return peptide[length - 1] == '*' ? position : appendStopCodon(dst, position);
+    }
+
+    private static int appendStopCodon(byte[] dst, int offset) {
+        System.arraycopy(STOP_CODON_BASES, 0, dst, offset, STOP_CODON_BASES.length);
+
+        return offset + STOP_CODON_BASES.length;
+    }
+
     /**
      * @param codingStrand DNA sequence of the coding strand.
      * @return Amino acid sequence after transcription and translation of the template strand.
@@ -76,7 +193,7 @@ public final class DNA_Encoder {
     public static String decode(String codingStrand) {
         final char[] chars = codingStrand.toUpperCase(Locale.US).toCharArray();
 
-        final StringBuilder builder = new StringBuilder();
+        final StringBuilder builder = new StringBuilder(chars.length / 3 + 1);
 
         int index = 0;
 
@@ -87,10 +204,10 @@ public final class DNA_Encoder {
                 // Not a letter, e.g. comma or space
                 builder.append(c);
             } else {
-                final String codon = "" + c + chars[index++] + chars[index++];
-                final char aminoAcid = getAminoAcidFromCodon(codon);
+                final char second = chars[index++];
+                final char third = chars[index++];
 
-                builder.append(aminoAcid);
+                builder.append(getAminoAcidFromCodon(c, second, third));
             }
         }
 
@@ -98,30 +215,88 @@ public final class DNA_Encoder {
     }
 
     /**
-     * Iterates over the array to find the node with the specified codon.
+     * Same as {@link DNA_Encoder#decode(String)} for a packed sequence. The 2-bit codes of the sequence are the same as
+     * the ones of the codon table, so every codon is looked up without converting it to letters first.
+     * Uracil is read as thymine.
+     * @param codingStrand DNA sequence of the coding strand.
+     * @return Amino acid sequence after transcription and translation of the template strand.
+     */
+    public static String decode(PackedSequence codingStrand) {
+        final int length = codingStrand.length();
+
+        if (length % 3 != 0) {
+            throw new IllegalArgumentException("Incomplete codon at the end of a coding strand of length " + length);
+        }
+
+        final char[] peptide = new char[length / 3];
+
+        for (int i = 0, index = 0; i < peptide.length; i++, index += 3) {
+            // Every one of the 64 codons is assigned
+            peptide[i] = CODON_TABLE[codingStrand.code(index) << 4 | codingStrand.code(index + 1) << 2 | codingStrand.code(index + 2)];
+        }
+
+        return new String(peptide);
+    }
+
+    /**
+     * @param codonIndex The 2-bit codes of the three bases of a codon, first base in the highest bits.
+     * @return The amino acid that is encoded with the codon, or the null character if it's the {@link DNA_Encoder#STOP_CODON}.
+     */
+    static char aminoAcid(int codonIndex) {
+        // Every one of the 64 codons is assigned
+        return CODON_TABLE[codonIndex];
+    }
+
+    /**
+     * @return The index of the start codon ATG inside the codon table, see {@link DNA_Encoder#aminoAcid(int)}.
+     */
+    static int startCodonIndex() {
+        return codonIndex('A', 'T', 'G');
+    }
+
+    /**
+     * Looks up the amino acid of a codon.
      * @param codon A three-letter code consisting of 'A', 'T', 'G' and 'C'.
      * @return The amino acid that is encoded with the codon, or the null character if it's the {@link DNA_Encoder#STOP_CODON}.
      */
     public static char getAminoAcidFromCodon(String codon) {
-        // find the correct codon with brute force!
-        for (Node node : NODES) {
-            if (node == null) {
-                continue;
-            }
+        if (codon.length() != 3) {
+            throw new IllegalArgumentException("Illegal codon: " + codon);
+        }
 
-            for (String entry : node.codons) {
-                if (codon.equals(entry)) {
-                    return node.aminoAcid;
-                }
-            }
+        return getAminoAcidFromCodon(codon.charAt(0), codon.charAt(1), codon.charAt(2));
+    }
+
+    /**
+     * Looks up the amino acid of a codon, given as its three bases.
+     * @return The amino acid that is encoded with the codon, or the null character if it's the {@link DNA_Encoder#STOP_CODON}.
+     */
+    public static char getAminoAcidFromCodon(char first, char second, char third) {
+        final int index = codonIndex(first, second, third);
+        final char aminoAcid = index < 0 ? ILLEGAL : CODON_TABLE[index];
+
+        if (aminoAcid == ILLEGAL) {
+            throw new IllegalArgumentException("Illegal codon: " + first + second + third);
         }
 
-        // The stop codon is the only acceptable case left
-        if (codon.equals(STOP_CODON)) {
-            return 0;
+        return aminoAcid;
+    }
+
+    /**
+     * Packs the 2-bit codes of three bases into a single index.
+     * @return The index inside {@link DNA_Encoder#CODON_TABLE}, or a negative number if one of the bases is not 'A', 'C', 'G' or 'T'.
+     */
+    private static int codonIndex(char first, char second, char third) {
+        if ((first | second | third) >= BASE_CODES.length) {
+            return -1;
         }
 
-        throw new IllegalArgumentException("Illegal codon: " + codon);
+        final int a = BASE_CODES[first];
+        final int b = BASE_CODES[second];
+        final int c = BASE_CODES[third];
+
+        // Any negative code makes the whole index negative
+        return (a | b | c) < 0 ? -1 : a << 4 | b << 2 | c;
     }
 
     /**
@@ -0,0 +1,205 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.util.ByteSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Translates coding strands from FASTA or plain sequence files of any size. The input is memory-mapped in fixed-size
+ * windows and translated byte by byte, while the peptides are streamed into a {@link ByteSink}, so memory usage does not
+ * depend on the size of the file.
+ * <p>
+ * Every record of the input becomes a record of the output with the same header line. Line breaks and other white space
+ * inside sequences are ignored, even when they split a codon, and stop codons are written as '*'.
+ * Everything else is translated like {@link DNA_Encoder#decode(String)} does it.
+ */
+public final class FastaTranslator {
+    // Size of the part of the file that is mapped at once
+    static final long WINDOW_SIZE = 1 << 25;
+    // Number of amino acids per line of the output
+    private static final int LINE_LENGTH = 60;
+
+    /**
+     * Translates a whole file.
+     * @param input FASTA file with one or more records, or a file that only contains a sequence.
+     * @param output The sink that receives the translated records. It is neither flushed nor closed by this method.
+     */
+    public static void translate(Path input, ByteSink output) throws IOException {
+        translate(input, output, WINDOW_SIZE);
+    }
+
+    /**
+     * Same as {@link FastaTranslator#translate(Path, ByteSink)} with a given window size.
+     */
+    static void translate(Path input, ByteSink output, long windowSize) throws IOException {
+        final Translation translation = new Translation(output);
+
+        forEachWindow(input, windowSize, translation::accept);
+        translation.finish();
+    }
+
+    /**
+     * Maps a file one window after another, so that memory usage does not depend on the size of the file.
+     * @param input The file.
+     * @param windowSize Number of bytes that are mapped at once, usually {@link FastaTranslator#WINDOW_SIZE}.
+     * @param consumer Receives each window together with its offset inside the file, in order.
+     */
+    static void forEachWindow(Path input, long windowSize, WindowConsumer consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            final long size = channel.size();
+
+            for (long position = 0; position < size; position += windowSize) {
+                final long length = Math.min(windowSize, size - position);
+
+                consumer.accept(channel.map(FileChannel.MapMode.READ_ONLY, position, length), position);
+            }
+        }
+    }
+
+    /**
+     * Receives the windows of {@link FastaTranslator#forEachWindow(Path, long, WindowConsumer)}.
+     */
+    interface WindowConsumer {
+        /**
+         * @param window The next part of the file, which is only valid until the file is closed.
+         * @param offset Offset of the window inside the file.
+         */
+        void accept(ByteBuffer window, long offset) throws IOException;
+    }
+
+    /**
+     * State of a translation that is fed one window after another. Codons and header lines may span windows.
+     */
+    private static final class Translation {
+        private final ByteSink output;
+
+        private boolean lineStart = true;
+        private boolean header = false;
+
+        // Bases of the current codon that have been read so far
+        private final char[] codon = new char[3];
+        private int codonLength = 0;
+        private long codonOffset = 0;
+
+        // Characters written to the current line of the output
+        private int column = 0;
+
+        Translation(ByteSink output) {
+            this.output = output;
+        }
+
+        /**
+         * @param window The next part of the input.
+         * @param offset Offset of the window inside the file, for error messages.
+         */
+        void accept(ByteBuffer window, long offset) throws IOException {
+            final int limit = window.limit();
+
+            for (int i = 0; i < limit; i++) {
+                final byte b = window.get(i);
+
+                if (b == '\n') {
+                    if (header) {
+                        output.newLine();
+                        header = false;
+                    }
+
+                    lineStart = true;
+                    continue;
+                }
+
+                if (header) {
+                    if (b != '\r') {
+                        output.append(b);
+                    }
+
+                    continue;
+                }
+
+                if (lineStart && b == '>') {
+                    finishRecord(offset + i);
+
+                    header = true;
+                    lineStart = false;
+                    output.append(b);
+                    continue;
+                }
+
+                lineStart = false;
+
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    continue;
+                }
+
+                // ASCII only, like the one-letter codes themselves
+                final char c = (char) (b >= 'a' && b <= 'z' ? b - ('a' - 'A') : b & 0xFF);
+
+                if (codonLength == 0 && (c < 'A' || c > 'T')) {
+                    // Not a letter, e.g. comma
+                    write(c);
+                    continue;
+                }
+
+                if (codonLength == 0) {
+                    codonOffset = offset + i;
+                }
+
+                codon[codonLength++] = c;
+
+                if (codonLength == 3) {
+                    codonLength = 0;
+
+                    final char aminoAcid;
+
+                    try {
+                        aminoAcid = DNA_Encoder.getAminoAcidFromCodon(codon[0], codon[1], codon[2]);
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException(e.getMessage() + " at byte " + codonOffset, e);
+                    }
+
+                    write(aminoAcid == 0 ? '*' : aminoAcid);
+                }
+            }
+        }
+
+        /**
+         * Ends the last record after the whole input has been read.
+         */
+        void finish() throws IOException {
+            if (header) {
+                output.newLine();
+                header = false;
+            }
+
+            finishRecord(-1);
+        }
+
+        private void finishRecord(long offset) throws IOException {
+            if (codonLength != 0) {
+                throw new IllegalArgumentException("Incomplete codon " + String.valueOf(codon, 0, codonLength) + " at byte " + codonOffset
+                        + (offset < 0 ? " at the end of the file" : " before the record at byte " + offset));
+            }
+
+            if (column != 0) {
+                output.newLine();
+                column = 0;
+            }
+        }
+
+        private void write(char aminoAcid) throws IOException {
+            if (column == LINE_LENGTH) {
+                output.newLine();
+                column = 0;
+            }
+
+            output.append((byte) aminoAcid);
+            column++;
+        }
+    }
+
+    private FastaTranslator() {}
+}
@@ -0,0 +1,532 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.model.PackedSequence;
+import com.pfaff.maximilian.util.ByteSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Finds the open reading frames of all six frames of a sequence: three on the given strand and three on the
+ * complementary one, read in the opposite direction. An open reading frame starts with ATG and ends with the next stop
+ * codon of the same frame, i.e. {@link DNA_Encoder#getAminoAcidFromCodon(char, char, char)} returns the null character
+ * for it, which with the codon table of the encoder is TAA only, since TAG and TGA stand for pyrrolysine and
+ * selenocysteine. Only the longest one per stop codon is reported, i.e. the one that starts at the first ATG after the previous
+ * stop codon, and open reading frames that run off the end of the sequence are not reported at all.
+ * <p>
+ * All six frames are read in a single pass over the packed sequence, which keeps a rolling index into the codon table
+ * for each strand. Long sequences are split into chunks that are scanned concurrently. A chunk does not know whether a
+ * reading frame is already open when it starts, so it only records the first stop codon of each frame and leaves that
+ * open reading frame to be completed when the chunks are put together in order. The result is the same as the one of a
+ * single scan from the start to the end, including the order in which the open reading frames are reported.
+ */
+public final class OrfScanner {
+    /**
+     * Default minimum number of amino acids of a reported open reading frame.
+     */
+    public static final int DEFAULT_MIN_LENGTH = 100;
+
+    // Number of codons that are scanned by a single task
+    private static final int CHUNK_SIZE = 1 << 20;
+    // Number of amino acids per line of the output
+    private static final int LINE_LENGTH = 60;
+
+    private static final int START_CODON = DNA_Encoder.startCodonIndex();
+
+    // No reading frame is open, or no stop codon has been found yet
+    private static final int NONE = -1;
+    // The state depends on the chunks before
+    private static final int UNKNOWN = -2;
+
+    /**
+     * An open reading frame. Positions always refer to the given strand, from its start, whichever strand the open
+     * reading frame is on.
+     * @param strand Either 1 for the given strand or -1 for the complementary one.
+     * @param frame Offset of the first codon of the frame from the 5' end of its strand, between 0 and 2.
+     * @param start Index of the first nucleotide, inclusive. On the complementary strand, this is the first nucleotide of
+     *              the stop codon.
+     * @param end Index of the last nucleotide, exclusive. On the complementary strand, this is right after the start codon.
+     * @param peptide The translated amino acids from the start codon on, without the stop codon.
+     */
+    public record Orf(int strand, int frame, int start, int end, String peptide) {}
+
+    /**
+     * Scans a sequence on the common fork/join pool.
+     * @param sequence The given strand.
+     * @param minLength Minimum number of amino acids, including the methionine of the start codon.
+     * @param consumer Receives all open reading frames on the calling thread, in the order in which a scan from the
+     *                 start to the end of the sequence completes them.
+     */
+    public static void scan(PackedSequence sequence, int minLength, Consumer<Orf> consumer) {
+        scan(sequence, minLength, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism() + 1, consumer);
+    }
+
+    /**
+     * Scans a sequence.
+     * @param sequence The given strand.
+     * @param minLength Minimum number of amino acids, including the methionine of the start codon.
+     * @param executor Scans each chunk of the sequence.
+     * @param maxPending Maximum number of chunks that are scanned at the same time before reporting their results.
+     * @param consumer Receives all open reading frames on the calling thread, in the order in which a scan from the
+     *                 start to the end of the sequence completes them.
+     */
+    public static void scan(PackedSequence sequence, int minLength, Executor executor, int maxPending,
+                            Consumer<Orf> consumer) {
+        scan(sequence, minLength, executor, maxPending, CHUNK_SIZE, consumer);
+    }
+
+    /**
+     * Same as {@link OrfScanner#scan(PackedSequence, int, Executor, int, Consumer)} with a given number of codons per chunk.
+     */
+    static void scan(PackedSequence sequence, int minLength, Executor executor, int maxPending, int chunkSize,
+                     Consumer<Orf> consumer) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("At least one chunk has to be pending, got " + maxPending);
+        }
+
+        final Scan scan = new Scan(sequence, minLength, consumer);
+        final Deque<CompletableFuture<Chunk>> pending = new ArrayDeque<>();
+        final int codons = Math.max(sequence.length() - 2, 0);
+
+        for (int from = 0; from < codons; from += chunkSize) {
+            final int chunkFrom = from;
+            final int chunkTo = Math.min(from + chunkSize, codons);
+
+            pending.addLast(CompletableFuture.supplyAsync(() -> scanChunk(sequence, chunkFrom, chunkTo, minLength), executor));
+
+            // Report finished chunks right away, but only wait if too many are in flight
+            while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > maxPending)) {
+                scan.accept(join(pending.removeFirst()));
+            }
+        }
+
+        while (!pending.isEmpty()) {
+            scan.accept(join(pending.removeFirst()));
+        }
+
+        scan.finish();
+    }
+
+    /**
+     * Scans every record of a FASTA or plain sequence file and writes the peptides of all open reading frames as FASTA
+     * records. Each header names the record, the strand, the frame and the location of the open reading frame, counted
+     * from 1 and inclusive. Letters other than A, C, G, T and U, e.g. N, end every reading frame that spans them.
+     * @param input FASTA file with one or more records, or a file that only contains a sequence.
+     * @param minLength Minimum number of amino acids, including the methionine of the start codon.
+     * @param output The sink that receives the peptides. It is neither flushed nor closed by this method.
+     * @return The number of open reading frames.
+     */
+    public static long scan(Path input, int minLength, ByteSink output) throws IOException {
+        return scan(input, minLength, output, FastaTranslator.WINDOW_SIZE);
+    }
+
+    /**
+     * Same as {@link OrfScanner#scan(Path, int, ByteSink)} with a given window size.
+     */
+    static long scan(Path input, int minLength, ByteSink output, long windowSize) throws IOException {
+        final RecordWriter writer = new RecordWriter(minLength, output);
+
+        FastaTranslator.forEachWindow(input, windowSize, writer::accept);
+        writer.finish();
+
+        return writer.orfs;
+    }
+
+    private static Chunk join(CompletableFuture<Chunk> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Scans the codons that start inside a chunk, as if the state of every frame at its start was unknown.
+     * Runs on the executor.
+     */
+    private static Chunk scanChunk(PackedSequence sequence, int from, int to, int minLength) {
+        final Chunk chunk = new Chunk();
+
+        // Codon indices of both strands, as if the codon right before the chunk had just been read
+        int forward = sequence.code(from) << 2 | sequence.code(from + 1);
+        int reverse = (3 - sequence.code(from + 1)) << 4 | (3 - sequence.code(from)) << 2;
+
+        for (int position = from, frame = from % 3; position < to; position++, frame = frame == 2 ? 0 : frame + 1) {
+            final int code = sequence.code(position + 2);
+
+            forward = (forward << 2 | code) & 63;
+            reverse = reverse >>> 2 | (3 - code) << 4;
+
+            if (forward == START_CODON) {
+                if (chunk.open[frame] == NONE) {
+                    chunk.open[frame] = position;
+                } else if (chunk.open[frame] == UNKNOWN && chunk.firstStart[frame] == NONE) {
+                    chunk.firstStart[frame] = position;
+                }
+            } else if (DNA_Encoder.aminoAcid(forward) == 0) {
+                if (chunk.open[frame] >= 0) {
+                    add(chunk.found, position, frame, forwardOrf(sequence, chunk.open[frame], position + 3, minLength));
+                } else if (chunk.open[frame] == UNKNOWN) {
+                    chunk.firstStop[frame] = position;
+                }
+
+                chunk.open[frame] = NONE;
+            }
+
+            if (reverse == START_CODON) {
+                if (chunk.reverseStop[frame] >= 0) {
+                    chunk.reverseStart[frame] = position;
+                } else if (chunk.reverseStop[frame] == UNKNOWN) {
+                    chunk.unknownReverseStart[frame] = position;
+                }
+            } else if (DNA_Encoder.aminoAcid(reverse) == 0) {
+                if (chunk.reverseStop[frame] >= 0) {
+                    if (chunk.reverseStart[frame] >= 0) {
+                        add(chunk.found, position, 3 + frame, reverseOrf(sequence, chunk.reverseStop[frame],
+                                chunk.reverseStart[frame] + 3, minLength));
+                    }
+                } else if (chunk.reverseStop[frame] == UNKNOWN) {
+                    chunk.firstReverseStop[frame] = position;
+                }
+
+                chunk.reverseStop[frame] = position;
+                chunk.reverseStart[frame] = NONE;
+            }
+        }
+
+        return chunk;
+    }
+
+    /**
+     * @param start Index of the first nucleotide of the start codon.
+     * @param end Index right after the stop codon.
+     * @return The open reading frame on the given strand, or {@code null} if it is too short.
+     */
+    private static Orf forwardOrf(PackedSequence sequence, int start, int end, int minLength) {
+        final int length = (end - start) / 3 - 1;
+
+        if (length < minLength) {
+            return null;
+        }
+
+        final char[] peptide = new char[length];
+
+        for (int i = 0, index = start; i < length; i++, index += 3) {
+            peptide[i] = DNA_Encoder.aminoAcid(sequence.code(index) << 4 | sequence.code(index + 1) << 2
+                    | sequence.code(index + 2));
+        }
+
+        return new Orf(1, start % 3, start, end, new String(peptide));
+    }
+
+    /**
+     * @param start Index of the first nucleotide of the stop codon.
+     * @param end Index right after the start codon.
+     * @return The open reading frame on the complementary strand, or {@code null} if it is too short.
+     */
+    private static Orf reverseOrf(PackedSequence sequence, int start, int end, int minLength) {
+        final int length = (end - start) / 3 - 1;
+
+        if (length < minLength) {
+            return null;
+        }
+
+        final char[] peptide = new char[length];
+
+        // Complementing a 2-bit code is subtracting it from 3
+        for (int i = 0, index = end - 3; i < length; i++, index -= 3) {
+            peptide[i] = DNA_Encoder.aminoAcid(63 - (sequence.code(index + 2) << 4 | sequence.code(index + 1) << 2
+                    | sequence.code(index)));
+        }
+
+        return new Orf(-1, (sequence.length() - end) % 3, start, end, new String(peptide));
+    }
+
+    private static void add(List<Found> found, int position, int slot, Orf orf) {
+        if (orf != null) {
+            found.add(new Found(Found.key(position, slot), orf));
+        }
+    }
+
+    /**
+     * Everything a chunk has found, indexed by frame, with the position of a codon relative to the sequence modulo 3.
+     */
+    private static final class Chunk {
+        // Open start codon at the end, NONE after a stop codon or UNKNOWN if the chunk has no stop codon in the frame
+        final int[] open = {UNKNOWN, UNKNOWN, UNKNOWN};
+        // First start codon and first stop codon while the state was unknown
+        final int[] firstStart = {NONE, NONE, NONE};
+        final int[] firstStop = {NONE, NONE, NONE};
+
+        // Last stop codon and last start codon after it, both UNKNOWN if the chunk has no stop codon in the frame
+        final int[] reverseStop = {UNKNOWN, UNKNOWN, UNKNOWN};
+        final int[] reverseStart = {NONE, NONE, NONE};
+        // Last start codon while the state was unknown, i.e. before the first stop codon, and the first stop codon
+        final int[] unknownReverseStart = {NONE, NONE, NONE};
+        final int[] firstReverseStop = {NONE, NONE, NONE};
+
+        final List<Found> found = new ArrayList<>();
+    }
+
+    /**
+     * An open reading frame together with the position at which a scan from the start completes it.
+     */
+    private record Found(long key, Orf orf) {
+        // Forward frames first, at most one open reading frame per frame is completed at each position
+        static long key(int position, int slot) {
+            return (long) position * 6 + slot;
+        }
+    }
+
+    /**
+     * State of a scan that is fed one chunk after another, in order.
+     */
+    private static final class Scan {
+        private final PackedSequence sequence;
+        private final int minLength;
+        private final Consumer<Orf> consumer;
+
+        // Same meaning as in a chunk, but never unknown, since the start of the sequence has no open reading frame
+        private final int[] open = {NONE, NONE, NONE};
+        private final int[] reverseStop = {NONE, NONE, NONE};
+        private final int[] reverseStart = {NONE, NONE, NONE};
+
+        Scan(PackedSequence sequence, int minLength, Consumer<Orf> consumer) {
+            this.sequence = sequence;
+            this.minLength = minLength;
+            this.consumer = consumer;
+        }
+
+        void accept(Chunk chunk) {
+            final List<Found> found = new ArrayList<>(chunk.found);
+
+            for (int frame = 0; frame < 3; frame++) {
+                // The first stop codon of the chunk ends the reading frame that has been open before, if any
+                if (chunk.firstStop[frame] != NONE) {
+                    final int start = open[frame] >= 0 ? open[frame] : chunk.firstStart[frame];
+
+                    if (start >= 0) {
+                        add(found, chunk.firstStop[frame], frame,
+                                forwardOrf(sequence, start, chunk.firstStop[frame] + 3, minLength));
+                    }
+                }
+
+                if (chunk.open[frame] != UNKNOWN) {
+                    open[frame] = chunk.open[frame];
+                } else if (open[frame] == NONE) {
+                    open[frame] = chunk.firstStart[frame];
+                }
+
+                // On the complementary strand, the first stop codon completes the one that started at the stop codon before
+                if (chunk.firstReverseStop[frame] != NONE) {
+                    final int start = chunk.unknownReverseStart[frame] >= 0 ? chunk.unknownReverseStart[frame]
+                            : reverseStart[frame];
+
+                    if (reverseStop[frame] >= 0 && start >= 0) {
+                        add(found, chunk.firstReverseStop[frame], 3 + frame,
+                                reverseOrf(sequence, reverseStop[frame], start + 3, minLength));
+                    }
+                }
+
+                if (chunk.reverseStop[frame] != UNKNOWN) {
+                    reverseStop[frame] = chunk.reverseStop[frame];
+                    reverseStart[frame] = chunk.reverseStart[frame];
+                } else if (reverseStop[frame] >= 0 && chunk.unknownReverseStart[frame] >= 0) {
+                    reverseStart[frame] = chunk.unknownReverseStart[frame];
+                }
+            }
+
+            found.sort(Comparator.comparingLong(Found::key));
+
+            for (Found orf : found) {
+                consumer.accept(orf.orf());
+            }
+        }
+
+        /**
+         * Reports the open reading frames of the complementary strand that end with the start of the sequence.
+         */
+        void finish() {
+            for (int frame = 0; frame < 3; frame++) {
+                if (reverseStop[frame] >= 0 && reverseStart[frame] >= 0) {
+                    final Orf orf = reverseOrf(sequence, reverseStop[frame], reverseStart[frame] + 3, minLength);
+
+                    if (orf != null) {
+                        consumer.accept(orf);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the records of a file window by window and packs each run of unambiguous nucleotides as it is read, so that
+     * the letters of a record are never held in memory. Runs are scanned as soon as they end. Their open reading frames
+     * are only written once the record is complete, since the frames on the complementary strand count from its end.
+     */
+    private static final class RecordWriter {
+        private final int minLength;
+        private final ByteSink output;
+
+        private boolean lineStart = true;
+        private boolean header = false;
+        private final ByteArrayOutputStream headerLine = new ByteArrayOutputStream();
+
+        private String name = null;
+        // Number of letters of the current record, including ambiguous ones
+        private int length = 0;
+        private final PackedSequence.Builder run = new PackedSequence.Builder();
+        private final List<RunOrf> found = new ArrayList<>();
+        private long orfs = 0;
+
+        RecordWriter(int minLength, ByteSink output) {
+            this.minLength = minLength;
+            this.output = output;
+        }
+
+        /**
+         * @param window The next part of the input.
+         * @param offset Offset of the window inside the file.
+         */
+        void accept(ByteBuffer window, long offset) throws IOException {
+            final int limit = window.limit();
+
+            for (int i = 0; i < limit; i++) {
+                final byte b = window.get(i);
+
+                if (b == '\n') {
+                    if (header) {
+                        startRecord();
+                    }
+
+                    lineStart = true;
+                    continue;
+                }
+
+                if (header) {
+                    headerLine.write(b);
+                    continue;
+                }
+
+                if (lineStart && b == '>') {
+                    finish();
+
+                    header = true;
+                    lineStart = false;
+                    continue;
+                }
+
+                lineStart = false;
+
+                if (b == ' ' || b == '\t' || b == '\r') {
+                    continue;
+                }
+
+                if (isNucleotide(b)) {
+                    run.append((char) b);
+                } else {
+                    endRun();
+                }
+
+                length = Math.addExact(length, 1);
+            }
+        }
+
+        /**
+         * Scans the current record, if any, and writes its open reading frames.
+         */
+        void finish() throws IOException {
+            if (header) {
+                startRecord();
+            }
+
+            if (name == null && length == 0) {
+                return;
+            }
+
+            endRun();
+
+            final String recordName = name == null ? "sequence" : name;
+
+            for (int i = 0; i < found.size(); i++) {
+                write(recordName, i + 1, length, found.get(i).offset(), found.get(i).orf());
+            }
+
+            orfs += found.size();
+            name = null;
+            length = 0;
+            found.clear();
+        }
+
+        private void startRecord() {
+            // First word of the header, like most tools name a record
+            final String line = headerLine.toString(StandardCharsets.UTF_8);
+            final String[] words = line.trim().split("\\s+", 2);
+
+            name = words[0].isEmpty() ? "record" : words[0];
+            header = false;
+            headerLine.reset();
+        }
+
+        /**
+         * Scans the run of unambiguous nucleotides that ends at the current letter.
+         */
+        private void endRun() {
+            final int runStart = length - run.length();
+
+            if (run.length() < 3) {
+                run.build();
+                return;
+            }
+
+            scan(run.build(), minLength, orf -> found.add(new RunOrf(runStart, orf)));
+        }
+
+        /**
+         * An open reading frame of a run.
+         * @param offset Index of the first nucleotide of the run inside its record.
+         */
+        private record RunOrf(int offset, Orf orf) {}
+
+        private void write(String recordName, int number, int recordLength, int offset, Orf orf) throws IOException {
+            final int start = offset + orf.start();
+            final int end = offset + orf.end();
+            final int frame = orf.strand() > 0 ? start % 3 : (recordLength - end) % 3;
+
+            output.appendLine(">" + recordName + "_" + number + " strand=" + (orf.strand() > 0 ? '+' : '-')
+                    + " frame=" + frame + " location=" + (start + 1) + ".." + end + " length=" + orf.peptide().length());
+
+            final String peptide = orf.peptide();
+
+            for (int i = 0; i < peptide.length(); i += LINE_LENGTH) {
+                output.appendLine(peptide.substring(i, Math.min(i + LINE_LENGTH, peptide.length())));
+            }
+        }
+
+        private static boolean isNucleotide(byte b) {
+            return switch (b) {
+                case 'a', 'A', 'c', 'C', 'g', 'G', 't', 'T', 'u', 'U' -> true;
+                default -> false;
+            };
+        }
+    }
+
+    private OrfScanner() {}
+}
@@ -0,0 +1,265 @@
+package com.pfaff.maximilian.server;
+
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+import com.pfaff.maximilian.model.AbstractModel;
+import com.pfaff.maximilian.model.MmCif;
+import com.pfaff.maximilian.model.ModelCache;
+import com.pfaff.maximilian.model.PDB;
+import com.pfaff.maximilian.model.PackedSequence;
+import com.pfaff.maximilian.riddle.DNA_Encoder;
+import com.pfaff.maximilian.util.ByteSink;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded HTTP server that keeps a warm JVM around for tools that generate models or translate sequences.
+ * Every request is handled on its own virtual thread and the response is streamed while it is being generated.
+ * PDB and TSV files of short sequences are kept in a {@link ModelCache}, since the same ones tend to be requested again.
+ * Responses are compressed with gzip if the client accepts it.
+ * <pre>
+ * GET /model/{A-DNA|B-DNA|A-RNA}/{sequence}.{pdb|cif|tsv}[?extraHeight=15]
+ * GET /encode/{peptide}
+ * GET /decode/{coding strand}
+ * GET /metrics
+ * </pre>
+ */
+public final class ModelServer {
+    private static final String TEXT = "text/plain; charset=utf-8";
+
+    // Short models are requested over and over by interactive tools, so their lines are kept in a cache.
+    // Longer ones would only evict them and are streamed without ever being held in memory as a whole.
+    private static final int MAX_CACHED_LENGTH = 4096;
+    private static final long CACHE_BYTES = 64L << 20;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ModelCache cache = new ModelCache(CACHE_BYTES);
+
+    /**
+     * Binds the server, which does not accept requests before {@link ModelServer#start()} is called.
+     * @param address Address and port to listen on, port 0 picks a free one.
+     */
+    public ModelServer(InetSocketAddress address) throws IOException {
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+
+        server.createContext("/model/", handler(this::model));
+        server.createContext("/encode/", handler(exchange -> text(exchange, DNA_Encoder.encode(argument(exchange, "/encode/")))));
+        server.createContext("/decode/", handler(exchange -> {
+            // Stop codons are decoded as null characters, which do not belong into a text response
+            text(exchange, DNA_Encoder.decode(argument(exchange, "/decode/")).replace('\0', '*'));
+        }));
+        server.createContext("/metrics", handler(this::metrics));
+    }
+
+    /**
+     * Starts accepting requests in the background.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits for running ones.
+     * @param delay Maximum number of seconds to wait for running requests.
+     */
+    public void stop(int delay) {
+        server.stop(delay);
+        executor.close();
+    }
+
+    /**
+     * @return The address the server listens on, including the actual port.
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    private void model(HttpExchange exchange) throws IOException {
+        final String[] parts = argument(exchange, "/model/").split("/");
+
+        if (parts.length != 2 || parts[1].lastIndexOf('.') < 0) {
+            throw new IllegalArgumentException("Expected /model/{model}/{sequence}.{pdb|cif|tsv}");
+        }
+
+        final AbstractModel.Model model = AbstractModel.Model.of(parts[0]);
+        final int dot = parts[1].lastIndexOf('.');
+        final String format = parts[1].substring(dot + 1).toLowerCase(Locale.US);
+        // Packed once for the cache and every builder
+        final PackedSequence query = PackedSequence.of(parts[1].substring(0, dot));
+
+        // Fails on unknown letters and sequences that are too long before the status has been sent
+        AbstractModel.checkLength(model, query);
+
+        final boolean cached = query.length() <= MAX_CACHED_LENGTH;
+
+        switch (format) {
+            case "pdb" -> {
+                // The only format with fixed-width columns, which would otherwise overflow in the middle of the file
+                PDB.checkFits(model, query);
+
+                if (cached) {
+                    lines(exchange, cache.createModelPdbFileContent(model, query));
+                } else {
+                    stream(exchange, sink -> PDB.writeModelPdb(model, query, sink));
+                }
+            }
+            case "cif" -> stream(exchange, sink -> MmCif.writeModelCif(model, query, sink));
+            case "tsv" -> {
+                final double extraHeight = extraHeight(exchange);
+
+                if (cached) {
+                    lines(exchange, cache.createModelDump(model, query, extraHeight));
+                } else {
+                    stream(exchange, sink -> AbstractModel.writeModelDump(model, query, extraHeight, sink));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        }
+    }
+
+    private void metrics(HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final ModelCache.Stats stats = cache.stats();
+
+        try (PrintStream out = new PrintStream(bytes, false, StandardCharsets.UTF_8)) {
+            Metrics.print(out);
+            out.printf(Locale.US, "CACHE\t%d hits\t%d misses\t%d evictions\t%d entries\t%d bytes%n",
+                    stats.hits(), stats.misses(), stats.evictions(), stats.entries(), stats.bytes());
+        }
+
+        stream(exchange, sink -> sink.append(bytes.toByteArray()));
+    }
+
+    private static double extraHeight(HttpExchange exchange) {
+        final String query = exchange.getRequestURI().getQuery();
+
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("extraHeight=")) {
+                    return Double.parseDouble(parameter.substring("extraHeight=".length()));
+                }
+            }
+        }
+
+        return 0d;
+    }
+
+    /**
+     * @return The decoded rest of the path after the prefix of the context.
+     */
+    private static String argument(HttpExchange exchange, String prefix) {
+        return exchange.getRequestURI().getPath().substring(prefix.length());
+    }
+
+    private static void lines(HttpExchange exchange, List<String> lines) throws IOException {
+        stream(exchange, sink -> {
+            for (String line : lines) {
+                sink.appendLine(line);
+            }
+        });
+    }
+
+    private static void text(HttpExchange exchange, String text) throws IOException {
+        stream(exchange, sink -> sink.appendLine(text));
+    }
+
+    /**
+     * Sends the response with chunked encoding, so that it does not have to be complete before the first byte is sent.
+     * The status is sent right away, so the input has to be validated before. The body is only closed if it has been
+     * written completely, see {@link ModelServer#fail}.
+     */
+    private static void stream(HttpExchange exchange, Body body) throws IOException {
+        final String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        final boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+
+        exchange.sendResponseHeaders(200, 0);
+
+        final OutputStream out = gzip ? new GZIPOutputStream(exchange.getResponseBody(), ByteSink.DEFAULT_CAPACITY)
+                : exchange.getResponseBody();
+
+        final ByteSink sink = new ByteSink(out);
+
+        body.write(sink);
+        sink.close();
+    }
+
+    private static HttpHandler handler(Handler handler) {
+        return exchange -> {
+            final Metrics.Span span = Metrics.start(Stage.REQUEST, null);
+
+            try {
+                if (!exchange.getRequestMethod().equals("GET")) {
+                    error(exchange, 405, "Only GET is supported");
+                } else {
+                    try {
+                        handler.handle(exchange);
+                    } catch (IllegalArgumentException | IllegalStateException | IndexOutOfBoundsException e) {
+                        // Unknown model, format or letter, incomplete codon, empty peptide or a model that is too long
+                        fail(exchange, 400, e);
+                    } catch (RuntimeException e) {
+                        fail(exchange, 500, e);
+                    }
+                }
+
+                // Only reached if the response is complete
+                exchange.close();
+            } finally {
+                // Broken off responses are counted as well
+                span.end(0, 0, 0);
+            }
+        };
+    }
+
+    /**
+     * Answers with an error if the status has not been sent yet. Otherwise closing the exchange would end the body like
+     * a complete response, so the exception is passed on to the server instead, which drops the connection. That way
+     * the client notices that the response has been broken off.
+     */
+    private static void fail(HttpExchange exchange, int status, RuntimeException e) throws IOException {
+        if (exchange.getResponseCode() != -1) {
+            throw e;
+        }
+
+        error(exchange, status, String.valueOf(e.getMessage()));
+    }
+
+    private static void error(HttpExchange exchange, int status, String message) throws IOException {
+        final byte[] body = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private interface Handler {
+        void handle(HttpExchange exchange) throws IOException;
+    }
+
+    private interface Body {
+        void write(ByteSink sink) throws IOException;
+    }
+}
@@ -0,0 +1,309 @@
+package com.pfaff.maximilian.util;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses everything written to it in independent blocks, which are deflated concurrently while the caller keeps
+ * writing. Every block is a complete gzip member, so the output is a valid gzip file that any tool can decompress.
+ * <p>
+ * The blocks follow the BGZF format of bgzip and samtools: each member carries its own compressed size in a
+ * {@code BC} extra field, no block holds more than {@link BlockGzipOutputStream#BLOCK_SIZE} bytes of content, and
+ * the file ends with an empty block. The position of every block is collected as well and can be written as a
+ * {@code .gzi} index, which {@link BlockGzipReader} uses to start reading anywhere without decompressing what comes before.
+ */
+public final class BlockGzipOutputStream extends OutputStream {
+    /**
+     * Maximum number of uncompressed bytes per block, small enough that even incompressible content fits into the
+     * 64 KiB a block may have.
+     */
+    public static final int BLOCK_SIZE = 0xff00;
+
+    // Header with the BC extra field, followed by the deflated content, CRC-32 and uncompressed size
+    private static final int HEADER_LENGTH = 18;
+    private static final int FOOTER_LENGTH = 8;
+    private static final int MAX_BLOCK_LENGTH = 1 << 16;
+
+    private static final byte[] EOF_BLOCK = {
+            0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0, 0x1b, 0, 3, 0, 0, 0, 0, 0, 0, 0, 0, 0
+    };
+
+    private final OutputStream out;
+    private final Executor executor;
+    private final int maxPending;
+    private final int level;
+
+    private final Deque<CompletableFuture<byte[]>> pending = new ArrayDeque<>();
+    private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+
+    private byte[] block = new byte[BLOCK_SIZE];
+    private int blockLength = 0;
+
+    // Offsets of every block after the first one, compressed and uncompressed alternately
+    private long[] index = new long[64];
+    private int indexLength = 0;
+    private long compressedOffset = 0;
+    private long uncompressedOffset = 0;
+
+    private boolean closed = false;
+
+    /**
+     * Compresses on the common fork/join pool with the default level.
+     * @param out The stream that receives the compressed blocks in order.
+     */
+    public BlockGzipOutputStream(OutputStream out) {
+        this(out, ForkJoinPool.commonPool(), 2 * ForkJoinPool.getCommonPoolParallelism() + 1, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param out The stream that receives the compressed blocks in order.
+     * @param executor Runs the compression of each block.
+     * @param maxPending Maximum number of blocks that are compressed at the same time before writing blocks. This limits
+     *                   the memory usage to about 128 KiB per block.
+     * @param level Compression level between 0 and 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+     */
+    public BlockGzipOutputStream(OutputStream out, Executor executor, int maxPending, int level) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("At least one block has to be pending, got " + maxPending);
+        }
+
+        this.out = out;
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.level = level;
+    }
+
+    /**
+     * Creates or truncates a file and opens a stream that compresses into it.
+     * @param path The file that is being written to, usually ending with ".gz".
+     * @return A new stream, which has to be closed by the caller.
+     */
+    public static BlockGzipOutputStream open(Path path) throws IOException {
+        return new BlockGzipOutputStream(new BufferedOutputStream(Files.newOutputStream(path), MAX_BLOCK_LENGTH));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureOpen();
+
+        if (blockLength == BLOCK_SIZE) {
+            submitBlock();
+        }
+
+        block[blockLength++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureOpen();
+
+        int offset = off;
+        int remaining = len;
+
+        while (remaining > 0) {
+            if (blockLength == BLOCK_SIZE) {
+                submitBlock();
+            }
+
+            final int length = Math.min(remaining, BLOCK_SIZE - blockLength);
+
+            System.arraycopy(b, offset, block, blockLength, length);
+            blockLength += length;
+            offset += length;
+            remaining -= length;
+        }
+    }
+
+    /**
+     * Ends the current block and waits until every block so far has been compressed and written.
+     */
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+
+        if (blockLength > 0) {
+            submitBlock();
+        }
+
+        while (!pending.isEmpty()) {
+            writeBlock(pending.removeFirst());
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Writes all remaining blocks and the empty block that marks the end of the file, then closes the underlying stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        try (out) {
+            flush();
+            out.write(EOF_BLOCK);
+        } finally {
+            closed = true;
+
+            Deflater deflater;
+
+            while ((deflater = deflaters.poll()) != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * @param path A compressed file.
+     * @return The path of its index file, which is the name of the compressed file plus ".gzi" like bgzip names it.
+     */
+    public static Path indexPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".gzi");
+    }
+
+    /**
+     * Writes the index of all blocks that have been written so far, in the {@code .gzi} format of bgzip: the number of
+     * entries, followed by the compressed and uncompressed offset of every block except the first one, all of them
+     * as little-endian 64-bit integers.
+     * @param path The index file, usually {@link BlockGzipOutputStream#indexPath(Path)}.
+     */
+    public void writeIndex(Path path) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate((1 + indexLength) * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putLong(indexLength / 2);
+
+        for (int i = 0; i < indexLength; i++) {
+            buffer.putLong(index[i]);
+        }
+
+        Files.write(path, buffer.array());
+    }
+
+    private void submitBlock() throws IOException {
+        final byte[] content = block;
+        final int length = blockLength;
+
+        pending.addLast(CompletableFuture.supplyAsync(() -> compress(content, length), executor));
+
+        block = new byte[BLOCK_SIZE];
+        blockLength = 0;
+
+        // Write finished blocks right away, but only wait if too many are in flight
+        while (!pending.isEmpty() && (pending.peekFirst().isDone() || pending.size() > maxPending)) {
+            writeBlock(pending.removeFirst());
+        }
+    }
+
+    private void writeBlock(CompletableFuture<byte[]> future) throws IOException {
+        final byte[] compressed;
+
+        try {
+            compressed = future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException cause) {
+                throw cause.getCause();
+            }
+
+            throw e;
+        }
+
+        if (compressedOffset > 0) {
+            if (indexLength == index.length) {
+                index = Arrays.copyOf(index, 2 * indexLength);
+            }
+
+            index[indexLength++] = compressedOffset;
+            index[indexLength++] = uncompressedOffset;
+        }
+
+        out.write(compressed);
+
+        compressedOffset += compressed.length;
+        uncompressedOffset += readInt(compressed, compressed.length - Integer.BYTES) & 0xffffffffL;
+    }
+
+    /**
+     * Deflates a block into a complete gzip member. Runs on the executor.
+     */
+    private byte[] compress(byte[] content, int length) {
+        Deflater deflater = deflaters.poll();
+
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+        }
+
+        try {
+            final byte[] member = new byte[MAX_BLOCK_LENGTH];
+
+            deflater.setInput(content, 0, length);
+            deflater.finish();
+
+            final int deflated = deflater.deflate(member, HEADER_LENGTH, MAX_BLOCK_LENGTH - HEADER_LENGTH - FOOTER_LENGTH);
+
+            if (!deflater.finished()) {
+                throw new UncheckedIOException(new IOException("Block of " + length + " bytes does not fit into "
+                        + MAX_BLOCK_LENGTH + " bytes after compression"));
+            }
+
+            final int total = HEADER_LENGTH + deflated + FOOTER_LENGTH;
+            final CRC32 crc = new CRC32();
+            crc.update(content, 0, length);
+
+            // Magic, deflate, FEXTRA flag, no time, no extra flags, unknown OS, then the BC field with the block size - 1
+            member[0] = 0x1f;
+            member[1] = (byte) 0x8b;
+            member[2] = 8;
+            member[3] = 4;
+            member[9] = (byte) 0xff;
+            member[10] = 6;
+            member[12] = 'B';
+            member[13] = 'C';
+            member[14] = 2;
+            member[16] = (byte) (total - 1);
+            member[17] = (byte) ((total - 1) >>> 8);
+
+            writeInt(member, HEADER_LENGTH + deflated, (int) crc.getValue());
+            writeInt(member, HEADER_LENGTH + deflated + Integer.BYTES, length);
+
+            return Arrays.copyOf(member, total);
+        } finally {
+            deflater.reset();
+            deflaters.offer(deflater);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+    }
+
+    private static void writeInt(byte[] dst, int offset, int value) {
+        dst[offset] = (byte) value;
+        dst[offset + 1] = (byte) (value >>> 8);
+        dst[offset + 2] = (byte) (value >>> 16);
+        dst[offset + 3] = (byte) (value >>> 24);
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return src[offset] & 0xff | (src[offset + 1] & 0xff) << 8 | (src[offset + 2] & 0xff) << 16 | src[offset + 3] << 24;
+    }
+}
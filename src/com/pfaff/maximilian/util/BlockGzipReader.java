@@ -0,0 +1,153 @@
+package com.pfaff.maximilian.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Random access to files written by {@link BlockGzipOutputStream}. Reading starts at the block that holds the requested
+ * position, so only that block has to be decompressed before the first byte is returned.
+ */
+public final class BlockGzipReader {
+    private final Path path;
+
+    // Offsets of the first byte of every block, including the first one at 0
+    private final long[] compressedOffsets;
+    private final long[] uncompressedOffsets;
+
+    private BlockGzipReader(Path path, long[] compressedOffsets, long[] uncompressedOffsets) {
+        this.path = path;
+        this.compressedOffsets = compressedOffsets;
+        this.uncompressedOffsets = uncompressedOffsets;
+    }
+
+    /**
+     * Loads the index of a compressed file from the {@code .gzi} file next to it.
+     * @param path The compressed file.
+     * @param indexPath The index file as written by {@link BlockGzipOutputStream#writeIndex(Path)} or {@code bgzip -i}.
+     * @return A reader for the compressed file.
+     */
+    public static BlockGzipReader open(Path path, Path indexPath) throws IOException {
+        final ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(indexPath)).order(ByteOrder.LITTLE_ENDIAN);
+        final long entries = index.getLong();
+
+        if (entries < 0 || entries != (index.remaining() / (2 * Long.BYTES))) {
+            throw new IOException("Corrupt block index: " + indexPath);
+        }
+
+        final long[] compressedOffsets = new long[(int) entries + 1];
+        final long[] uncompressedOffsets = new long[(int) entries + 1];
+
+        for (int i = 1; i <= entries; i++) {
+            compressedOffsets[i] = index.getLong();
+            uncompressedOffsets[i] = index.getLong();
+        }
+
+        return new BlockGzipReader(path, compressedOffsets, uncompressedOffsets);
+    }
+
+    /**
+     * Loads the index from the file next to the compressed one, see {@link BlockGzipOutputStream#indexPath(Path)}.
+     * Without an index file, the index is built by reading the header of every block. Nothing is decompressed either
+     * way, since every header holds the compressed size of its block.
+     * @param path The compressed file.
+     * @return A reader for the compressed file.
+     */
+    public static BlockGzipReader open(Path path) throws IOException {
+        final Path indexPath = BlockGzipOutputStream.indexPath(path);
+
+        if (Files.exists(indexPath)) {
+            return open(path, indexPath);
+        }
+
+        long[] compressedOffsets = new long[64];
+        long[] uncompressedOffsets = new long[64];
+        int blocks = 0;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(18).order(ByteOrder.LITTLE_ENDIAN);
+            final ByteBuffer size = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+            long compressed = 0;
+            long uncompressed = 0;
+
+            while (compressed < channel.size()) {
+                readFully(channel, header.clear(), compressed);
+
+                if (header.getShort(0) != (short) 0x8b1f || header.get(12) != 'B' || header.get(13) != 'C') {
+                    throw new IOException("Not a block-compressed gzip file at offset " + compressed + ": " + path);
+                }
+
+                final int blockLength = (header.getShort(16) & 0xffff) + 1;
+
+                readFully(channel, size.clear(), compressed + blockLength - Integer.BYTES);
+
+                if (blocks == compressedOffsets.length) {
+                    compressedOffsets = Arrays.copyOf(compressedOffsets, 2 * blocks);
+                    uncompressedOffsets = Arrays.copyOf(uncompressedOffsets, 2 * blocks);
+                }
+
+                compressedOffsets[blocks] = compressed;
+                uncompressedOffsets[blocks] = uncompressed;
+                blocks++;
+
+                compressed += blockLength;
+                uncompressed += size.getInt(0) & 0xffffffffL;
+            }
+        }
+
+        return new BlockGzipReader(path, Arrays.copyOf(compressedOffsets, Math.max(blocks, 1)),
+                Arrays.copyOf(uncompressedOffsets, Math.max(blocks, 1)));
+    }
+
+    /**
+     * Decompresses the file from any position on.
+     * @param offset Position inside the uncompressed content.
+     * @return A stream that starts at the position and continues until the end of the file. It has to be closed by the caller.
+     */
+    public InputStream openAt(long offset) throws IOException {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Negative offset: " + offset);
+        }
+
+        // Last block that starts at or before the offset
+        int block = Arrays.binarySearch(uncompressedOffsets, offset);
+
+        if (block < 0) {
+            block = -block - 2;
+        } else {
+            // Empty blocks share their offset with the next one
+            while (block + 1 < uncompressedOffsets.length && uncompressedOffsets[block + 1] == offset) {
+                block++;
+            }
+        }
+
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ).position(compressedOffsets[block]);
+        final InputStream in = new GZIPInputStream(Channels.newInputStream(channel), BlockGzipOutputStream.BLOCK_SIZE);
+
+        try {
+            in.skipNBytes(offset - uncompressedOffsets[block]);
+        } catch (IOException | RuntimeException e) {
+            in.close();
+            throw e;
+        }
+
+        return in;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of block-compressed gzip file");
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.pfaff.maximilian.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reusable byte buffer for text output. Content is collected in a fixed-size array and only handed to the underlying
+ * channel when the buffer runs full, so the memory footprint does not depend on how much is written in total.
+ */
+public final class ByteSink implements Closeable {
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+
+    private final WritableByteChannel channel;
+    private final byte[] bytes;
+    private final ByteBuffer buffer;
+
+    private long bytesWritten;
+
+    /**
+     * @param channel The channel that receives the content whenever the buffer runs full.
+     * @param capacity Size of the buffer in bytes.
+     */
+    public ByteSink(WritableByteChannel channel, int capacity) {
+        this.channel = channel;
+        this.bytes = new byte[capacity];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * @param out The stream that receives the content whenever the buffer runs full.
+     */
+    public ByteSink(OutputStream out) {
+        this(Channels.newChannel(out), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates or truncates the given file and opens a sink that writes to it.
+     * @param path The file that is being written to.
+     * @return A new sink, which has to be closed by the caller.
+     */
+    public static ByteSink open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+
+        return new ByteSink(channel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes can be appended without flushing in between.
+     * @param length Number of bytes that are about to be written.
+     */
+    public void ensureCapacity(int length) throws IOException {
+        if (bytes.length - buffer.position() < length) {
+            flush();
+
+            if (bytes.length < length) {
+                throw new IllegalArgumentException("Buffer capacity of " + bytes.length + " bytes is too small for " + length + " bytes");
+            }
+        }
+    }
+
+    /**
+     * Appends a single byte.
+     * @param b The byte.
+     * @return This sink.
+     */
+    public ByteSink append(byte b) throws IOException {
+        ensureCapacity(1);
+        buffer.put(b);
+
+        return this;
+    }
+
+    /**
+     * Appends a string, encoded as UTF-8.
+     * @param str The string.
+     * @return This sink.
+     */
+    public ByteSink append(String str) throws IOException {
+        final int length = str.length();
+        boolean ascii = true;
+
+        for (int i = 0; i < length && ascii; i++) {
+            ascii = str.charAt(i) < 0x80;
+        }
+
+        if (!ascii) {
+            return append(str.getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (length > bytes.length) {
+            return append(str.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        ensureCapacity(length);
+
+        int position = buffer.position();
+
+        for (int i = 0; i < length; i++) {
+            bytes[position++] = (byte) str.charAt(i);
+        }
+
+        buffer.position(position);
+
+        return this;
+    }
+
+    /**
+     * Appends an array of bytes, flushing as often as needed.
+     * @param src The bytes.
+     * @return This sink.
+     */
+    public ByteSink append(byte[] src) throws IOException {
+        int offset = 0;
+
+        while (offset < src.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+
+            final int length = Math.min(buffer.remaining(), src.length - offset);
+            buffer.put(src, offset, length);
+            offset += length;
+        }
+
+        return this;
+    }
+
+    /**
+     * Appends the platform-specific line separator.
+     * @return This sink.
+     */
+    public ByteSink newLine() throws IOException {
+        ensureCapacity(LINE_SEPARATOR.length);
+        buffer.put(LINE_SEPARATOR);
+
+        return this;
+    }
+
+    /**
+     * Appends a string followed by the platform-specific line separator.
+     * @param line The line, without line break.
+     * @return This sink.
+     */
+    public ByteSink appendLine(String line) throws IOException {
+        return append(line).newLine();
+    }
+
+    /**
+     * Gives encoders direct access to the buffer, so that they can write their output in place. Callers reserve space with
+     * {@link ByteSink#ensureCapacity(int)}, write into the array starting at {@link ByteSink#position()} and then move
+     * the position behind the last byte they have written.
+     * @return The backing array of the buffer.
+     */
+    public byte[] array() {
+        return bytes;
+    }
+
+    /**
+     * @return Index of the next byte that will be written into {@link ByteSink#array()}.
+     */
+    public int position() {
+        return buffer.position();
+    }
+
+    /**
+     * @param newPosition Index right after the last byte that has been written into {@link ByteSink#array()}.
+     */
+    public void position(int newPosition) {
+        buffer.position(newPosition);
+    }
+
+    /**
+     * Hands everything that has been appended so far to the underlying channel.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    /**
+     * @return Total number of bytes appended to this sink, including those that are still buffered.
+     */
+    public long size() {
+        return bytesWritten + buffer.position();
+    }
+
+    /**
+     * Flushes the remaining content and closes the underlying channel.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
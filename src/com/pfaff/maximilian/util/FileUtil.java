@@ -1,5 +1,8 @@
 package com.pfaff.maximilian.util;
 
+import com.pfaff.maximilian.metrics.Metrics;
+import com.pfaff.maximilian.metrics.Stage;
+
 import javax.swing.*;
 import javax.swing.filechooser.FileSystemView;
 import java.io.*;
@@ -70,14 +73,38 @@ public final class FileUtil {
      * @param lines A list of strings containing the lines of the file, without line breaks.
      */
     public static void dumpToFile(File file, List<String> lines) throws IOException {
+        final Metrics.Span span = Metrics.start(Stage.IO, null);
         final char[] lineSep = System.lineSeparator().toCharArray();
 
-        try (FileWriter writer = new FileWriter(file)) {
+        try (Writer writer = new BufferedWriter(new FileWriter(file))) {
             for (String line : lines) {
                 writer.write(line);
                 writer.write(lineSep);
             }
         }
+
+        span.end(0, 0, span.isActive() ? file.length() : 0);
+    }
+
+    /**
+     * Same as {@link FileUtil#dumpToFile(File, List)}, but compresses the lines in blocks on all cores while they are
+     * written, see {@link BlockGzipOutputStream}. The block index is written next to the file.
+     * @param path The file that is being written to, usually ending with ".gz".
+     * @param lines A list of strings containing the lines of the file, without line breaks.
+     */
+    public static void dumpToCompressedFile(Path path, List<String> lines) throws IOException {
+        final Metrics.Span span = Metrics.start(Stage.IO, null);
+        final BlockGzipOutputStream gzip = BlockGzipOutputStream.open(path);
+
+        try (ByteSink sink = new ByteSink(gzip)) {
+            for (String line : lines) {
+                sink.appendLine(line);
+            }
+        }
+
+        gzip.writeIndex(BlockGzipOutputStream.indexPath(path));
+
+        span.end(0, 0, span.isActive() ? Files.size(path) : 0);
     }
 
     /**
@@ -0,0 +1,130 @@
+package com.pfaff.maximilian.model;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * All builders have to calculate the same helix as the serial one, no matter how they split or decode the sequence.
+ * The lengths lie around the 32 letters of a packed word and the chunk sizes of the builders.
+ */
+class HelixBuilderTest {
+    static Stream<Arguments> sequences() {
+        final Random random = new Random(42);
+        final List<Arguments> arguments = new ArrayList<>();
+
+        for (AbstractModel.Model model : AbstractModel.Model.values()) {
+            for (int length : new int[] {1, 31, 32, 33, 255, 256, 257, 4097}) {
+                arguments.add(Arguments.of(model, randomSequence(model, length, random)));
+            }
+        }
+
+        return arguments.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("sequences")
+    void packedSequenceGivesTheSameBuffer(AbstractModel.Model model, String query) {
+        assertSameHelix(AbstractModel.createHelixBuffer(model, query, true),
+                AbstractModel.createHelixBuffer(model, PackedSequence.of(query), true), 0);
+    }
+
+    @ParameterizedTest
+    @MethodSource("sequences")
+    void parallelBuilderGivesTheSameBuffer(AbstractModel.Model model, String query) {
+        final HelixBuffer expected = AbstractModel.createHelixBuffer(model, query);
+
+        assertSameHelix(expected, AbstractModel.createHelixBufferParallel(model, query), 0);
+        assertSameHelix(expected, AbstractModel.createHelixBufferParallel(model, PackedSequence.of(query)), 0);
+    }
+
+    @ParameterizedTest
+    @MethodSource("sequences")
+    void chunksGiveTheSameBuffer(AbstractModel.Model model, String query) {
+        final HelixBuffer expected = AbstractModel.createHelixBuffer(model, query, true);
+
+        for (int chunkSize : new int[] {7, 256}) {
+            final int[] nucleotides = {0};
+
+            AbstractModel.streamModel(model, PackedSequence.of(query), chunkSize, chunk -> {
+                assertSameHelix(expected, chunk, nucleotides[0]);
+                nucleotides[0] += chunk.nucleotideCount();
+            });
+
+            assertEquals(expected.nucleotideCount(), nucleotides[0]);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("sequences")
+    void objectBuildersGiveTheSameNucleotides(AbstractModel.Model model, String query) {
+        final HelixBuffer expected = AbstractModel.createHelixBuffer(model, query);
+        final List<AbstractModel.Nucleotide> nucleotides = new ArrayList<>();
+
+        AbstractModel.streamModel(model, PackedSequence.of(query), nucleotides::add, nucleotides::add);
+
+        assertEquals(expected.nucleotideCount(), nucleotides.size());
+
+        for (int i = 0; i < nucleotides.size(); i++) {
+            assertEquals(expected.nucleotide(i).toString(), nucleotides.get(i).toString(), "Nucleotide " + i);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("sequences")
+    void packedSequenceGivesTheSameAtomCount(AbstractModel.Model model, String query) {
+        final int atoms = AbstractModel.countAtoms(model, query);
+
+        assertEquals(atoms, AbstractModel.countAtoms(model, PackedSequence.of(query)));
+        assertEquals(atoms, AbstractModel.createHelixBuffer(model, query).atomCount());
+    }
+
+    /**
+     * @param offset Index inside the expected buffer of the first nucleotide of the actual one.
+     */
+    static void assertSameHelix(HelixBuffer expected, HelixBuffer actual, int offset) {
+        final int atomOffset = expected.sugarStart(offset) - actual.sugarStart(0);
+
+        for (int i = 0; i < actual.nucleotideCount(); i++) {
+            final int nucleotide = offset + i;
+
+            assertEquals(expected.letter(nucleotide), actual.letter(i), "Letter of nucleotide " + nucleotide);
+            assertEquals(expected.strand(nucleotide), actual.strand(i), "Strand of nucleotide " + nucleotide);
+            assertEquals(expected.sugarStart(nucleotide), actual.sugarStart(i) + atomOffset, "Atoms of nucleotide " + nucleotide);
+            assertEquals(expected.atomEnd(nucleotide), actual.atomEnd(i) + atomOffset, "Atoms of nucleotide " + nucleotide);
+        }
+
+        for (int atom = actual.sugarStart(0); atom < actual.atomEnd(actual.nucleotideCount() - 1); atom++) {
+            final int expectedAtom = atom + atomOffset;
+
+            assertEquals(expected.atomName(expectedAtom), actual.atomName(atom), "Name of atom " + expectedAtom);
+            assertEquals(expected.radius(expectedAtom), actual.radius(atom), "Radius of atom " + expectedAtom);
+            assertEquals(expected.theta(expectedAtom), actual.theta(atom), "Theta of atom " + expectedAtom);
+            assertEquals(expected.height(expectedAtom), actual.height(atom), "Height of atom " + expectedAtom);
+
+            if (expected.hasCartesian() && actual.hasCartesian()) {
+                assertEquals(expected.x(expectedAtom), actual.x(atom), "x of atom " + expectedAtom);
+                assertEquals(expected.y(expectedAtom), actual.y(atom), "y of atom " + expectedAtom);
+                assertEquals(expected.z(expectedAtom), actual.z(atom), "z of atom " + expectedAtom);
+            }
+        }
+    }
+
+    static String randomSequence(AbstractModel.Model model, int length, Random random) {
+        final String letters = model == AbstractModel.Model.A_RNA ? "ACGU" : "ACGT";
+        final StringBuilder sequence = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            sequence.append(letters.charAt(random.nextInt(letters.length())));
+        }
+
+        return sequence.toString();
+    }
+}
@@ -0,0 +1,87 @@
+package com.pfaff.maximilian.model;
+
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A helix file has to give back exactly the coordinates it was written from, in both layouts, and streaming it chunk by
+ * chunk has to give the same file as writing a finished buffer.
+ */
+class HelixFileTest {
+    static Stream<Arguments> files() {
+        final Random random = new Random(7);
+        final List<Arguments> arguments = new ArrayList<>();
+
+        for (AbstractModel.Model model : AbstractModel.Model.values()) {
+            // Longer than a chunk of the writer, and with more than 256 nucleotides, which need wide atom offsets
+            for (int length : new int[] {1, 10, 1000}) {
+                final String query = HelixBuilderTest.randomSequence(model, length, random);
+
+                arguments.add(Arguments.of(model, query, 0));
+                arguments.add(Arguments.of(model, query, HelixFile.DELTA));
+            }
+        }
+
+        return arguments.stream();
+    }
+
+    @ParameterizedTest
+    @MethodSource("files")
+    void roundTrip(AbstractModel.Model model, String query, int flags, @TempDir Path directory) throws IOException {
+        final Path path = directory.resolve("model.hlx");
+        final long size = HelixFile.write(model, PackedSequence.of(query), path, flags);
+
+        assertEquals(HelixFile.size(model, query, flags), size);
+        assertEquals(size, Files.size(path));
+
+        final HelixBuffer expected = AbstractModel.createHelixBuffer(model, query);
+        final HelixFile file = HelixFile.open(path);
+
+        assertEquals(model, file.model());
+        assertEquals(flags == HelixFile.DELTA, file.isDelta());
+        assertEquals(query, file.sequence());
+        assertEquals(expected.nucleotideCount(), file.nucleotideCount());
+        assertEquals(expected.atomCount(), file.atomCount());
+
+        for (int nucleotide = 0; nucleotide < file.nucleotideCount(); nucleotide++) {
+            assertEquals(expected.letter(nucleotide), file.letter(nucleotide));
+            assertEquals(expected.strand(nucleotide), file.strand(nucleotide));
+            assertEquals(expected.sugarStart(nucleotide), file.atomStart(nucleotide));
+            assertEquals(expected.atomEnd(nucleotide), file.atomEnd(nucleotide));
+            assertEquals(expected.nucleotide(nucleotide).toString(), file.nucleotide(nucleotide).toString());
+        }
+
+        for (int atom = 0; atom < file.atomCount(); atom++) {
+            assertEquals(expected.atomName(atom), file.atomName(atom), "Name of atom " + atom);
+            assertEquals(expected.scaledRadius(atom), file.scaledRadius(atom), "Radius of atom " + atom);
+            assertEquals(expected.scaledTheta(atom), file.scaledTheta(atom), "Theta of atom " + atom);
+            assertEquals(expected.scaledHeight(atom), file.scaledHeight(atom), "Height of atom " + atom);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("files")
+    void streamingMatchesWholeBuffer(AbstractModel.Model model, String query, int flags, @TempDir Path directory)
+            throws IOException {
+        final Path streamed = directory.resolve("streamed.hlx");
+        final Path whole = directory.resolve("whole.hlx");
+
+        HelixFile.write(model, query, streamed, flags);
+        HelixFile.write(AbstractModel.createHelixBuffer(model, query), whole, flags);
+
+        assertArrayEquals(Files.readAllBytes(whole), Files.readAllBytes(streamed));
+    }
+}
@@ -0,0 +1,98 @@
+package com.pfaff.maximilian.model;
+
+import com.pfaff.maximilian.util.ByteSink;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every writer has to reproduce the checked-in model files byte for byte, whether the sequence is packed or not.
+ */
+class ModelFixtureTest {
+    private static final AbstractModel.Model MODEL = AbstractModel.Model.A_DNA;
+    private static final String QUERY = "TCCCCGGGGA";
+    private static final double EXTRA_HEIGHT = 15;
+
+    static Stream<CharSequence> queries() {
+        return Stream.of(QUERY, new StringBuilder(QUERY), PackedSequence.of(QUERY));
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void writeModelPdbMatchesFixture(CharSequence query) throws IOException {
+        assertArrayEquals(fixture("pdb"), write(sink -> PDB.writeModelPdb(MODEL, query, sink)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void createModelPdbFileContentMatchesFixture(CharSequence query) throws IOException {
+        assertArrayEquals(fixture("pdb"), write(sink -> appendLines(sink, PDB.createModelPdbFileContent(MODEL, query))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void writeModelDumpMatchesFixture(CharSequence query) throws IOException {
+        assertArrayEquals(fixture("tsv"), write(sink -> AbstractModel.writeModelDump(MODEL, query, EXTRA_HEIGHT, sink)));
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void createModelDumpMatchesFixture(CharSequence query) throws IOException {
+        assertArrayEquals(fixture("tsv"),
+                write(sink -> appendLines(sink, AbstractModel.createModelDump(MODEL, query, EXTRA_HEIGHT))));
+    }
+
+    @ParameterizedTest
+    @MethodSource("queries")
+    void patchModelPdbMatchesFreshFile(CharSequence query, @TempDir Path directory) throws IOException {
+        final Path file = directory.resolve("model.pdb");
+        Files.write(file, fixture("pdb"));
+
+        // Purine for pyrimidine changes the number of atoms, so the records after it shift
+        final String mutated = PDB.patchModelPdb(MODEL, query, List.of(new AbstractModel.Mutation(2, 'A'),
+                new AbstractModel.Mutation(7, 'T')), file);
+
+        assertEquals("TCACCGGTGA", mutated);
+        assertArrayEquals(write(sink -> PDB.writeModelPdb(MODEL, mutated, sink)), Files.readAllBytes(file));
+    }
+
+    private static void appendLines(ByteSink sink, List<String> lines) throws IOException {
+        for (String line : lines) {
+            sink.appendLine(line);
+        }
+    }
+
+    private static byte[] fixture(String extension) {
+        try (InputStream in = ModelFixtureTest.class.getResourceAsStream("/model/Model_" + MODEL + "_" + QUERY + "." + extension)) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] write(SinkWriter writer) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ByteSink sink = new ByteSink(bytes)) {
+            writer.write(sink);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private interface SinkWriter {
+        void write(ByteSink sink) throws IOException;
+    }
+}
@@ -0,0 +1,133 @@
+package com.pfaff.maximilian.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The word-wide operations of a packed sequence have to agree with reading it one letter after another.
+ */
+class PackedSequenceTest {
+    private static final int SEQUENCES = 500;
+
+    @Test
+    void packsAndUnpacks() {
+        assertEquals("ACGTACGT", PackedSequence.of("acgtACGT").toString());
+        assertFalse(PackedSequence.of("ACGT").isRna());
+        assertTrue(PackedSequence.of("ACGU").isRna());
+        assertEquals("", PackedSequence.of("").toString());
+    }
+
+    @Test
+    void rejectsUnknownLetters() {
+        assertThrows(IllegalStateException.class, () -> PackedSequence.of("ACGN"));
+        assertThrows(IllegalStateException.class, () -> PackedSequence.of("ACGTU"));
+    }
+
+    @Test
+    void builderMatchesOf() {
+        final Random random = new Random(1);
+        final PackedSequence.Builder builder = new PackedSequence.Builder();
+
+        for (int i = 0; i < SEQUENCES; i++) {
+            final String sequence = randomSequence(random);
+
+            for (int j = 0; j < sequence.length(); j++) {
+                builder.append(sequence.charAt(j));
+            }
+
+            assertEquals(sequence.length(), builder.length());
+            assertEquals(PackedSequence.of(sequence), builder.build());
+            assertEquals(0, builder.length());
+        }
+    }
+
+    @Test
+    void complementsWordWide() {
+        final Random random = new Random(2);
+
+        for (int i = 0; i < SEQUENCES; i++) {
+            final String sequence = randomSequence(random);
+            final PackedSequence packed = PackedSequence.of(sequence);
+            final String complement = complement(packed);
+
+            assertEquals(complement, packed.complement().toString());
+            assertEquals(new StringBuilder(complement).reverse().toString(), packed.reverseComplement().toString());
+        }
+    }
+
+    @Test
+    void decodesRanges() {
+        final Random random = new Random(3);
+
+        for (int i = 0; i < SEQUENCES; i++) {
+            final PackedSequence packed = PackedSequence.of(randomSequence(random));
+            final int from = random.nextInt(packed.length() + 1);
+            final int to = from + random.nextInt(packed.length() - from + 1);
+
+            final char[] letters = new char[to - from + 2];
+            packed.getChars(from, to, letters, 1);
+            assertEquals(packed.toString().substring(from, to), new String(letters, 1, to - from));
+
+            packed.getComplementChars(from, to, letters, 2);
+            assertEquals(complement(packed).substring(from, to), new String(letters, 2, to - from));
+
+            assertEquals(packed.toString().substring(from, to), packed.subSequence(from, to).toString());
+        }
+    }
+
+    @Test
+    void countsCodesWordWide() {
+        final Random random = new Random(4);
+
+        for (int i = 0; i < SEQUENCES; i++) {
+            final PackedSequence packed = PackedSequence.of(randomSequence(random));
+            final int from = random.nextInt(packed.length() + 1);
+            final int to = from + random.nextInt(packed.length() - from + 1);
+
+            final int[] expected = new int[4];
+
+            for (int j = from; j < to; j++) {
+                expected[packed.code(j)]++;
+            }
+
+            assertArrayEquals(expected, packed.codeCounts(from, to));
+        }
+    }
+
+    private static String complement(PackedSequence sequence) {
+        final StringBuilder complement = new StringBuilder(sequence.length());
+
+        for (int i = 0; i < sequence.length(); i++) {
+            complement.append(switch (sequence.charAt(i)) {
+                case 'A' -> sequence.isRna() ? 'U' : 'T';
+                case 'C' -> 'G';
+                case 'G' -> 'C';
+                default -> 'A';
+            });
+        }
+
+        return complement.toString();
+    }
+
+    /**
+     * @return DNA or RNA with up to a few words of letters, so that every offset inside a word is covered.
+     */
+    private static String randomSequence(Random random) {
+        final String letters = random.nextBoolean() ? "ACGT" : "ACGU";
+        final int length = random.nextInt(200);
+        final StringBuilder sequence = new StringBuilder(length);
+
+        for (int i = 0; i < length; i++) {
+            sequence.append(letters.charAt(random.nextInt(letters.length())));
+        }
+
+        return sequence.toString();
+    }
+}
@@ -0,0 +1,76 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.util.ByteSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * The coding strands may only depend on the seed, never on how the batches are scheduled, and have to translate back
+ * into the peptides they were made from.
+ */
+class BulkEncoderTest {
+    private static final long SEED = 2024;
+    // Amino acids without B, J, X and Z, which cannot be encoded
+    private static final String AMINO_ACIDS = "ACDEFGHIKLMNOPQRSTUVWY";
+
+    @Test
+    void outputDoesNotDependOnScheduling() throws IOException {
+        // Several batches, so that batches finish out of order on the pool
+        final String input = String.join("\n", randomPeptides(new Random(21), 600, 400));
+        final byte[] expected = encode(input, Runnable::run, 1);
+
+        assertArrayEquals(expected, encode(input, ForkJoinPool.commonPool(), 1));
+        assertArrayEquals(expected, encode(input, ForkJoinPool.commonPool(), 16));
+    }
+
+    @Test
+    void codingStrandsTranslateBack() throws IOException {
+        final List<String> peptides = randomPeptides(new Random(22), 200, 300);
+        final String output = new String(encode(String.join("\n", peptides), ForkJoinPool.commonPool(), 4),
+                StandardCharsets.US_ASCII);
+
+        // Every coding strand ends with the stop codon, which decodes to the null character
+        assertEquals(peptides.stream().map(peptide -> peptide + '\0').toList(),
+                output.lines().map(DNA_Encoder::decode).toList());
+    }
+
+    private static byte[] encode(String input, Executor executor, int maxPending) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ByteSink sink = new ByteSink(bytes)) {
+            BulkEncoder.encode(new BufferedReader(new StringReader(input)), sink, SEED, executor, maxPending);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    static List<String> randomPeptides(Random random, int count, int maxLength) {
+        final List<String> peptides = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            final StringBuilder peptide = new StringBuilder("M");
+            final int length = 1 + random.nextInt(maxLength);
+
+            while (peptide.length() < length) {
+                peptide.append(AMINO_ACIDS.charAt(random.nextInt(AMINO_ACIDS.length())));
+            }
+
+            peptides.add(peptide.toString());
+        }
+
+        return peptides;
+    }
+}
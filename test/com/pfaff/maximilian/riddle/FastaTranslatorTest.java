@@ -0,0 +1,59 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.util.ByteSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Codons and header lines that span two windows of the file have to be translated like all others.
+ */
+class FastaTranslatorTest {
+    @Test
+    void windowsMatchWholeFile(@TempDir Path directory) throws IOException {
+        final List<String> peptides = BulkEncoderTest.randomPeptides(new Random(31), 20, 200);
+        final Path input = directory.resolve("input.fasta");
+
+        try (ByteSink sink = ByteSink.open(input)) {
+            for (int i = 0; i < peptides.size(); i++) {
+                sink.appendLine(">peptide " + i);
+                sink.appendLine(DNA_Encoder.encode(peptides.get(i)));
+            }
+        }
+
+        final byte[] expected = translate(input, FastaTranslator.WINDOW_SIZE);
+        final String[] records = new String(expected, StandardCharsets.US_ASCII).split(">");
+
+        for (int i = 0; i < peptides.size(); i++) {
+            final List<String> lines = records[i + 1].lines().toList();
+
+            assertEquals("peptide " + i, lines.get(0));
+            // The stop codon at the end of every coding strand is written as '*'
+            assertEquals(peptides.get(i) + '*', String.join("", lines.subList(1, lines.size())));
+        }
+
+        for (long windowSize : new long[] {1, 2, 3, 59, 4096}) {
+            assertArrayEquals(expected, translate(input, windowSize), "Windows of " + windowSize);
+        }
+    }
+
+    private static byte[] translate(Path input, long windowSize) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ByteSink sink = new ByteSink(bytes)) {
+            FastaTranslator.translate(input, sink, windowSize);
+        }
+
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,168 @@
+package com.pfaff.maximilian.riddle;
+
+import com.pfaff.maximilian.model.PackedSequence;
+import com.pfaff.maximilian.util.ByteSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Splitting a sequence into chunks, or a file into windows, must neither lose nor add open reading frames at the seams,
+ * and must not change the order in which they are reported.
+ */
+class OrfScannerTest {
+    private static final int MIN_LENGTH = 5;
+    private static final Comparator<OrfScanner.Orf> POSITION = Comparator.comparingInt(OrfScanner.Orf::strand)
+            .thenComparingInt(OrfScanner.Orf::start);
+
+    @Test
+    void chunksMatchSingleScan() {
+        final PackedSequence sequence = PackedSequence.of(randomSequence(new Random(11), 20_000));
+        final List<OrfScanner.Orf> expected = scan(sequence, Integer.MAX_VALUE, 1);
+
+        assertFalse(expected.isEmpty());
+
+        // One codon per chunk, chunks that end inside and outside of a codon, and many chunks in flight
+        for (int chunkSize : new int[] {1, 2, 7, 100, 4096}) {
+            assertEquals(expected, scan(sequence, chunkSize, 1), "Chunks of " + chunkSize);
+            assertEquals(expected, scan(sequence, chunkSize, 64), "Chunks of " + chunkSize);
+        }
+    }
+
+    @Test
+    void singleScanFindsEveryOpenReadingFrame() {
+        final Random random = new Random(12);
+
+        for (int i = 0; i < 50; i++) {
+            final String sequence = randomSequence(random, random.nextInt(2000));
+            final List<OrfScanner.Orf> orfs = new ArrayList<>(scan(PackedSequence.of(sequence), 16, 4));
+
+            orfs.sort(POSITION);
+            assertEquals(bruteForce(sequence), orfs);
+        }
+    }
+
+    @Test
+    void windowsMatchWholeFile(@TempDir Path directory) throws IOException {
+        final Random random = new Random(13);
+        final StringBuilder fasta = new StringBuilder();
+
+        // Wrapped lines, Windows line breaks, lower case, unknown letters and a record without any sequence
+        for (int record = 0; record < 5; record++) {
+            final String sequence = randomSequence(random, 3000);
+
+            fasta.append(">record ").append(record).append(record == 2 ? "\r\n" : "\n");
+
+            for (int i = 0; i < sequence.length(); i += 70) {
+                final String line = sequence.substring(i, Math.min(i + 70, sequence.length()));
+
+                fasta.append(record == 3 ? line.toLowerCase() : line).append(record == 2 ? "\r\n" : "\n");
+            }
+
+            if (record == 1) {
+                fasta.append("NNN\n").append(sequence, 0, 500).append('\n');
+            }
+        }
+
+        fasta.append(">empty\n");
+
+        final Path input = directory.resolve("input.fasta");
+        Files.writeString(input, fasta, StandardCharsets.US_ASCII);
+
+        final byte[] expected = scan(input, FastaTranslator.WINDOW_SIZE);
+
+        assertFalse(expected.length == 0);
+
+        for (long windowSize : new long[] {1, 2, 3, 61, 4096}) {
+            assertArrayEquals(expected, scan(input, windowSize), "Windows of " + windowSize);
+        }
+    }
+
+    private static List<OrfScanner.Orf> scan(PackedSequence sequence, int chunkSize, int maxPending) {
+        final List<OrfScanner.Orf> orfs = new ArrayList<>();
+
+        OrfScanner.scan(sequence, MIN_LENGTH, ForkJoinPool.commonPool(), maxPending, chunkSize, orfs::add);
+
+        return orfs;
+    }
+
+    private static byte[] scan(Path input, long windowSize) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try (ByteSink sink = new ByteSink(bytes)) {
+            OrfScanner.scan(input, MIN_LENGTH, sink, windowSize);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reads every frame of both strands codon by codon, exactly as the documentation of {@link OrfScanner} describes it.
+     */
+    private static List<OrfScanner.Orf> bruteForce(String sequence) {
+        final List<OrfScanner.Orf> orfs = new ArrayList<>();
+        final String reverseComplement = PackedSequence.of(sequence).reverseComplement().toString();
+        final int length = sequence.length();
+
+        for (int strand : new int[] {1, -1}) {
+            final String bases = strand == 1 ? sequence : reverseComplement;
+
+            for (int frame = 0; frame < 3; frame++) {
+                int start = -1;
+
+                for (int i = frame; i + 3 <= length; i += 3) {
+                    final char aminoAcid = DNA_Encoder.getAminoAcidFromCodon(bases.charAt(i), bases.charAt(i + 1),
+                            bases.charAt(i + 2));
+
+                    if (aminoAcid == 0) {
+                        if (start >= 0 && (i - start) / 3 >= MIN_LENGTH) {
+                            final String peptide = DNA_Encoder.decode(bases.substring(start, i));
+
+                            orfs.add(strand == 1 ? new OrfScanner.Orf(1, frame, start, i + 3, peptide)
+                                    : new OrfScanner.Orf(-1, frame, length - i - 3, length - start, peptide));
+                        }
+
+                        start = -1;
+                    } else if (start < 0 && bases.startsWith("ATG", i)) {
+                        start = i;
+                    }
+                }
+            }
+        }
+
+        orfs.sort(POSITION);
+
+        return orfs;
+    }
+
+    /**
+     * @return Random DNA with plenty of start and stop codons, so that even short sequences have open reading frames.
+     */
+    private static String randomSequence(Random random, int length) {
+        final StringBuilder sequence = new StringBuilder(length + 2);
+
+        while (sequence.length() < length) {
+            switch (random.nextInt(8)) {
+                case 0 -> sequence.append("ATG");
+                case 1 -> sequence.append("TAA");
+                default -> sequence.append("ACGT".charAt(random.nextInt(4)));
+            }
+        }
+
+        return sequence.substring(0, length);
+    }
+}